@@ -0,0 +1,59 @@
+package comp74.thompson.benchmarks;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Runs the benchmarks. Takes the usual JMH command line options (a benchmark name
+ * pattern, -p to pick parameters, -t for the number of threads, and so on), plus
+ * --threads=1,4,16 to run everything once for each number of threads.
+ *
+ * The results of all runs are written to one file, as JSON unless -rf says otherwise,
+ * to target/jmh-result-<date and time>.json unless -rff says otherwise. Each result records
+ * its benchmark, parameters and number of threads, so runs of different builds can be
+ * compared (for example with jmh.morethan.io, or by diffing the score fields).
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> threadCounts = new ArrayList<>();
+        List<String> jmhArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--threads=")) {
+                for (String count : arg.substring("--threads=".length()).split(",")) {
+                    threadCounts.add(Integer.parseInt(count.trim()));
+                }
+            } else {
+                jmhArgs.add(arg);
+            }
+        }
+        CommandLineOptions commandLine = new CommandLineOptions(jmhArgs.toArray(new String[0]));
+
+        List<RunResult> results = new ArrayList<>();
+        if (threadCounts.isEmpty()) {
+            results.addAll(new Runner(commandLine).run());
+        } else {
+            for (int threads : threadCounts) {
+                ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine).threads(threads);
+                results.addAll(new Runner(options.build()).run());
+            }
+        }
+
+        ResultFormatType format = commandLine.getResultFormat().orElse(ResultFormatType.JSON);
+        String file = commandLine.getResult().orElse("target/jmh-result-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + "."
+                + format.toString().toLowerCase());
+        ResultFormatFactory.getInstance(format, file).writeOut(results);
+        System.out.println("Results written to " + file);
+    }
+}
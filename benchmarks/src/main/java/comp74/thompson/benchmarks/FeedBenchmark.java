@@ -0,0 +1,108 @@
+package comp74.thompson.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import comp74.thompson.feed.FeedService;
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.PostingKey;
+import comp74.thompson.model.Profile;
+
+/*
+ * Time to read a page of a home feed, on stores of 10,000 and 100,000 profiles with
+ * POSTS_PER_PROFILE postings each. Every profile follows `following` others: a tenth of
+ * them picked from the POPULAR first profiles, which end up well over the celebrity threshold
+ * and are merged in when the feed is read, and the rest picked at random, which are pushed
+ * into the inboxes when they post. The follows are made before the postings, so the inboxes
+ * are filled by fan-out on write, as they are in the application.
+ *
+ * Sampled, so the result has percentiles as well as the mean. firstPage reads the newest
+ * page the way GET /api/profiles/{profileId}/feed does (one extra posting to find the next page),
+ * and secondPage the one after it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx4g" })
+public class FeedBenchmark {
+    static final int POSTS_PER_PROFILE = 10;
+    static final int POPULAR = 50;
+    static final int PAGE_SIZE = 20;
+    // The defaults in application.properties
+    static final int INBOX_CAPACITY = 500;
+    static final int CELEBRITY_THRESHOLD = 1000;
+
+    @Param({ "10000", "100000" })
+    int profileCount;
+
+    @Param({ "100" })
+    int following;
+
+    Model model;
+    FeedService feeds;
+    Profile[] profiles;
+    // The cursor of the second page of each profile's feed
+    PostingKey[] secondPageAfter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = new Model();
+        feeds = new FeedService(model, INBOX_CAPACITY, CELEBRITY_THRESHOLD);
+        profiles = Stores.fill(model, profileCount, 0);
+
+        SplittableRandom random = new SplittableRandom(42);
+        for (Profile follower : profiles) {
+            for (int i = 0; i < following; i++) {
+                int followee = i < following / 10 ? random.nextInt(POPULAR) : random.nextInt(profileCount);
+                feeds.follow(follower, profiles[followee]);
+            }
+        }
+        for (Profile profile : profiles) {
+            List<Posting> postings = new ArrayList<>(POSTS_PER_PROFILE);
+            for (int j = 0; j < POSTS_PER_PROFILE; j++) {
+                postings.add(new Posting("posting " + j + " of " + profile.getUserName() + ", with a few words of text"));
+            }
+            model.addPostings(profile, postings);
+        }
+
+        secondPageAfter = new PostingKey[profileCount];
+        for (int i = 0; i < profileCount; i++) {
+            List<Posting> page = feeds.getFeed(profiles[i], null, PAGE_SIZE);
+            secondPageAfter[i] = page.isEmpty() ? null : PostingKey.of(page.get(page.size() - 1));
+        }
+    }
+
+    int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(profileCount);
+    }
+
+    @Benchmark
+    public List<Posting> firstPage() {
+        return feeds.getFeed(profiles[randomIndex()], null, PAGE_SIZE + 1);
+    }
+
+    @Benchmark
+    public List<Posting> secondPage() {
+        int i = randomIndex();
+        return feeds.getFeed(profiles[i], secondPageAfter[i], PAGE_SIZE + 1);
+    }
+}
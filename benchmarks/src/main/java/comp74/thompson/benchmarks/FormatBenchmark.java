@@ -0,0 +1,114 @@
+package comp74.thompson.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.thedeanda.lorem.Lorem;
+import com.thedeanda.lorem.LoremIpsum;
+
+import comp74.thompson.controller.ProfileJsonWriter;
+import comp74.thompson.controller.WireFormat;
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+/*
+ * Bytes on the wire and time to write them for each WireFormat, with and without gzip.
+ * writeProfiles writes a page of PROFILES profiles the way GET /api/profiles does, and
+ * writePostings one profile's postings the way GET /api/profiles/{profileId}/postings does.
+ * The postings are one to three lorem ipsum paragraphs, like the ones the application starts with.
+ *
+ * The size of a response is reported as the bytes counter (its unit shows as #).
+ * gzip is at the level Tomcat uses (the default, 6), so the time includes what the server
+ * spends compressing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatBenchmark {
+    static final int PROFILES = 100;
+    static final int POSTINGS_PER_PROFILE = 20;
+
+    @Param({ "JSON", "CBOR", "SMILE" })
+    WireFormat format;
+
+    @Param({ "false", "true" })
+    boolean gzip;
+
+    ProfileJsonWriter writer;
+    Profile[] profiles;
+    List<Posting> postings;
+
+    // The size of the last response written. Every response is the same size,
+    // and an EVENTS counter is reported as it is rather than divided by time.
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Sizes {
+        public long bytes;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 20);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        writer = new ProfileJsonWriter(Jackson2ObjectMapperBuilder.json().build());
+        Model model = new Model();
+        Lorem lorem = new LoremIpsum(42L);
+        profiles = new Profile[PROFILES];
+        for (int i = 0; i < PROFILES; i++) {
+            Profile profile = new Profile(Stores.userName(i));
+            model.addProfile(profile);
+            List<Posting> added = new ArrayList<>();
+            for (int j = 0; j < POSTINGS_PER_PROFILE; j++) {
+                added.add(new Posting(lorem.getParagraphs(1, 3)));
+            }
+            model.addPostings(profile, added);
+            profiles[i] = profile;
+        }
+        postings = new ArrayList<>(profiles[0].getPostings());
+    }
+
+    // Start a response, compressed or not
+    private OutputStream open(Sizes sizes) throws IOException {
+        sizes.buffer.reset();
+        return gzip ? new GZIPOutputStream(sizes.buffer, 8192) : sizes.buffer;
+    }
+
+    @Benchmark
+    public int writeProfiles(Sizes sizes) throws IOException {
+        // The writer closes the stream, which finishes the gzip trailer
+        writer.writeProfiles(open(sizes), format, Arrays.asList(profiles).iterator(), true);
+        sizes.bytes = sizes.buffer.size();
+        return sizes.buffer.size();
+    }
+
+    @Benchmark
+    public int writePostings(Sizes sizes) throws IOException {
+        writer.writePostings(open(sizes), format, postings.iterator());
+        sizes.bytes = sizes.buffer.size();
+        return sizes.buffer.size();
+    }
+}
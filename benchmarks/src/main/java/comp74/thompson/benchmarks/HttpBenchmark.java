@@ -0,0 +1,102 @@
+package comp74.thompson.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import comp74.thompson.ThompsonApplication;
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Profile;
+
+/*
+ * End-to-end throughput: the whole application runs on an embedded server on a random
+ * port, and the benchmark threads send it HTTP requests over one shared HttpClient.
+ * So the scores include Tomcat, Spring MVC, the listeners and JSON, and the client.
+ * The store starts with posts postings. addPost makes it grow while it runs.
+ * Admission control is turned off, since the benchmark posts far faster than any one client may.
+ * Extra server properties can be passed with -jvmArgsAppend, for example
+ * -jvmArgsAppend -Dpersistence.enabled=true.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx4g" })
+public class HttpBenchmark {
+
+    @Param({ "1000", "100000" })
+    int posts;
+
+    ConfigurableApplicationContext context;
+    HttpClient client;
+    String baseUrl;
+    Profile[] profiles;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = SpringApplication.run(ThompsonApplication.class,
+                "--server.port=0", "--logging.level.root=WARN", "--admission.enabled=false");
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api";
+        profiles = Stores.fill(context.getBean(Model.class), posts);
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    int randomProfileId() {
+        return profiles[ThreadLocalRandom.current().nextInt(profiles.length)].getProfileId();
+    }
+
+    byte[] send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException(request + " returned " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    // A profile with its postings, usually from the cache of serialized profiles
+    @Benchmark
+    public byte[] getProfile() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/profiles/" + randomProfileId())).build());
+    }
+
+    // A page of 100 profiles without their postings
+    @Benchmark
+    public byte[] getProfilesPage() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/profiles?limit=100&includePostings=false"))
+                .build());
+    }
+
+    @Benchmark
+    public byte[] addPost() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/profiles/" + randomProfileId() + "/postings"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"postingText\":\"benchmark posting\"}"))
+                .build());
+    }
+}
@@ -0,0 +1,74 @@
+package comp74.thompson.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import comp74.thompson.controller.ProfileJsonWriter;
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+/*
+ * Time to serialize profiles and postings to JSON, with an ObjectMapper set up the way
+ * Spring Boot sets it up for the application. Each profile has postingsPerProfile postings.
+ * streamProfiles writes PROFILES profiles the way GET /api/profiles does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+    static final int PROFILES = 100;
+
+    @Param({ "10", "100", "1000" })
+    int postingsPerProfile;
+
+    ObjectMapper objectMapper;
+    ProfileJsonWriter jsonWriter;
+    Profile[] profiles;
+    Posting posting;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        jsonWriter = new ProfileJsonWriter(objectMapper);
+        profiles = Stores.fill(new Model(), PROFILES, postingsPerProfile);
+        posting = profiles[0].getPostings().iterator().next();
+    }
+
+    @Benchmark
+    public byte[] serializePosting() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(posting);
+    }
+
+    @Benchmark
+    public byte[] serializeProfile() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(profiles[0]);
+    }
+
+    @Benchmark
+    public void streamProfiles() throws IOException {
+        jsonWriter.writeProfiles(OutputStream.nullOutputStream(), Arrays.asList(profiles).iterator(), true);
+    }
+}
@@ -0,0 +1,326 @@
+package comp74.thompson.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/*
+ * Compares serving requests on platform threads and on virtual threads under many slow clients.
+ *
+ * For each mode, the application is started from its executable jar in its own JVM,
+ * filled with profiles through the bulk import, and then hit by connections clients
+ * at once. Each client keeps one connection open and asks for path over and over,
+ * reading the response readSize bytes at a time with a pause of readDelayMs in between,
+ * like a client on a slow network. Throughput, latency and the CPU the server used are
+ * measured after a warmup, printed, and written as JSON to target/loadtest-result-<date and time>.json.
+ *
+ * Needs Java 21: the clients run on virtual threads, and so does the server in the virtual mode.
+ * The JVM running this is used to run the servers too.
+ *
+ *   java -cp <classpath> comp74.thompson.benchmarks.LoadTest --jar ../webAPI/target/thompson-0.0.1-SNAPSHOT-exec.jar
+ *
+ * Options (with their defaults): --connections 10000 --warmup 20 --duration 60 (seconds)
+ * --path /api/profiles?limit=20 --read-size 8192 --read-delay-ms 20
+ * --profiles 2000 --posts-per-profile 20 --modes platform,virtual
+ * The server and client each need a file descriptor per connection, so ulimit -n must be
+ * above connections.
+ */
+public class LoadTest {
+
+    // What one mode measured
+    record Result(String mode, int connections, long requests, double requestsPerSecond,
+            double p50Millis, double p99Millis, double maxMillis, long errors,
+            double serverCpuPercent) {
+    }
+
+    final Map<String, String> options = new LinkedHashMap<>(Map.of(
+            "connections", "10000", "warmup", "20", "duration", "60",
+            "path", "/api/profiles?limit=20", "read-size", "8192", "read-delay-ms", "20",
+            "profiles", "2000", "posts-per-profile", "20", "modes", "platform,virtual"));
+
+    int option(String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTest loadTest = new LoadTest();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            loadTest.options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        if (!loadTest.options.containsKey("jar")) {
+            System.err.println("Usage: LoadTest --jar <executable application jar> [options]");
+            System.exit(2);
+        }
+        List<Result> results = new ArrayList<>();
+        for (String mode : loadTest.options.get("modes").split(",")) {
+            results.add(loadTest.run(mode.trim()));
+        }
+
+        System.out.printf("%n%-9s %11s %10s %10s %10s %10s %8s %9s%n",
+                "mode", "connections", "req/s", "p50 ms", "p99 ms", "max ms", "errors", "cpu %");
+        for (Result result : results) {
+            System.out.printf("%-9s %11d %10.1f %10.1f %10.1f %10.1f %8d %9.1f%n",
+                    result.mode(), result.connections(), result.requestsPerSecond(), result.p50Millis(),
+                    result.p99Millis(), result.maxMillis(), result.errors(), result.serverCpuPercent());
+        }
+        Path file = Path.of("target", "loadtest-result-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        Files.createDirectories(file.getParent());
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", loadTest.options);
+        report.put("results", results);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), report);
+        System.out.println("Results written to " + file);
+    }
+
+    // Start a server in a mode (platform or virtual), load it, and stop it
+    Result run(String mode) throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Path log = Path.of("target", "loadtest-" + mode + ".log");
+        Files.createDirectories(log.getParent());
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx2g", "-Djdk.tracePinnedThreads=short",
+                "-jar", options.get("jar"),
+                "--server.port=" + port,
+                "--spring.threads.virtual.enabled=" + mode.equals("virtual"),
+                // Let every connection in, in both modes, so that only the threads differ
+                "--server.tomcat.max-connections=" + (option("connections") + 1000),
+                "--server.tomcat.accept-count=" + option("connections"),
+                "--logging.level.root=WARN"));
+        Process server = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            String baseUrl = "http://localhost:" + port;
+            awaitStarted(baseUrl);
+            fill(baseUrl);
+            System.out.printf("%s threads: %d connections to %s%n", mode, option("connections"), options.get("path"));
+            return load(mode, port, server.toHandle());
+        } finally {
+            server.destroy();
+            server.waitFor(30, TimeUnit.SECONDS);
+        }
+    }
+
+    void awaitStarted(String baseUrl) throws InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        for (int i = 0; i < 600; i++) {
+            try {
+                HttpResponse<Void> response = client.send(
+                        HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/health")).build(),
+                        HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(100);
+        }
+        throw new IllegalStateException("The server did not start, see its log in target/");
+    }
+
+    // Add the profiles and postings with the bulk import
+    void fill(String baseUrl) throws IOException, InterruptedException {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < option("profiles"); i++) {
+            for (int j = 0; j < option("posts-per-profile"); j++) {
+                ndjson.append("{\"userName\":\"load").append(i)
+                        .append("\",\"postingText\":\"posting ").append(j)
+                        .append(" for the load test, long enough to look like a real posting of a few words\"}\n");
+            }
+        }
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create(baseUrl + "/api/bulk/postings"))
+                        .POST(HttpRequest.BodyPublishers.ofString(ndjson.toString())).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Import failed: " + response.body());
+        }
+    }
+
+    // Run the clients, and measure from the end of the warmup to the end of the run
+    Result load(String mode, int port, ProcessHandle server) throws Exception {
+        int connections = option("connections");
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(option("warmup"));
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(option("duration"));
+        byte[] request = ("GET " + options.get("path") + " HTTP/1.1\r\nHost: localhost\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        LongAdder errors = new LongAdder();
+        long[][] latencies = new long[connections][];
+
+        Duration cpuBefore;
+        Duration cpuAfter;
+        ExecutorService clients = newVirtualThreadPerTaskExecutor();
+        try {
+            for (int i = 0; i < connections; i++) {
+                int client = i;
+                clients.submit(() -> latencies[client] = client(port, request, measureFrom, end, errors));
+                // Open the connections over the first few seconds rather than all at once
+                if (i % 500 == 499) {
+                    Thread.sleep(250);
+                }
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, measureFrom - System.nanoTime()));
+            cpuBefore = server.info().totalCpuDuration().orElse(null);
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, end - System.nanoTime()));
+            cpuAfter = server.info().totalCpuDuration().orElse(null);
+        } finally {
+            clients.shutdown();
+            clients.awaitTermination(end - System.nanoTime() + TimeUnit.SECONDS.toNanos(120), TimeUnit.NANOSECONDS);
+        }
+
+        long[] all = Arrays.stream(latencies).filter(l -> l != null)
+                .flatMapToLong(Arrays::stream).sorted().toArray();
+        double seconds = option("duration");
+        double cpu = cpuBefore == null || cpuAfter == null ? -1
+                : 100.0 * cpuAfter.minus(cpuBefore).toNanos() / TimeUnit.SECONDS.toNanos(option("duration"));
+        return new Result(mode, connections, all.length, all.length / seconds,
+                percentile(all, 0.50), percentile(all, 0.99), percentile(all, 1.0), errors.sum(), cpu);
+    }
+
+    static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+
+    // One client: send the request over one connection until the end, reading each response slowly.
+    // Returns the latencies (in nanoseconds) of the responses that finished in the measured period.
+    long[] client(int port, byte[] request, long measureFrom, long end, LongAdder errors) throws InterruptedException {
+        long[] latencies = new long[64];
+        int count = 0;
+        int readSize = option("read-size");
+        int readDelayMs = option("read-delay-ms");
+        while (System.nanoTime() < end) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("localhost", port), 60_000);
+                socket.setSoTimeout(120_000);
+                InputStream in = new BufferedInputStream(socket.getInputStream(), readSize);
+                OutputStream out = socket.getOutputStream();
+                while (System.nanoTime() < end) {
+                    long sent = System.nanoTime();
+                    out.write(request);
+                    out.flush();
+                    boolean keepAlive = readResponse(in, readSize, readDelayMs);
+                    long done = System.nanoTime();
+                    if (sent >= measureFrom && done <= end) {
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = done - sent;
+                    }
+                    if (!keepAlive) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                if (System.nanoTime() >= measureFrom && System.nanoTime() < end) {
+                    errors.increment();
+                }
+                Thread.sleep(100);
+            }
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    // Read one response, pausing after every readSize bytes of the body.
+    // Returns false if the server is closing the connection.
+    static boolean readResponse(InputStream in, int readSize, int readDelayMs) throws IOException, InterruptedException {
+        String statusLine = readLine(in);
+        if (!statusLine.startsWith("HTTP/1.1 200")) {
+            throw new IOException("Unexpected response: " + statusLine);
+        }
+        long contentLength = -1;
+        boolean chunked = false;
+        boolean keepAlive = true;
+        for (String header = readLine(in); !header.isEmpty(); header = readLine(in)) {
+            String lower = header.toLowerCase();
+            if (lower.startsWith("content-length:")) {
+                contentLength = Long.parseLong(lower.substring(15).trim());
+            } else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) {
+                chunked = true;
+            } else if (lower.startsWith("connection:") && lower.contains("close")) {
+                keepAlive = false;
+            }
+        }
+        byte[] buffer = new byte[readSize];
+        if (chunked) {
+            for (long size = Long.parseLong(readLine(in).trim(), 16); size > 0;
+                    size = Long.parseLong(readLine(in).trim(), 16)) {
+                skip(in, size, buffer, readDelayMs);
+                readLine(in);
+            }
+            // The end of the trailers
+            while (!readLine(in).isEmpty()) {
+            }
+        } else if (contentLength >= 0) {
+            skip(in, contentLength, buffer, readDelayMs);
+        }
+        return keepAlive;
+    }
+
+    // Read and throw away count bytes, pausing after every buffer full
+    static void skip(InputStream in, long count, byte[] buffer, int readDelayMs) throws IOException, InterruptedException {
+        while (count > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, count));
+            if (read < 0) {
+                throw new EOFException();
+            }
+            count -= read;
+            if (readDelayMs > 0) {
+                Thread.sleep(readDelayMs);
+            }
+        }
+    }
+
+    static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < 0) {
+                throw new EOFException();
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor(), called by reflection so that the module still builds on Java 17
+    static ExecutorService newVirtualThreadPerTaskExecutor() throws ReflectiveOperationException {
+        return (ExecutorService) java.util.concurrent.Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+}
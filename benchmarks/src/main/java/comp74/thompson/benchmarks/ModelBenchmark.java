@@ -0,0 +1,73 @@
+package comp74.thompson.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Profile;
+
+/*
+ * Throughput of the Model operations that leave the size of the store unchanged,
+ * on stores of 1,000 to 10,000,000 postings. All threads share one store.
+ * The Model is used on its own, without the listeners (feeds, search, persistence)
+ * that the application registers. Adding and deleting postings is in ModelWriteBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx16g" })
+public class ModelBenchmark {
+
+    @Param({ "1000", "100000", "1000000", "10000000" })
+    int posts;
+
+    Model model;
+    Profile[] profiles;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = new Model();
+        profiles = Stores.fill(model, posts);
+    }
+
+    int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(profiles.length);
+    }
+
+    // Copies the list of all profiles
+    @Benchmark
+    public List<Profile> getProfiles() {
+        return model.getProfiles();
+    }
+
+    @Benchmark
+    public List<Profile> getProfileByUsername() {
+        return model.getProfileByUsername(Stores.userName(randomIndex()));
+    }
+
+    // Renames a random profile back and forth between two names
+    @Benchmark
+    public ResponseEntity<Profile> updateProfile() {
+        int i = randomIndex();
+        Profile profile = profiles[i];
+        String userName = Stores.userName(i);
+        return model.updateProfile(profile, userName.equals(profile.getUserName()) ? userName + "-renamed" : userName);
+    }
+}
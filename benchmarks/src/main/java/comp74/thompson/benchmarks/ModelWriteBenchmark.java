@@ -0,0 +1,106 @@
+package comp74.thompson.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+/*
+ * Time per Model.addPost and Model.deletePost, on stores of 1,000 to 10,000,000 postings.
+ * Each invocation adds (or deletes) a batch of BATCH postings on random profiles, and the
+ * batch is undone (or prepared) outside of the measured time, so the store stays the same
+ * size however long the benchmark runs. The score is the time for one operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms1g", "-Xmx16g" })
+public class ModelWriteBenchmark {
+    static final int BATCH = 1000;
+
+    // The store, shared by all threads
+    @State(Scope.Benchmark)
+    public static class Store {
+        @Param({ "1000", "100000", "1000000", "10000000" })
+        int posts;
+
+        Model model;
+        Profile[] profiles;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            model = new Model();
+            profiles = Stores.fill(model, posts);
+        }
+
+        Profile randomProfile() {
+            return profiles[ThreadLocalRandom.current().nextInt(profiles.length)];
+        }
+    }
+
+    // The postings one thread added, or is about to delete
+    public static class Batch {
+        final List<Posting> postings = new ArrayList<>(BATCH);
+    }
+
+    // Delete the postings added by addPost
+    @State(Scope.Thread)
+    public static class Added extends Batch {
+        @TearDown(Level.Invocation)
+        public void deleteAdded(Store store) {
+            for (Posting posting : postings) {
+                store.model.deletePost(posting.getAuthor(), posting.getPostingId());
+            }
+            postings.clear();
+        }
+    }
+
+    // Add the postings for deletePost to delete
+    @State(Scope.Thread)
+    public static class ToDelete extends Batch {
+        @Setup(Level.Invocation)
+        public void addToDelete(Store store) {
+            postings.clear();
+            for (int i = 0; i < BATCH; i++) {
+                postings.add(store.model.addPost(store.randomProfile(), new Posting("to be deleted")).getBody());
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void addPost(Store store, Added added) {
+        for (int i = 0; i < BATCH; i++) {
+            added.postings.add(store.model.addPost(store.randomProfile(), new Posting("benchmark posting")).getBody());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void deletePost(Store store, ToDelete toDelete, Blackhole blackhole) {
+        for (Posting posting : toDelete.postings) {
+            blackhole.consume(store.model.deletePost(posting.getAuthor(), posting.getPostingId()));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package comp74.thompson.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+/*
+ * Builds stores of a given size for the benchmarks.
+ */
+class Stores {
+    // Postings per profile in a store built by number of postings,
+    // so a store with more postings also has more profiles
+    static final int POSTS_PER_PROFILE = 100;
+
+    // The username of the profile with index i
+    static String userName(int i) {
+        return "user" + i;
+    }
+
+    // Fill a Model with posts postings, POSTS_PER_PROFILE to a profile.
+    // Returns the profiles, in the order they were created.
+    static Profile[] fill(Model model, int posts) {
+        return fill(model, Math.max(1, posts / POSTS_PER_PROFILE), Math.min(posts, POSTS_PER_PROFILE));
+    }
+
+    // Fill a Model with profileCount profiles that have postsPerProfile postings each.
+    // Returns the profiles, in the order they were created.
+    static Profile[] fill(Model model, int profileCount, int postsPerProfile) {
+        Profile[] profiles = new Profile[profileCount];
+        for (int i = 0; i < profileCount; i++) {
+            Profile profile = new Profile(userName(i));
+            model.addProfile(profile);
+            List<Posting> postings = new ArrayList<>(postsPerProfile);
+            for (int j = 0; j < postsPerProfile; j++) {
+                postings.add(new Posting("posting " + j + " of " + userName(i) + ", with a few words of text"));
+            }
+            model.addPostings(profile, postings);
+            profiles[i] = profile;
+        }
+        return profiles;
+    }
+}
@@ -1,8 +1,19 @@
 package comp74.thompson;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
-import org.springframework.boot.CommandLineRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import com.thedeanda.lorem.Lorem;
@@ -11,36 +22,101 @@ import com.thedeanda.lorem.LoremIpsum;
 import comp74.thompson.model.Model;
 import comp74.thompson.model.Posting;
 import comp74.thompson.model.Profile;
+import comp74.thompson.persistence.Dataset;
+import comp74.thompson.persistence.PersistenceManager;
+import comp74.thompson.seed.DatasetGenerator;
 
 @Component
-public class Initializer implements CommandLineRunner {
+public class Initializer implements SmartInitializingSingleton {
+        static final Logger log = LoggerFactory.getLogger(Initializer.class);
         Lorem lorem = LoremIpsum.getInstance();
-        Model model = new Model();
+        Model model;
         final Integer MIN_PROFILES = 2;
         final Integer MAX_PROFILES = 10;
         final Integer MIN_POSTINGS = 2;
         final Integer MAX_POSTINGS = 8;
 
-        public Initializer(Model model) {
+        ObjectProvider<PersistenceManager> persistence;
+        int seedProfiles;
+        int seedPostings;
+        double seedZipfExponent;
+        long seedRandomSeed;
+        long seedDays;
+        String seedDataset;
+
+        public Initializer(Model model, ObjectProvider<PersistenceManager> persistence,
+                @Value("${seed.profiles:0}") int seedProfiles,
+                @Value("${seed.postings:0}") int seedPostings,
+                @Value("${seed.zipf-exponent:1.1}") double seedZipfExponent,
+                @Value("${seed.random-seed:42}") long seedRandomSeed,
+                @Value("${seed.days:30}") long seedDays,
+                @Value("${seed.dataset:}") String seedDataset) {
             this.model = model;
+            this.persistence = persistence;
+            this.seedProfiles = seedProfiles;
+            this.seedPostings = seedPostings;
+            this.seedZipfExponent = seedZipfExponent;
+            this.seedRandomSeed = seedRandomSeed;
+            this.seedDays = seedDays;
+            this.seedDataset = seedDataset;
         }
     
-        // Create a random number of profiles with a random number of postings
+        // Fill the store, unless it already has data (for example after it was recovered from disk).
+        // A dataset file is loaded if there is one. Otherwise a synthetic dataset is generated if
+        // seed.profiles is set (and written to the dataset file for next time), or else a few random profiles are created.
+        // Runs once every listener of the Model exists, but before the server takes requests.
         @Override
-        public void run(String... args) throws Exception {
+        public void afterSingletonsInstantiated() {
+            if (!model.getProfilesAfter(null).isEmpty()) {
+                return;
+            }
+            try {
+                seed();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void seed() throws IOException {
+            long start = System.nanoTime();
+            Path dataset = seedDataset.isEmpty() ? null : Path.of(seedDataset);
+            if (dataset != null && Files.exists(dataset)) {
+                Dataset.read(dataset, model);
+                log.info("Loaded {} profiles and {} postings from {} in {} ms", model.getProfileCount(),
+                        model.getPostingCount(), dataset, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } else if (seedProfiles > 0) {
+                new DatasetGenerator(model, seedProfiles, seedPostings, seedZipfExponent, seedRandomSeed, seedDays).generate();
+                log.info("Generated {} profiles and {} postings in {} ms", model.getProfileCount(),
+                        model.getPostingCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                if (dataset != null) {
+                    Dataset.write(dataset, model);
+                }
+            } else {
+                createRandomProfiles();
+                return;
+            }
+            // Loaded data doesn't go through the write-ahead log, so make it durable with a snapshot
+            PersistenceManager manager = persistence.getIfAvailable();
+            if (manager != null) {
+                manager.snapshot();
+            }
+        }
+
+        // Create a random number of profiles with a random number of postings.
+        // The profile is added first so it has an ID, then its postings are added in one batch.
+        void createRandomProfiles() {
             Random random = new Random();
             Integer numProfiles = MIN_PROFILES + random.nextInt(MAX_PROFILES - MIN_PROFILES);
 
             for (int i = 0; i < numProfiles; i++) {
                 Profile profile = new Profile(lorem.getFirstName());
+                model.addProfile(profile);
                 Integer numPostings = MIN_POSTINGS + random.nextInt(MAX_POSTINGS - MIN_POSTINGS);
+                List<Posting> postings = new ArrayList<>();
                 for (int j = 0; j < numPostings; j++) {
-                    Posting posting = new Posting();
-                    posting.setUserName(profile.getUserName());
-                    posting.setPostingText(lorem.getParagraphs(1, 3));
-                    model.addPost(profile, posting);
+                    postings.add(new Posting(lorem.getParagraphs(1, 3)));
                 }
-                model.addProfile(profile);
+                model.addPostings(profile, postings);
             }         
         }
     }
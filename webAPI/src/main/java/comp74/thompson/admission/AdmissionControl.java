@@ -0,0 +1,115 @@
+package comp74.thompson.admission;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/*
+ * Decides whether a write request is let in, in two steps:
+ *
+ * 1. Each client (a profile, a username, or an address; see AdmissionInterceptor) has a
+ *    token bucket of admission.burst tokens that refills at admission.rate-per-second.
+ *    A request without a token is turned away straight away, so one busy client is
+ *    slowed down without touching anyone else.
+ * 2. At most admission.max-concurrent-writes admitted writes run at once. A request that
+ *    can't start within admission.queue-target-ms is turned away rather than left to
+ *    queue, so when the server is overloaded the waiting time (and p99) stays bounded
+ *    and the excess is shed.
+ *
+ * Buckets are dropped once they haven't been used for as long as they take to refill,
+ * at which point a new full bucket is the same as the old one.
+ */
+@Component
+public class AdmissionControl {
+    final double ratePerSecond;
+    final int burst;
+    final long queueTargetNanos;
+    final Cache<String, TokenBucket> buckets;
+    final Semaphore writeSlots;
+    final int maxConcurrentWrites;
+
+    final Counter admitted;
+    final Counter rateLimited;
+    final Counter overloaded;
+    final Timer queueWait;
+
+    public AdmissionControl(MeterRegistry registry,
+            @Value("${admission.rate-per-second:20}") double ratePerSecond,
+            @Value("${admission.burst:40}") int burst,
+            @Value("${admission.max-concurrent-writes:64}") int maxConcurrentWrites,
+            @Value("${admission.queue-target-ms:50}") long queueTargetMillis) {
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.queueTargetNanos = TimeUnit.MILLISECONDS.toNanos(queueTargetMillis);
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofNanos((long) (burst * 1e9 / ratePerSecond)))
+                .build();
+        this.maxConcurrentWrites = maxConcurrentWrites;
+        this.writeSlots = new Semaphore(maxConcurrentWrites, true);
+
+        this.admitted = outcomeCounter(registry, "admitted");
+        this.rateLimited = outcomeCounter(registry, "rate_limited");
+        this.overloaded = outcomeCounter(registry, "overloaded");
+        this.queueWait = Timer.builder("admission.queue.wait")
+                .description("Time admitted writes waited to start")
+                .register(registry);
+        Gauge.builder("admission.writes.running", this, AdmissionControl::running)
+                .description("Admitted writes running now")
+                .register(registry);
+        Gauge.builder("admission.buckets", buckets, Cache::estimatedSize)
+                .description("Clients with a token bucket")
+                .register(registry);
+    }
+
+    private static Counter outcomeCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder("admission.requests")
+                .description("Write requests by whether they were let in")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    // Get the number of admitted writes running now
+    public int running() {
+        return maxConcurrentWrites - writeSlots.availablePermits();
+    }
+
+    // Take a token from a client's bucket.
+    // Returns 0 if there was one, or else how many nanoseconds until there will be.
+    public long takeToken(String client) {
+        long now = System.nanoTime();
+        long wait = buckets.get(client, key -> new TokenBucket(ratePerSecond, burst, now)).tryTake(now);
+        if (wait > 0) {
+            rateLimited.increment();
+        }
+        return wait;
+    }
+
+    // Wait up to the queue target for a write to be allowed to start.
+    // Returns false if it wasn't. If it returns true, finish must be called once the write is done.
+    public boolean start() throws InterruptedException {
+        long start = System.nanoTime();
+        if (!writeSlots.tryAcquire(queueTargetNanos, TimeUnit.NANOSECONDS)) {
+            overloaded.increment();
+            return false;
+        }
+        queueWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        admitted.increment();
+        return true;
+    }
+
+    // A write that was started has finished
+    public void finish() {
+        writeSlots.release();
+    }
+}
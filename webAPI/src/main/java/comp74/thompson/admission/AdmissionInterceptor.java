@@ -0,0 +1,98 @@
+package comp74.thompson.admission;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/*
+ * Puts AdmissionControl in front of the write endpoints of MainController.
+ *
+ * A write to /api/profiles/{profileId}/... is counted against that profile, a write to
+ * /api/profileByUsername or /api/updateUsername against its username, and anything else
+ * (creating a profile) against the client's address. A request that is turned away gets
+ * a status code of 429 (TOO_MANY_REQUESTS) with a Retry-After header, in seconds.
+ * Reads are never held back. Neither are bulk imports, which have their own endpoint.
+ *
+ * Enabled unless admission.enabled=false.
+ */
+@Component
+@ConditionalOnProperty(name = "admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionInterceptor implements HandlerInterceptor, WebMvcConfigurer {
+    static final Set<String> WRITE_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+    // Marks a request that holds a write slot, so that it is given back when the request completes
+    static final String STARTED = AdmissionInterceptor.class.getName() + ".started";
+
+    AdmissionControl admission;
+
+    public AdmissionInterceptor(AdmissionControl admission) {
+        this.admission = admission;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this)
+                .addPathPatterns("/api/profiles", "/api/profiles/**", "/api/profileByUsername", "/api/updateUsername");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        if (!WRITE_METHODS.contains(request.getMethod())) {
+            return true;
+        }
+        long wait = admission.takeToken(client(request));
+        if (wait > 0) {
+            return reject(response, wait);
+        }
+        if (!admission.start()) {
+            // Overloaded: ask for a second's pause, which is long next to the queue target
+            return reject(response, TimeUnit.SECONDS.toNanos(1));
+        }
+        request.setAttribute(STARTED, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        if (request.getAttribute(STARTED) != null) {
+            request.removeAttribute(STARTED);
+            admission.finish();
+        }
+    }
+
+    // Get the client a write request is counted against
+    static String client(HttpServletRequest request) {
+        @SuppressWarnings("unchecked")
+        Map<String, String> variables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables != null && variables.containsKey("profileId")) {
+            return "profile:" + variables.get("profileId");
+        }
+        String username = request.getParameter("username");
+        if (username != null && !username.isEmpty()) {
+            return "username:" + username;
+        }
+        return "address:" + request.getRemoteAddr();
+    }
+
+    // Answer 429 with the time to wait, rounded up to whole seconds
+    private static boolean reject(HttpServletResponse response, long waitNanos) {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER,
+                Long.toString(Math.max(1, (waitNanos + 999_999_999) / 1_000_000_000)));
+        return false;
+    }
+}
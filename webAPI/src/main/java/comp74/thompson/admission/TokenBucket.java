@@ -0,0 +1,43 @@
+package comp74.thompson.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * A token bucket that refills at a steady rate up to a capacity, without locks.
+ *
+ * Instead of a count of tokens and a time of the last refill, the bucket keeps one
+ * number: the time at which it will be full again (the "theoretical arrival time" of
+ * the generic cell rate algorithm). Taking a token moves that time on by one token's
+ * worth of refill. The bucket has room as long as that time isn't more than a full
+ * bucket's worth of refill ahead of now. So taking a token is a single compare-and-set,
+ * retried if another thread took one at the same moment.
+ */
+public class TokenBucket {
+    final long nanosPerToken;
+    final long capacityNanos;
+    // The time (System.nanoTime) at which the bucket is full again. In the past if it's already full.
+    private final AtomicLong fullAt;
+
+    public TokenBucket(double tokensPerSecond, int capacity, long now) {
+        this.nanosPerToken = (long) (1_000_000_000 / tokensPerSecond);
+        this.capacityNanos = capacity * nanosPerToken;
+        this.fullAt = new AtomicLong(now - capacityNanos);
+    }
+
+    // Take a token at time now (System.nanoTime).
+    // Returns 0 if a token was taken, or else how many nanoseconds until one will be there.
+    public long tryTake(long now) {
+        while (true) {
+            long current = fullAt.get();
+            // Compared by difference, as nanoTime values should be
+            long next = (current - now > 0 ? current : now) + nanosPerToken;
+            long over = next - now - capacityNanos;
+            if (over > 0) {
+                return over;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
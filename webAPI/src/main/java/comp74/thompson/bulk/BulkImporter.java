@@ -0,0 +1,179 @@
+package comp74.thompson.bulk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+/*
+ * Imports postings from NDJSON: one JSON object per line, in the same shape the
+ * postings are written in (postingText, date, time and userName; postingId is ignored).
+ * A line without postingText just makes sure the profile exists.
+ * Profiles are created for usernames that don't exist yet.
+ *
+ * The input is read as a stream, so it can be any size. Lines are collected into
+ * batches of BATCH_SIZE and each batch is added with one Model.addPostings call per
+ * profile, instead of one call (and one lock, log record wait and ID) per posting.
+ * Lines that can't be used are skipped and reported in the result. That includes a posting
+ * dated before the newest posting its profile already has, which the Model won't add (see
+ * Model.addPostings), so each user's postings should be in order of time, at least from one
+ * batch to the next. A line that isn't
+ * JSON at all stops the import, because the rest of the input can't be trusted;
+ * everything before it has already been added.
+ */
+@Component
+public class BulkImporter {
+    // Number of lines added to the Model at a time
+    static final int BATCH_SIZE = 1000;
+
+    // One line of the input
+    record Line(String userName, String postingText, LocalDate date, LocalTime time) {
+    }
+
+    // A posting waiting in a batch, and the line it came from
+    record Pending(int line, Posting posting) {
+    }
+
+    Model model;
+    ObjectReader lineReader;
+
+    public BulkImporter(Model model, ObjectMapper objectMapper) {
+        this.model = model;
+        this.lineReader = objectMapper.readerFor(Line.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    // Read NDJSON from in and add it to the Model
+    public ImportResult importNdjson(InputStream in) throws IOException {
+        ImportResult result = new ImportResult();
+        Map<String, Profile> profiles = new HashMap<>();
+        Map<String, List<Pending>> batch = new LinkedHashMap<>();
+        int batchSize = 0;
+        try (MappingIterator<Line> lines = lineReader.readValues(in)) {
+            while (true) {
+                Line line;
+                try {
+                    if (!lines.hasNextValue()) {
+                        break;
+                    }
+                    line = lines.nextValue();
+                } catch (JsonParseException e) {
+                    result.addError(e.getLocation().getLineNr(), "Not JSON, import stopped: " + e.getOriginalMessage());
+                    break;
+                } catch (JsonMappingException e) {
+                    // The parser skips to the end of the bad line, so the import can go on
+                    result.addError(e.getLocation().getLineNr(), e.getOriginalMessage());
+                    continue;
+                }
+                int lineNr = lines.getCurrentLocation().getLineNr();
+                String error = validate(line);
+                if (error != null) {
+                    result.addError(lineNr, error);
+                    continue;
+                }
+                if (profile(line.userName(), profiles, result) == null) {
+                    result.addError(lineNr, "Could not create profile " + line.userName());
+                    continue;
+                }
+                if (line.postingText() != null) {
+                    Posting posting = new Posting(line.postingText());
+                    if (line.date() != null) {
+                        posting.setDateAndTime(LocalDateTime.of(line.date(), line.time()));
+                    }
+                    batch.computeIfAbsent(line.userName(), userName -> new ArrayList<>()).add(new Pending(lineNr, posting));
+                    if (++batchSize == BATCH_SIZE) {
+                        addBatch(batch, profiles, result);
+                        batchSize = 0;
+                    }
+                }
+            }
+        }
+        addBatch(batch, profiles, result);
+        return result;
+    }
+
+    // Check a line. Returns what is wrong with it, or null if it can be used.
+    static String validate(Line line) {
+        if (line == null || line.userName() == null || line.userName().isBlank()) {
+            return "userName is required";
+        }
+        if ((line.date() == null) != (line.time() == null)) {
+            return "date and time must be given together";
+        }
+        return null;
+    }
+
+    // Get the profile with a username, creating it if it doesn't exist
+    Profile profile(String userName, Map<String, Profile> profiles, ImportResult result) {
+        Profile profile = profiles.get(userName);
+        if (profile == null) {
+            List<Profile> found = model.getProfileByUsername(userName);
+            if (found != null) {
+                profile = found.get(0);
+            } else {
+                ResponseEntity<Profile> created = model.addProfile(new Profile(userName));
+                if (created.getStatusCode() == HttpStatus.CREATED) {
+                    profile = created.getBody();
+                    result.profilesCreated++;
+                } else {
+                    // Someone else created it at the same time
+                    found = model.getProfileByUsername(userName);
+                    profile = found == null ? null : found.get(0);
+                }
+            }
+            if (profile != null) {
+                profiles.put(userName, profile);
+            }
+        }
+        return profile;
+    }
+
+    // Add the postings collected so far, one call per profile, and empty the batch
+    void addBatch(Map<String, List<Pending>> batch, Map<String, Profile> profiles, ImportResult result) {
+        for (Map.Entry<String, List<Pending>> entry : batch.entrySet()) {
+            List<Posting> postings = new ArrayList<>(entry.getValue().size());
+            for (Pending pending : entry.getValue()) {
+                postings.add(pending.posting());
+            }
+            ResponseEntity<List<Posting>> added = model.addPostings(profiles.get(entry.getKey()), postings);
+            if (added.getStatusCode() == HttpStatus.CREATED) {
+                result.postingsCreated += added.getBody().size();
+                // The postings the Model didn't add are left without an ID
+                for (Pending pending : entry.getValue()) {
+                    if (pending.posting().getPostingId() == 0) {
+                        result.addError(pending.line(), "Dated before the newest posting of " + entry.getKey()
+                                + ", so it was not added");
+                    }
+                }
+            } else if (added.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE) {
+                result.addError(null, "The store is not taking changes, " + postings.size()
+                        + " postings of " + entry.getKey() + " were skipped");
+            } else {
+                result.addError(null, "Profile " + entry.getKey() + " was deleted during the import, "
+                        + postings.size() + " postings were skipped");
+            }
+        }
+        batch.clear();
+    }
+}
@@ -0,0 +1,35 @@
+package comp74.thompson.bulk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Data;
+
+/*
+ * What a bulk import did: how many profiles and postings it created,
+ * and the lines it could not use. Only the first MAX_ERRORS errors are listed,
+ * but errorCount counts all of them.
+ */
+@Data
+public class ImportResult {
+    static final int MAX_ERRORS = 100;
+
+    int profilesCreated;
+    int postingsCreated;
+    int errorCount;
+    List<Error> errors = new ArrayList<>();
+
+    // A line that was skipped, and why. The line is null if the error isn't about one line.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Error(Integer line, String message) {
+    }
+
+    void addError(Integer line, String message) {
+        errorCount++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new Error(line, message));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package comp74.thompson.changes;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import comp74.thompson.model.Posting;
+
+/*
+ * What is sent to change stream subscribers about one change to the store.
+ * The type says what happened, and only the fields that type needs are written:
+ *
+ *   profileAdded, profileDeleted   profileId, userName
+ *   profileUpdated                 profileId, userName, oldUserName
+ *   postAdded, postUpdated         profileId, userName, posting
+ *   postDeleted                    profileId, userName, postingIds (one ID)
+ *   postsDeleted                   profileId, userName, postingIds
+ *   reset                          nothing: the store was replaced, so everything should be fetched again
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ChangeEvent(String type, Integer profileId, String userName, String oldUserName,
+        Posting posting, List<Integer> postingIds) {
+
+    static final String RESET = "reset";
+
+    static ChangeEvent profile(String type, Integer profileId, String userName) {
+        return new ChangeEvent(type, profileId, userName, null, null, null);
+    }
+
+    static ChangeEvent posting(String type, Integer profileId, String userName, Posting posting) {
+        return new ChangeEvent(type, profileId, userName, null, posting, null);
+    }
+
+    static ChangeEvent postingIds(String type, Integer profileId, String userName, List<Integer> postingIds) {
+        return new ChangeEvent(type, profileId, userName, null, null, postingIds);
+    }
+}
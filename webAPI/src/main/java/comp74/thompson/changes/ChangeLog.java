@@ -0,0 +1,166 @@
+package comp74.thompson.changes;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.ModelListener;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+/*
+ * The most recent changes to the store, numbered in the order they were made.
+ *
+ * Every change the Model makes is turned into a ChangeEvent, serialized to JSON once,
+ * and put in a ring buffer of changes.buffer-size entries under the next sequence
+ * number (starting at 1). When the buffer is full the oldest change is overwritten,
+ * so a reader that falls more than buffer-size changes behind can no longer catch up
+ * from here and has to fetch the whole store again.
+ *
+ * The events are built while the Model holds the changed profile's lock, so they
+ * carry the profile and posting as they were right after the change, and the changes
+ * to one profile are numbered in the order they were made.
+ *
+ * The numbering starts again on every restart, so the ID a client is given for a change
+ * is the number together with an epoch that is different each time the application starts
+ * ("<epoch>-<sequence>"). An ID with another epoch can't be placed in this log.
+ */
+@Component
+public class ChangeLog implements ModelListener {
+
+    // One change: its sequence number, its event type, and the event as JSON
+    public record Change(long sequence, String type, String json) {
+    }
+
+    ObjectMapper objectMapper;
+    // Different on every start, so that the IDs of changes from before a restart aren't mistaken for new ones
+    final String epoch = Long.toHexString(System.currentTimeMillis());
+    private final Change[] ring;
+    private final ReentrantLock lock = new ReentrantLock();
+    // The sequence number of the latest change, 0 before the first one. Only written while holding the lock.
+    private volatile long latest;
+
+    public ChangeLog(Model model, ObjectMapper objectMapper,
+            @Value("${changes.buffer-size:65536}") int bufferSize) {
+        this.objectMapper = objectMapper;
+        this.ring = new Change[bufferSize];
+        model.addListener(this);
+    }
+
+    // Get the sequence number of the latest change, 0 if there hasn't been one
+    public long latest() {
+        return latest;
+    }
+
+    // Get the ID clients are given for the change with a sequence number
+    public String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    // Get the sequence number of the change with an ID, or null if the ID isn't one of this log's
+    // (it came from before a restart, or isn't an ID at all)
+    public Long sequenceOf(String eventId) {
+        String prefix = epoch + "-";
+        if (eventId == null || !eventId.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(eventId.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Get up to max of the changes that came after the change numbered after, oldest first.
+    // Returns null if some of them have already been overwritten, or if there never was a change
+    // numbered after.
+    public List<Change> read(long after, int max) {
+        lock.lock();
+        try {
+            if (after < latest - ring.length || after > latest) {
+                return null;
+            }
+            List<Change> changes = new ArrayList<>((int) Math.min(max, latest - after));
+            for (long sequence = after + 1; sequence <= latest && changes.size() < max; sequence++) {
+                changes.add(ring[(int) (sequence % ring.length)]);
+            }
+            return changes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Serialize an event and add it as the latest change
+    void publish(ChangeEvent event) {
+        // Serialized before taking the lock, so writers to different profiles only wait for each other to store it
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        lock.lock();
+        try {
+            long sequence = latest + 1;
+            ring[(int) (sequence % ring.length)] = new Change(sequence, event.type(), json);
+            latest = sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onProfileAdded(Profile profile) {
+        publish(ChangeEvent.profile("profileAdded", profile.getProfileId(), profile.getUserName()));
+    }
+
+    @Override
+    public void onProfileUpdated(Profile profile, String oldUserName) {
+        publish(new ChangeEvent("profileUpdated", profile.getProfileId(), profile.getUserName(), oldUserName,
+                null, null));
+    }
+
+    @Override
+    public void onProfileDeleted(Profile profile) {
+        publish(ChangeEvent.profile("profileDeleted", profile.getProfileId(), profile.getUserName()));
+    }
+
+    @Override
+    public void onPostAdded(Profile profile, Posting posting) {
+        publish(ChangeEvent.posting("postAdded", profile.getProfileId(), profile.getUserName(), posting));
+    }
+
+    @Override
+    public void onPostUpdated(Profile profile, Posting posting, String oldText) {
+        publish(ChangeEvent.posting("postUpdated", profile.getProfileId(), profile.getUserName(), posting));
+    }
+
+    @Override
+    public void onPostDeleted(Profile profile, Posting posting) {
+        publish(ChangeEvent.postingIds("postDeleted", profile.getProfileId(), profile.getUserName(),
+                List.of(posting.getPostingId())));
+    }
+
+    @Override
+    public void onPostsDeleted(Profile profile, Collection<Posting> postings) {
+        List<Integer> postingIds = new ArrayList<>(postings.size());
+        for (Posting posting : postings) {
+            postingIds.add(posting.getPostingId());
+        }
+        publish(ChangeEvent.postingIds("postsDeleted", profile.getProfileId(), profile.getUserName(), postingIds));
+    }
+
+    @Override
+    public void onLoaded() {
+        publish(new ChangeEvent(ChangeEvent.RESET, null, null, null, null, null));
+    }
+}
@@ -0,0 +1,209 @@
+package comp74.thompson.changes;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.ModelListener;
+
+import jakarta.annotation.PreDestroy;
+
+/*
+ * Sends the changes in the ChangeLog to Server-Sent Events subscribers.
+ *
+ * Each subscriber has its own position in the log. After every change, each subscriber
+ * that isn't already being sent to gets a task that sends it everything from its position
+ * to the latest change, SEND_BATCH changes at a time, and ends when it has caught up.
+ * So a slow subscriber only holds up its own task, and the writer that made the change
+ * never waits for anyone. A subscriber that falls so far behind that its next change has
+ * been overwritten gets a reset event instead, telling it to fetch the whole store again,
+ * and carries on from the latest change.
+ *
+ * Idle subscribers get a comment every changes.heartbeat-seconds so that connections
+ * that have gone away are noticed.
+ */
+@Component
+public class ChangeStream implements ModelListener, MeterBinder {
+    // Most changes read from the log at a time for one subscriber
+    static final int SEND_BATCH = 256;
+
+    ChangeLog changeLog;
+    final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    final SimpleAsyncTaskExecutor senders;
+    ScheduledExecutorService heartbeats;
+    Counter resets;
+
+    public ChangeStream(Model model, ChangeLog changeLog,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${changes.heartbeat-seconds:15}") long heartbeatSeconds) {
+        this.changeLog = changeLog;
+        // A thread per running task, so a subscriber blocked on a slow connection never keeps another waiting
+        this.senders = new SimpleAsyncTaskExecutor("changes-");
+        this.senders.setVirtualThreads(virtualThreads);
+        this.senders.setDaemon(true);
+        model.addListener(this);
+        if (heartbeatSeconds > 0) {
+            heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "changes-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            });
+            heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    // Start sending the changes after the change with the ID after to a new subscriber.
+    // If after is null, only changes from now on are sent. An ID that isn't from this run of the
+    // log (see ChangeLog) is placed before every change it keeps, so the subscriber gets a reset first.
+    public SseEmitter subscribe(String after) {
+        // No timeout: the stream stays open until the client goes away
+        SseEmitter emitter = new SseEmitter(0L);
+        long position;
+        if (after == null) {
+            position = changeLog.latest();
+        } else {
+            Long sequence = changeLog.sequenceOf(after);
+            position = sequence == null ? Long.MIN_VALUE : sequence;
+        }
+        Subscriber subscriber = new Subscriber(emitter, position);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscriber.schedule();
+        return emitter;
+    }
+
+    // Get the number of open subscriptions
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    // Called once the changed profile's lock has been released, so waking the subscribers doesn't hold it up
+    @Override
+    public void afterChange() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.schedule();
+        }
+    }
+
+    void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeatDue = true;
+            subscriber.schedule();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("changes.subscribers", subscribers, Set::size)
+                .description("Open change stream subscriptions")
+                .register(registry);
+        Gauge.builder("changes.latest", changeLog, ChangeLog::latest)
+                .description("Sequence number of the latest change")
+                .register(registry);
+        resets = Counter.builder("changes.resets")
+                .description("Subscribers that fell too far behind and were told to fetch everything again")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (heartbeats != null) {
+            heartbeats.shutdownNow();
+        }
+        disconnectAll();
+    }
+
+    // End every subscription. The clients see the stream end, and an EventSource reconnects.
+    void disconnectAll() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    // One subscription. Its position is only used by the one task sending to it at a time.
+    class Subscriber {
+        final SseEmitter emitter;
+        // The sequence number of the last change sent
+        long position;
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile boolean heartbeatDue;
+
+        Subscriber(SseEmitter emitter, long position) {
+            this.emitter = emitter;
+            this.position = position;
+        }
+
+        // Start a task to send the changes, unless one is already running
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                senders.execute(this::send);
+            }
+        }
+
+        void send() {
+            try {
+                List<ChangeLog.Change> changes = changeLog.read(position, SEND_BATCH);
+                while (changes == null || !changes.isEmpty()) {
+                    if (changes == null) {
+                        sendReset();
+                    } else {
+                        for (ChangeLog.Change change : changes) {
+                            emitter.send(SseEmitter.event()
+                                    .id(changeLog.eventId(change.sequence()))
+                                    .name(change.type())
+                                    .data(change.json(), MediaType.APPLICATION_JSON));
+                            position = change.sequence();
+                        }
+                        heartbeatDue = false;
+                    }
+                    changes = changeLog.read(position, SEND_BATCH);
+                }
+                if (heartbeatDue) {
+                    heartbeatDue = false;
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+            } catch (IOException | RuntimeException e) {
+                // The client has gone away, or the emitter has already been completed. Anything
+                // else unexpected also drops the subscriber, rather than leaving it scheduled forever.
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+                return;
+            }
+            scheduled.set(false);
+            // A change made after the last read but before the flag was cleared didn't start a task
+            if (changeLog.latest() != position && subscribers.contains(this)) {
+                schedule();
+            }
+        }
+
+        // Tell the subscriber it has missed changes, and carry on from the latest change
+        void sendReset() throws IOException {
+            position = changeLog.latest();
+            if (resets != null) {
+                resets.increment();
+            }
+            emitter.send(SseEmitter.event()
+                    .id(changeLog.eventId(position))
+                    .name(ChangeEvent.RESET)
+                    .data("{\"type\":\"reset\"}", MediaType.APPLICATION_JSON));
+        }
+    }
+}
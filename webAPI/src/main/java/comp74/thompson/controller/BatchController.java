@@ -0,0 +1,169 @@
+package comp74.thompson.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+/*
+ * Endpoints that fetch many profiles or postings in one request, instead of one request each.
+ * Everything in a batch is read as it was at one moment (see Model.readLocked), so a batch
+ * never mixes the state of one profile before a change with another profile after it.
+ * Whatever isn't found is listed in the response rather than failing the whole batch.
+ */
+@RestController
+@RequestMapping("/api")
+@CrossOrigin
+public class BatchController {
+    // Most IDs and usernames a batch can ask for
+    static final int MAX_BATCH_SIZE = MainController.MAX_PAGE_SIZE;
+
+    // The body of a batch read of profiles. Either list can be left out.
+    record ProfilesRequest(List<Integer> profileIds, List<String> usernames) {
+    }
+
+    // The body of a batch read of postings
+    record PostingsRequest(List<Integer> postingIds) {
+    }
+
+    // The profiles a lookup found by ID, in the order they were asked for, and what it didn't find.
+    // Keyed by ID rather than kept in a set, since profiles that are equal aren't always the same profile.
+    record FoundProfiles(Map<Integer, Profile> profiles, Set<Integer> missingProfileIds, Set<String> missingUsernames) {
+    }
+
+    // The postings a lookup found by ID, in the order they were asked for, and the IDs it didn't find
+    record FoundPostings(Map<Integer, Posting> postings, Set<Integer> missingPostingIds) {
+        Collection<Profile> authors() {
+            List<Profile> authors = new ArrayList<>(postings.size());
+            for (Posting posting : postings.values()) {
+                authors.add(posting.getAuthor());
+            }
+            return authors;
+        }
+    }
+
+    Model model;
+    ProfileJsonWriter jsonWriter;
+    ProfileJsonCache jsonCache;
+
+    public BatchController(Model model, ProfileJsonWriter jsonWriter, ProfileJsonCache jsonCache) {
+        this.model = model;
+        this.jsonWriter = jsonWriter;
+        this.jsonCache = jsonCache;
+    }
+
+    // Get many profiles, with their postings, by ID and/or by username.
+    // Returns {"profiles": [...], "missingProfileIds": [...], "missingUsernames": [...]} and a status code of 200 (OK),
+    // even if some were not found. A profile asked for twice (by ID and by username) is only returned once.
+    // Returns a status code of 400 (BAD_REQUEST) if more than MAX_BATCH_SIZE IDs and usernames are asked for.
+    @PostMapping("/profiles:batchGet")
+    public ResponseEntity<byte[]> batchGetProfiles(@RequestBody ProfilesRequest request) throws IOException {
+        List<Integer> profileIds = request.profileIds() == null ? List.of() : request.profileIds();
+        List<String> usernames = request.usernames() == null ? List.of() : request.usernames();
+        if (profileIds.size() + usernames.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Only the JSON is taken while the profiles are locked. It is built from a profile that can't
+        // change, and once built it doesn't change either, so the response can be written after.
+        List<byte[]> profiles = new ArrayList<>();
+        FoundProfiles found = model.readLocked(() -> findProfiles(profileIds, usernames),
+                lookup -> lookup.profiles().values(), locked -> {
+                    for (Profile profile : locked.profiles().values()) {
+                        profiles.add(profileJson(profile));
+                    }
+                    return locked;
+                });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        jsonWriter.writeProfileBatch(out, profiles, found.missingProfileIds(), found.missingUsernames());
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(out.toByteArray());
+    }
+
+    // Get many postings by ID.
+    // Returns {"postings": [...], "missingPostingIds": [...]} and a status code of 200 (OK), even if some were not found.
+    // Returns a status code of 400 (BAD_REQUEST) if more than MAX_BATCH_SIZE IDs are asked for.
+    @PostMapping("/postings:batchGet")
+    public ResponseEntity<byte[]> batchGetPostings(@RequestBody PostingsRequest request) {
+        List<Integer> postingIds = request.postingIds() == null ? List.of() : request.postingIds();
+        if (postingIds.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        // A posting's text can change, so the postings are written while their profiles are locked
+        byte[] json = model.readLocked(() -> findPostings(postingIds), FoundPostings::authors, locked -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                jsonWriter.writePostingBatch(out, locked.postings().values(), locked.missingPostingIds());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(json);
+    }
+
+    // Look up profiles by ID and by username. A profile that is still being added (it has claimed
+    // its username but isn't stored under its ID yet) is not found.
+    FoundProfiles findProfiles(List<Integer> profileIds, List<String> usernames) {
+        FoundProfiles found = new FoundProfiles(new LinkedHashMap<>(), new LinkedHashSet<>(), new LinkedHashSet<>());
+        for (Integer profileId : profileIds) {
+            Profile profile = model.getProfile(profileId);
+            if (profile != null) {
+                found.profiles().putIfAbsent(profile.getProfileId(), profile);
+            } else {
+                found.missingProfileIds().add(profileId);
+            }
+        }
+        for (String username : usernames) {
+            List<Profile> profiles = model.getProfileByUsername(username);
+            Profile profile = profiles == null ? null : profiles.get(0);
+            if (profile != null && model.getProfile(profile.getProfileId()) == profile) {
+                found.profiles().putIfAbsent(profile.getProfileId(), profile);
+            } else {
+                found.missingUsernames().add(username);
+            }
+        }
+        return found;
+    }
+
+    // Look up postings by ID
+    FoundPostings findPostings(List<Integer> postingIds) {
+        FoundPostings found = new FoundPostings(new LinkedHashMap<>(), new LinkedHashSet<>());
+        for (Integer postingId : postingIds) {
+            Posting posting = model.getPosting(postingId);
+            if (posting != null) {
+                found.postings().put(postingId, posting);
+            } else {
+                found.missingPostingIds().add(postingId);
+            }
+        }
+        return found;
+    }
+
+    // Get the JSON of a profile from the cache. The profile must be locked, so its version can't move on.
+    private byte[] profileJson(Profile profile) {
+        try {
+            return jsonCache.get(profile, profile.getVersion());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package comp74.thompson.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import comp74.thompson.bulk.BulkImporter;
+import comp74.thompson.bulk.ImportResult;
+import comp74.thompson.model.Model;
+
+@RestController
+@RequestMapping("/api/bulk")
+@CrossOrigin
+public class BulkController {
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    Model model;
+    BulkImporter importer;
+    ProfileJsonWriter jsonWriter;
+
+    public BulkController(Model model, BulkImporter importer, ProfileJsonWriter jsonWriter) {
+        this.model = model;
+        this.importer = importer;
+        this.jsonWriter = jsonWriter;
+    }
+
+    // Import postings from NDJSON in the request body, one posting per line, in the same format as the export.
+    // The body can be gzipped if the request has a Content-Encoding: gzip header.
+    // Returns what was created and the lines that were skipped, with a status code of 200 (OK).
+    @PostMapping("/postings")
+    public ResponseEntity<ImportResult> importPostings(InputStream body,
+            @RequestHeader(name = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding)
+            throws IOException {
+        InputStream in = "gzip".equalsIgnoreCase(contentEncoding) ? new GZIPInputStream(body, 65536) : body;
+        return ResponseEntity.ok(importer.importNdjson(in));
+    }
+
+    // Export every profile and posting as NDJSON, one posting per line (see ProfileJsonWriter.writeNdjson).
+    // With gzip=true, the export is a gzipped file to download.
+    // The store isn't frozen while it is written, so changes made meanwhile may or may not be included.
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(name = "gzip", required = false, defaultValue = "false") boolean gzip) {
+        if (!gzip) {
+            return ResponseEntity.ok().contentType(NDJSON)
+                    .body(out -> jsonWriter.writeNdjson(out, model.getProfilesAfter(null).iterator()));
+        }
+        return ResponseEntity.ok().contentType(GZIP)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("export.ndjson.gz").build().toString())
+                .body(out -> jsonWriter.writeNdjson(new GZIPOutputStream(out, 65536),
+                        model.getProfilesAfter(null).iterator()));
+    }
+}
@@ -0,0 +1,35 @@
+package comp74.thompson.controller;
+
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import comp74.thompson.changes.ChangeStream;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin
+public class ChangeController {
+    ChangeStream changeStream;
+
+    public ChangeController(ChangeStream changeStream) {
+        this.changeStream = changeStream;
+    }
+
+    // Stream changes to profiles and postings as Server-Sent Events, oldest first.
+    // Each event's id is "<epoch>-<sequence number>" and its name is its type (see ChangeEvent).
+    // Starts after the change with the id after, or after the Last-Event-ID a reconnecting
+    // EventSource sends, or with the next change if neither is given.
+    // If those changes are too old to be sent, or the id is from before the application restarted,
+    // a reset event comes first: the client should fetch what it needs from the other endpoints
+    // again and keep applying the events that follow.
+    @GetMapping(path = "/changes", produces = "text/event-stream")
+    public SseEmitter getChanges(@RequestParam(name = "after", required = false) String after,
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        return changeStream.subscribe(lastEventId != null ? lastEventId : after);
+    }
+}
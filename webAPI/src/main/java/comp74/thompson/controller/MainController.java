@@ -4,12 +4,26 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import comp74.thompson.feed.FeedService;
 import comp74.thompson.model.Model;
 import comp74.thompson.model.Posting;
+import comp74.thompson.model.PostingKey;
 import comp74.thompson.model.Profile;
+import comp74.thompson.writes.IdempotencyCache;
+import comp74.thompson.writes.WriteQueue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -17,44 +31,159 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 
 @RestController
 @RequestMapping("/api")
-@CrossOrigin
+@CrossOrigin(exposedHeaders = { HttpHeaders.ETAG, MainController.NEXT_CURSOR_HEADER,
+        IdempotencyCache.REPLAYED_HEADER })
 public class MainController {
+    // Largest page a client can ask for with the limit parameter
+    static final int MAX_PAGE_SIZE = 1000;
+    // Response header holding the cursor for the next page. Absent on the last page.
+    static final String NEXT_CURSOR_HEADER = "X-Next-After";
+
+    // Number of feed postings returned when no limit is given
+    static final int DEFAULT_FEED_SIZE = 20;
+
     Model model;
+    FeedService feedService;
+    ProfileJsonWriter jsonWriter;
+    ProfileJsonCache jsonCache;
+    IdempotencyCache idempotency;
+    WriteQueue writeQueue;
     
-    public MainController(Model model) {
+    public MainController(Model model, FeedService feedService, ProfileJsonWriter jsonWriter,
+            ProfileJsonCache jsonCache, IdempotencyCache idempotency, WriteQueue writeQueue) {
         this.model = model;
+        this.feedService = feedService;
+        this.jsonWriter = jsonWriter;
+        this.jsonCache = jsonCache;
+        this.idempotency = idempotency;
+        this.writeQueue = writeQueue;
     }
 
     //Get all profiles or get a profile by username
     // Username is optional. If username is not provided, return all profiles.
+    // Profiles are returned in profileId order and streamed to the client.
+    // If limit is given, return at most that many profiles with an ID greater than after,
+    // and put the cursor for the next page in the X-Next-After header.
+    // If includePostings is false, the profiles are returned without their postings.
+    // Profiles and postings are JSON unless the Accept header asks for CBOR or Smile (see WireFormat).
     @GetMapping("/profiles")
-    public List<Profile> getProfiles(
+    public ResponseEntity<StreamingResponseBody> getProfiles(
             @RequestParam(name = "username", required = false, 
-                    defaultValue = "") String username) {
+                    defaultValue = "") String username,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "after", required = false) Integer after,
+            @RequestParam(name = "includePostings", required = false,
+                    defaultValue = "true") boolean includePostings,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
+        WireFormat format = WireFormat.negotiate(accept);
+        // If username is not empty, return the profile with that username
+        if (!username.isEmpty()) {
+            List<Profile> profiles = model.getProfileByUsername(username);
+            if (profiles == null) {
+                return ResponseEntity.ok().build();
+            }
+            return streamProfiles(ResponseEntity.ok(), format, profiles, includePostings);
+        }
         // If username is empty, return all profiles
-        if (username.isEmpty()) {
-            return model.getProfiles();
-        } else
-            // If username is not empty, return the profile with that username
-            return model.getProfileByUsername(username);
+        Collection<Profile> profiles = model.getProfilesAfter(after);
+        if (limit == null) {
+            return streamProfiles(ResponseEntity.ok(), format, profiles, includePostings);
+        }
+        // Only the references for one page are copied, the profiles are written as they are streamed
+        List<Profile> page = new ArrayList<>();
+        Iterator<Profile> iterator = profiles.iterator();
+        int pageSize = pageSize(limit);
+        while (page.size() < pageSize && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (iterator.hasNext()) {
+            response.header(NEXT_CURSOR_HEADER, page.get(page.size() - 1).getProfileId().toString());
+        }
+        return streamProfiles(response, format, page, includePostings);
+    }
+
+    // Clamp a requested page size to between 1 and MAX_PAGE_SIZE
+    static int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamProfiles(ResponseEntity.BodyBuilder response,
+            WireFormat format, Collection<Profile> profiles, boolean includePostings) {
+        return negotiated(response, format)
+                .body(out -> jsonWriter.writeProfiles(out, format, profiles.iterator(), includePostings));
+    }
+
+    // Set the content type of a response that could have been in another format
+    static ResponseEntity.BodyBuilder negotiated(ResponseEntity.BodyBuilder response, WireFormat format) {
+        return response.contentType(format.mediaType()).varyBy(HttpHeaders.ACCEPT);
     }
 
     // Add a profile. Controller gets the profile information from the request body.
+    // With an Idempotency-Key header, a retry gets the first attempt's response again (see IdempotencyCache).
     @PostMapping("/profiles")
-    public ResponseEntity<Profile> addProfile(@RequestBody Profile profile) {
-        return model.addProfile(profile);
+    public ResponseEntity<?> addProfile(@RequestBody Profile profile,
+            @RequestHeader(name = IdempotencyCache.KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotency.once(idempotencyKey, IdempotencyCache.request("POST /profiles", profile.getUserName()),
+                () -> model.addProfile(profile));
     }
 
     // Get a profile by ID. Controller gets the profile by ID.
+    // Returns a status code of 304 (NOT_MODIFIED) if the client's copy (If-None-Match) is still current.
+    // Returns a status code of 404 (NOT_FOUND) if the profile was not found.
     @GetMapping("/profiles/{profileId}")
-    public Profile getProfile(@PathVariable Integer profileId) {
-        return model.getProfile(profileId);
+    public ResponseEntity<byte[]> getProfile(@PathVariable Integer profileId,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept)
+            throws JsonProcessingException {
+        return cachedProfile(model.getProfile(profileId), ifNoneMatch, WireFormat.negotiate(accept));
+    }
+
+    // Answer with the cached JSON (or CBOR or Smile) of a profile, tagged with its version
+    private ResponseEntity<byte[]> cachedProfile(Profile profile, String ifNoneMatch, WireFormat format)
+            throws JsonProcessingException {
+        if (profile == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // Read the version before the JSON, so the JSON is at least as new as the ETag
+        long version = profile.getVersion();
+        String etag = jsonCache.etag(profile, version, format);
+        if (anyTagMatches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        return negotiated(ResponseEntity.ok(), format)
+                .eTag(etag)
+                .body(jsonCache.get(profile, version, format));
+    }
+
+    // Check whether an If-None-Match header names an ETag. The header can list several tags, or be *
+    // for any, and it compares them weakly: W/"x" and "x" are the same tag. The tags this API
+    // makes have no commas in them, so splitting the list at commas can't make a false match.
+    static boolean anyTagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = opaqueTag(etag);
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || opaqueTag(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The quoted part of an entity tag, without the W/ of a weak one
+    private static String opaqueTag(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
     }
 
     // Delete a profile by ID. Controller gets the profile by ID.
@@ -70,10 +199,117 @@ public class MainController {
         return model.deleteProfile(profile);
     }
 
-    // Get all postings for a profile. Controller gets the profile by ID.
+    // Get the postings for a profile. Controller gets the profile by ID.
+    // Postings are returned oldest first and streamed to the client.
+    // If order is "desc", postings are returned newest first, so limit=N&order=desc returns the latest N.
+    // If since and/or until are given (ISO date-times such as 2024-01-31T13:45:00),
+    // only postings created at or after since and before until are returned.
+    // If limit is given, return at most that many postings that come after the posting with ID after,
+    // and put the cursor for the next page in the X-Next-After header.
+    // Returns a status code of 404 (NOT_FOUND) if the profile was not found.
     @GetMapping("/profiles/{profileId}/postings")
-    public List<Posting> getPostings(@PathVariable Integer profileId) {
-        return model.getProfile(profileId).getPostings();
+    public ResponseEntity<StreamingResponseBody> getPostings(@PathVariable Integer profileId,
+            @RequestParam(name = "since", required = false)
+                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(name = "until", required = false)
+                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime until,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "after", required = false) Integer after,
+            @RequestParam(name = "order", required = false, defaultValue = "asc") String order,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
+        Profile profile = model.getProfile(profileId);
+        if (profile == null) {
+            return ResponseEntity.notFound().build();
+        }
+        boolean newestFirst = "desc".equalsIgnoreCase(order);
+        Collection<Posting> postings = model.getPostings(profile, since, until, after, newestFirst);
+        WireFormat format = WireFormat.negotiate(accept);
+        ResponseEntity.BodyBuilder response = negotiated(ResponseEntity.ok(), format);
+        if (limit == null) {
+            return response.body(out -> jsonWriter.writePostings(out, format, postings.iterator()));
+        }
+        // Only the references for one page are copied, the postings are written as they are streamed
+        List<Posting> page = new ArrayList<>();
+        Iterator<Posting> iterator = postings.iterator();
+        int pageSize = pageSize(limit);
+        while (page.size() < pageSize && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        if (iterator.hasNext()) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.get(page.size() - 1).getPostingId()));
+        }
+        return response.body(out -> jsonWriter.writePostings(out, format, page.iterator()));
+    }
+
+    // Make a profile follow another profile. Controller gets both profiles by ID.
+    // Returns a status code of 204 (NO_CONTENT) if the profile is now followed.
+    // Returns a status code of 400 (BAD_REQUEST) if a profile tries to follow itself.
+    // Returns a status code of 404 (NOT_FOUND) if either profile was not found.
+    @PutMapping("/profiles/{profileId}/following/{followeeId}")
+    public ResponseEntity<Void> follow(@PathVariable Integer profileId, @PathVariable Integer followeeId) {
+        return feedService.follow(model.getProfile(profileId), model.getProfile(followeeId));
+    }
+
+    // Make a profile stop following another profile. Controller gets both profiles by ID.
+    // Returns a status code of 204 (NO_CONTENT) if the profile was unfollowed.
+    // Returns a status code of 404 (NOT_FOUND) if either profile was not found or wasn't followed.
+    @DeleteMapping("/profiles/{profileId}/following/{followeeId}")
+    public ResponseEntity<Void> unfollow(@PathVariable Integer profileId, @PathVariable Integer followeeId) {
+        return feedService.unfollow(model.getProfile(profileId), model.getProfile(followeeId));
+    }
+
+    // Get the IDs of the profiles a profile follows.
+    // Returns a status code of 404 (NOT_FOUND) if the profile was not found.
+    @GetMapping("/profiles/{profileId}/following")
+    public ResponseEntity<List<Integer>> getFollowing(@PathVariable Integer profileId) {
+        Profile profile = model.getProfile(profileId);
+        if (profile == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(feedService.getFollowing(profile));
+    }
+
+    // Get the IDs of the profiles that follow a profile.
+    // Returns a status code of 404 (NOT_FOUND) if the profile was not found.
+    @GetMapping("/profiles/{profileId}/followers")
+    public ResponseEntity<List<Integer>> getFollowers(@PathVariable Integer profileId) {
+        Profile profile = model.getProfile(profileId);
+        if (profile == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(feedService.getFollowers(profile));
+    }
+
+    // Get the home feed of a profile: the postings of the profiles it follows, newest first.
+    // Returns at most limit postings (20 by default) that come after the cursor after, and puts the
+    // cursor for the next page in the X-Next-After header. The feed is in order of time, not of postingId,
+    // so the cursor is the time and ID of the last posting on the page (see PostingKey).
+    // Returns a status code of 400 (BAD_REQUEST) if after isn't such a cursor.
+    // Returns a status code of 404 (NOT_FOUND) if the profile was not found.
+    @GetMapping("/profiles/{profileId}/feed")
+    public ResponseEntity<StreamingResponseBody> getFeed(@PathVariable Integer profileId,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "after", required = false) String after,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
+        Profile profile = model.getProfile(profileId);
+        if (profile == null) {
+            return ResponseEntity.notFound().build();
+        }
+        PostingKey cursor = PostingKey.parse(after);
+        if (after != null && cursor == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        int pageSize = pageSize(limit == null ? DEFAULT_FEED_SIZE : limit);
+        // Ask for one extra posting to find out if there is a next page
+        List<Posting> feed = feedService.getFeed(profile, cursor, pageSize + 1);
+        WireFormat format = WireFormat.negotiate(accept);
+        ResponseEntity.BodyBuilder response = negotiated(ResponseEntity.ok(), format);
+        if (feed.size() > pageSize) {
+            feed = feed.subList(0, pageSize);
+            response.header(NEXT_CURSOR_HEADER, PostingKey.of(feed.get(pageSize - 1)).toString());
+        }
+        List<Posting> page = feed;
+        return response.body(out -> jsonWriter.writePostings(out, format, page.iterator()));
     }
 
     // Add a posting for a profile. Controller gets the profile by ID.
@@ -81,11 +317,16 @@ public class MainController {
     // Sends profile and posting to model.
     // Returns a status code of 201 (CREATED) if the posting was added.
     // Returns a status code of 404 (NOT_FOUND) if the profile was not found.
+    // With an Idempotency-Key header, a retry gets the first attempt's response again instead of
+    // adding the posting twice.
     @PostMapping("/profiles/{profileId}/postings")
-    public ResponseEntity<Posting> addPosting(@PathVariable Integer profileId, 
-            @RequestBody Posting posting) {
+    public ResponseEntity<?> addPosting(@PathVariable Integer profileId, 
+            @RequestBody Posting posting,
+            @RequestHeader(name = IdempotencyCache.KEY_HEADER, required = false) String idempotencyKey) {
         Profile profile = model.getProfile(profileId);
-        ResponseEntity<Posting> newPosting = model.addPost(profile, posting);
+        ResponseEntity<?> newPosting = idempotency.once(idempotencyKey,
+                IdempotencyCache.request("POST /profiles/" + profileId + "/postings", posting.getPostingText()),
+                () -> writeQueue.addPost(profile, posting));
         return newPosting;
     }
 
@@ -138,22 +379,28 @@ public class MainController {
     // Returns a status code of 201 (CREATED) if the posting was added.
     // Returns a status code of 404 (NOT_FOUND) if the profile was not found.
     @PostMapping("/profileByUsername")
-    public ResponseEntity<Posting> addPostingByUsername(@RequestParam(name = "username", required = false, defaultValue = "") String username,
-            @RequestBody Posting posting) {
-        Profile profile = model.getProfileByUsername(username).get(0);
-        ResponseEntity<Posting> newPosting = model.addPost(profile, posting);
+    public ResponseEntity<?> addPostingByUsername(@RequestParam(name = "username", required = false, defaultValue = "") String username,
+            @RequestBody Posting posting,
+            @RequestHeader(name = IdempotencyCache.KEY_HEADER, required = false) String idempotencyKey) {
+        List<Profile> profiles = model.getProfileByUsername(username);
+        Profile profile = profiles == null ? null : profiles.get(0);
+        ResponseEntity<?> newPosting = idempotency.once(idempotencyKey,
+                IdempotencyCache.request("POST /profileByUsername?username=" + username, posting.getPostingText()),
+                () -> writeQueue.addPost(profile, posting));
         return newPosting;
     }
 
     // Get all postings for a profile. Controller gets the profile by username.
+    // Returns a status code of 304 (NOT_MODIFIED) if the client's copy (If-None-Match) is still current.
+    // Returns a status code of 404 (NOT_FOUND) if the profile was not found.
     @GetMapping("/profileByUsername")
-    public Profile getProfileByUsername(
-            @RequestParam(name = "username", required = false, defaultValue = "") String username) {
-        Profile profile = model.getProfileByUsername(username).get(0);
-        if (profile == null) {
-            return null;
-    }
-    return profile;
+    public ResponseEntity<byte[]> getProfileByUsername(
+            @RequestParam(name = "username", required = false, defaultValue = "") String username,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept)
+            throws JsonProcessingException {
+        List<Profile> profiles = model.getProfileByUsername(username);
+        return cachedProfile(profiles == null ? null : profiles.get(0), ifNoneMatch, WireFormat.negotiate(accept));
     }
 
     // Update a profile by username. Controller gets the profile by username.
@@ -164,7 +411,8 @@ public class MainController {
         @RequestParam(name = "username", required = false, defaultValue = "") String username,
             @RequestBody Map<String, String> request) {
         String newUsername = request.get("newUsername");
-        Profile profileToUpdate = model.getProfileByUsername(username).get(0);
+        List<Profile> profiles = model.getProfileByUsername(username);
+        Profile profileToUpdate = profiles == null ? null : profiles.get(0);
         ResponseEntity<Profile> updatedProfile = model.updateProfile(profileToUpdate, newUsername);
         return updatedProfile;
     }
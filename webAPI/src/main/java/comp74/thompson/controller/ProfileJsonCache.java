@@ -0,0 +1,169 @@
+package comp74.thompson.controller;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.ModelListener;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+/*
+ * Serialized JSON of recently read profiles, so that reading a profile that hasn't
+ * changed doesn't serialize it (and all of its postings) again. Profiles asked for
+ * as CBOR or Smile are cached in those formats too, in the same entry.
+ *
+ * The cache is bounded by the total size of the JSON it holds and uses Caffeine's
+ * W-TinyLFU eviction. Each entry is tagged with the profile version it was built from,
+ * and is only used while the profile is still at that version. The Model's change
+ * events also drop the entry straight away so stale JSON doesn't take up room.
+ */
+@Component
+public class ProfileJsonCache implements ModelListener, MeterBinder {
+
+    // The serialized profile at a version, in each WireFormat it has been asked for.
+    // Indexed by the format's ordinal, and null for the formats it hasn't been.
+    record Entry(long version, byte[][] encoded) {
+        int size() {
+            int size = 0;
+            for (byte[] bytes : encoded) {
+                size += bytes == null ? 0 : bytes.length;
+            }
+            return size;
+        }
+    }
+
+    static final WireFormat[] FORMATS = WireFormat.values();
+
+    Map<WireFormat, ObjectMapper> mappers = new EnumMap<>(WireFormat.class);
+    Cache<Integer, Entry> cache;
+    // Changes on every start, so ETags from before a restart never match
+    final String epoch = Long.toHexString(System.currentTimeMillis());
+
+    public ProfileJsonCache(Model model, ObjectMapper objectMapper,
+            @Value("${cache.profile-json.max-bytes:67108864}") long maxBytes) {
+        for (WireFormat format : FORMATS) {
+            mappers.put(format, format.mapper(objectMapper));
+        }
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Integer profileId, Entry entry) -> entry.size())
+                .recordStats()
+                .build();
+        model.addListener(this);
+    }
+
+    // Get the ETag of a profile's JSON at a version
+    public String etag(Profile profile, long version) {
+        return etag(profile, version, WireFormat.JSON);
+    }
+
+    // Get the ETag of a profile at a version in a format. Each format is a different representation,
+    // so gets a different tag. The tag is weak, because Tomcat won't gzip a response with a strong one
+    // (the gzipped bytes aren't the bytes it names), and a weak one is all If-None-Match needs.
+    public String etag(Profile profile, long version, WireFormat format) {
+        String suffix = format == WireFormat.JSON ? "" : "-" + format.name().toLowerCase();
+        return "W/\"" + profile.getProfileId() + "-" + version + "-" + epoch + suffix + "\"";
+    }
+
+    // Get the JSON of a profile at the given version, serializing it only if it isn't cached.
+    // The version must be read from the profile before calling this.
+    public byte[] get(Profile profile, long version) throws JsonProcessingException {
+        return get(profile, version, WireFormat.JSON);
+    }
+
+    // Get a profile at the given version in a format, serializing it only if it isn't cached.
+    // The version must be read from the profile before calling this.
+    public byte[] get(Profile profile, long version, WireFormat format) throws JsonProcessingException {
+        Entry entry = cache.getIfPresent(profile.getProfileId());
+        byte[][] encoded;
+        if (entry != null && entry.version() == version) {
+            if (entry.encoded()[format.ordinal()] != null) {
+                return entry.encoded()[format.ordinal()];
+            }
+            // Keep the other formats. The entry is replaced rather than changed so that its weight stays right.
+            encoded = entry.encoded().clone();
+        } else {
+            encoded = new byte[FORMATS.length][];
+        }
+        byte[] bytes = mappers.get(format).writeValueAsBytes(profile);
+        encoded[format.ordinal()] = bytes;
+        cache.put(profile.getProfileId(), new Entry(version, encoded));
+        return bytes;
+    }
+
+    // Get the number of cached profiles
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    // Publish the hits, misses and evictions of the cache, and the size of the JSON in it
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "profileJson");
+        Gauge.builder("cache.profile.json.size", cache,
+                c -> c.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .description("Size of the cached profile JSON")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private void invalidate(Profile profile) {
+        cache.invalidate(profile.getProfileId());
+    }
+
+    @Override
+    public void onProfileUpdated(Profile profile, String oldUserName) {
+        invalidate(profile);
+    }
+
+    @Override
+    public void onProfileDeleted(Profile profile) {
+        invalidate(profile);
+    }
+
+    @Override
+    public void onPostAdded(Profile profile, Posting posting) {
+        invalidate(profile);
+    }
+
+    @Override
+    public void onPostsAdded(Profile profile, List<Posting> postings) {
+        invalidate(profile);
+    }
+
+    @Override
+    public void onPostUpdated(Profile profile, Posting posting, String oldText) {
+        invalidate(profile);
+    }
+
+    @Override
+    public void onPostDeleted(Profile profile, Posting posting) {
+        invalidate(profile);
+    }
+
+    @Override
+    public void onPostsDeleted(Profile profile, Collection<Posting> postings) {
+        invalidate(profile);
+    }
+
+    @Override
+    public void onLoaded() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,166 @@
+package comp74.thompson.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+/*
+ * Writes profiles and postings as a JSON array (or as NDJSON, one value per line)
+ * straight to the response stream, one element at a time.
+ * Only the element being written is held in memory, so the response costs the same amount of heap no matter how big the store is.
+ * Arrays of profiles and postings can also be written as CBOR or Smile (see WireFormat).
+ */
+@Component
+public class ProfileJsonWriter {
+
+    // A format's mapper and the writers made from it
+    record Writers(ObjectMapper mapper, ObjectWriter profile, ObjectWriter profileSummary, ObjectWriter posting) {
+    }
+
+    ObjectMapper objectMapper;
+    Map<WireFormat, Writers> writers = new EnumMap<>(WireFormat.class);
+    Writers json;
+
+    // Leaves the postings out of a profile
+    @JsonIgnoreProperties("postings")
+    static abstract class ProfileSummaryMixin {
+    }
+
+    public ProfileJsonWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        for (WireFormat format : WireFormat.values()) {
+            ObjectMapper mapper = format.mapper(objectMapper);
+            // Don't flush after every element, let the generator fill its buffer first
+            writers.put(format, new Writers(mapper,
+                    mapper.writerFor(Profile.class)
+                            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE),
+                    mapper.copy()
+                            .addMixIn(Profile.class, ProfileSummaryMixin.class)
+                            .writerFor(Profile.class)
+                            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE),
+                    mapper.writerFor(Posting.class)
+                            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)));
+        }
+        this.json = writers.get(WireFormat.JSON);
+    }
+
+    // Write the profiles as a JSON array, with or without their postings
+    public void writeProfiles(OutputStream out, Iterator<Profile> profiles, boolean includePostings)
+            throws IOException {
+        writeProfiles(out, WireFormat.JSON, profiles, includePostings);
+    }
+
+    // Write the profiles as an array in the given format, with or without their postings
+    public void writeProfiles(OutputStream out, WireFormat format, Iterator<Profile> profiles,
+            boolean includePostings) throws IOException {
+        Writers formatWriters = writers.get(format);
+        ObjectWriter writer = includePostings ? formatWriters.profile() : formatWriters.profileSummary();
+        try (JsonGenerator generator = formatWriters.mapper().getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            while (profiles.hasNext()) {
+                writer.writeValue(generator, profiles.next());
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    // Write the postings as a JSON array
+    public void writePostings(OutputStream out, Iterator<Posting> postings) throws IOException {
+        writePostings(out, WireFormat.JSON, postings);
+    }
+
+    // Write the postings as an array in the given format
+    public void writePostings(OutputStream out, WireFormat format, Iterator<Posting> postings)
+            throws IOException {
+        Writers formatWriters = writers.get(format);
+        try (JsonGenerator generator = formatWriters.mapper().getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            while (postings.hasNext()) {
+                formatWriters.posting().writeValue(generator, postings.next());
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    // Write the result of a batch read of profiles as a JSON object: the profiles that were found
+    // (already serialized, in the order they were asked for) and the IDs and usernames that were not found
+    public void writeProfileBatch(OutputStream out, Collection<byte[]> profiles,
+            Collection<Integer> missingProfileIds, Collection<String> missingUsernames) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("profiles");
+            for (byte[] json : profiles) {
+                generator.writeRawValue(new String(json, StandardCharsets.UTF_8));
+            }
+            generator.writeEndArray();
+            writeMissing(generator, "missingProfileIds", missingProfileIds);
+            writeMissing(generator, "missingUsernames", missingUsernames);
+            generator.writeEndObject();
+        }
+    }
+
+    // Write the result of a batch read of postings as a JSON object: the postings that were found,
+    // in the order they were asked for, and the IDs that were not found
+    public void writePostingBatch(OutputStream out, Collection<Posting> postings,
+            Collection<Integer> missingPostingIds) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("postings");
+            for (Posting posting : postings) {
+                json.posting().writeValue(generator, posting);
+            }
+            generator.writeEndArray();
+            writeMissing(generator, "missingPostingIds", missingPostingIds);
+            generator.writeEndObject();
+        }
+    }
+
+    private void writeMissing(JsonGenerator generator, String name, Collection<?> keys) throws IOException {
+        generator.writeArrayFieldStart(name);
+        for (Object key : keys) {
+            generator.writeObject(key);
+        }
+        generator.writeEndArray();
+    }
+
+    // Write every posting of the profiles as NDJSON, one posting per line, in the usual posting JSON.
+    // A profile without postings is written as a line with just its profileId and userName,
+    // so that it is not lost when the output is imported again.
+    public void writeNdjson(OutputStream out, Iterator<Profile> profiles) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // Each value ends with a newline instead of being separated by a space
+            generator.setRootValueSeparator(null);
+            while (profiles.hasNext()) {
+                Profile profile = profiles.next();
+                boolean empty = true;
+                for (Posting posting : profile.getPostings()) {
+                    json.posting().writeValue(generator, posting);
+                    generator.writeRaw('\n');
+                    empty = false;
+                }
+                if (empty) {
+                    generator.writeStartObject();
+                    generator.writeNumberField("profileId", profile.getProfileId());
+                    generator.writeStringField("userName", profile.getUserName());
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package comp74.thompson.controller;
+
+import java.util.List;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.PostingKey;
+import comp74.thompson.search.SearchIndex;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin
+public class SearchController {
+    // Number of results returned when no limit is given
+    static final int DEFAULT_RESULTS = 20;
+
+    SearchIndex searchIndex;
+    ProfileJsonWriter jsonWriter;
+
+    public SearchController(SearchIndex searchIndex, ProfileJsonWriter jsonWriter) {
+        this.searchIndex = searchIndex;
+        this.jsonWriter = jsonWriter;
+    }
+
+    // Search the text of all postings. Newest postings come first.
+    // The query q is a list of words and "quoted phrases", and a posting must contain all of them.
+    // Returns at most limit postings (20 by default) that come after the cursor after, and puts
+    // the cursor for the next page in the X-Next-After header.
+    // Returns a status code of 400 (BAD_REQUEST) if the query has no words or the cursor isn't one.
+    @GetMapping("/search")
+    public ResponseEntity<StreamingResponseBody> search(
+            @RequestParam(name = "q", required = false, defaultValue = "") String q,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "after", required = false) String after) {
+        PostingKey cursor = after == null ? null : PostingKey.parse(after);
+        if (q.isBlank() || (after != null && cursor == null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        int pageSize = MainController.pageSize(limit == null ? DEFAULT_RESULTS : limit);
+        // Ask for one extra posting to find out if there is a next page
+        List<Posting> results = searchIndex.search(q, cursor, pageSize + 1);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+        if (results.size() > pageSize) {
+            results = results.subList(0, pageSize);
+            response.header(MainController.NEXT_CURSOR_HEADER, PostingKey.of(results.get(pageSize - 1)).toString());
+        }
+        List<Posting> page = results;
+        return response.body(out -> jsonWriter.writePostings(out, page.iterator()));
+    }
+}
@@ -0,0 +1,29 @@
+package comp74.thompson.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import comp74.thompson.trending.TrendingSnapshot;
+import comp74.thompson.trending.TrendingTracker;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin
+public class TrendingController {
+    TrendingTracker trendingTracker;
+
+    public TrendingController(TrendingTracker trendingTracker) {
+        this.trendingTracker = trendingTracker;
+    }
+
+    // Get the most active authors and the most used terms over the last 5 minutes, hour and day.
+    // The answer is worked out every few seconds (trending.refresh-seconds), so it can be that much behind,
+    // and its asOf field says when it was worked out.
+    @GetMapping("/trending")
+    public ResponseEntity<TrendingSnapshot> getTrending() {
+        return ResponseEntity.ok(trendingTracker.getSnapshot());
+    }
+}
@@ -0,0 +1,71 @@
+package comp74.thompson.controller;
+
+import java.util.List;
+
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/*
+ * The formats profiles and postings can be sent in, picked by the request's Accept header.
+ *
+ * CBOR and Smile are binary encodings of the same data model as JSON, written by Jackson
+ * with the same annotations and serializers, so a client gets the same fields in each.
+ * Smile also refers back to field names (and short strings) it has already written
+ * instead of repeating them, which is most of a posting's size apart from its text.
+ */
+public enum WireFormat {
+    JSON(MediaType.APPLICATION_JSON),
+    CBOR(MediaType.parseMediaType("application/cbor")),
+    SMILE(MediaType.parseMediaType("application/x-jackson-smile"));
+
+    final MediaType mediaType;
+
+    WireFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    // Get a mapper for this format with the same settings as the application's JSON mapper
+    public ObjectMapper mapper(ObjectMapper json) {
+        return switch (this) {
+            case JSON -> json;
+            case CBOR -> json.copyWith(new CBORFactory());
+            case SMILE -> json.copyWith(new SmileFactory());
+        };
+    }
+
+    // Get the format the client likes best, by quality and then by how specifically it names it.
+    // JSON if there's no Accept header, it can't be parsed, or it names none of the formats,
+    // so clients that never asked for anything keep getting what they always got.
+    public static WireFormat negotiate(String accept) {
+        if (accept == null || accept.isEmpty()) {
+            return JSON;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+            MimeTypeUtils.sortBySpecificity(accepted);
+        } catch (IllegalArgumentException e) {
+            // Not a list of media types, or too long a one to sort
+            return JSON;
+        }
+        for (MediaType type : accepted) {
+            if (type.getQualityValue() == 0) {
+                continue;
+            }
+            for (WireFormat format : values()) {
+                if (type.includes(format.mediaType)) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,260 @@
+package comp74.thompson.feed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.ModelListener;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.PostingKey;
+import comp74.thompson.model.Profile;
+
+/*
+ * Home feeds: the most recent postings of the profiles a profile follows.
+ *
+ * Feeds use a hybrid fan-out. When a normal profile posts, the posting is pushed
+ * into the bounded inbox of each of its followers (fan-out on write). Profiles with
+ * at least feed.celebrity-threshold followers are not pushed, because one posting
+ * would touch too many inboxes. Their timelines are merged in when a feed is read
+ * (fan-out on read). A feed read is then a k-way merge of one inbox and the
+ * timelines of the few popular profiles being followed, newest first. Postings are put in
+ * order by time (see PostingKey), not by ID, since an import can give old postings new IDs,
+ * and the cursor of a page is the key of its last posting.
+ *
+ * When a popular profile loses followers and drops below the threshold, its recent postings
+ * are pushed into its followers' inboxes, so they stay in the feeds.
+ *
+ * The follows themselves are stored by the Model (so they are persisted with it), and
+ * the graph and inboxes here are rebuilt from them whenever the store is loaded.
+ *
+ * Deleted postings and postings of profiles that have been unfollowed are left in
+ * the inboxes and skipped when the feed is read.
+ */
+@Component
+public class FeedService implements ModelListener {
+    Model model;
+    final FollowGraph graph = new FollowGraph();
+    ConcurrentHashMap<Integer, Inbox> inboxes = new ConcurrentHashMap<>();
+    final int inboxCapacity;
+    final int celebrityThreshold;
+
+    public FeedService(Model model,
+            @Value("${feed.inbox-capacity:500}") int inboxCapacity,
+            @Value("${feed.celebrity-threshold:1000}") int celebrityThreshold) {
+        this.model = model;
+        this.inboxCapacity = inboxCapacity;
+        this.celebrityThreshold = celebrityThreshold;
+        model.addListener(this);
+        onLoaded();
+    }
+
+    // Check whether a profile has too many followers to fan its postings out on write
+    boolean isCelebrity(int profileId) {
+        return graph.followerCount(profileId) >= celebrityThreshold;
+    }
+
+    private Inbox inbox(int profileId) {
+        return inboxes.computeIfAbsent(profileId, id -> new Inbox(inboxCapacity));
+    }
+
+    // Make follower follow followee. The follow is stored by the Model, which tells this service.
+    // Returns a status code of 204 (NO_CONTENT) if the profile is now followed.
+    // Returns a status code of 400 (BAD_REQUEST) if a profile tries to follow itself.
+    // Returns a status code of 404 (NOT_FOUND) if either profile was not found.
+    public ResponseEntity<Void> follow(Profile follower, Profile followee) {
+        return model.follow(follower, followee);
+    }
+
+    // Make follower stop following followee.
+    // Returns a status code of 204 (NO_CONTENT) if the profile was unfollowed.
+    // Returns a status code of 404 (NOT_FOUND) if either profile was not found or wasn't followed.
+    public ResponseEntity<Void> unfollow(Profile follower, Profile followee) {
+        return model.unfollow(follower, followee);
+    }
+
+    // Fill an inbox with the recent postings of a profile that isn't popular.
+    // They are merged in with one pass, rather than added one at a time from the newest end.
+    private void fill(Inbox inbox, Profile followee) {
+        List<Posting> recent = new ArrayList<>();
+        for (Posting posting : model.getPostings(followee, null, null, null, true)) {
+            if (recent.size() == inboxCapacity) {
+                break;
+            }
+            recent.add(posting);
+        }
+        Collections.reverse(recent);
+        inbox.addAll(recent);
+    }
+
+    // Get the IDs of the profiles a profile follows, in ID order
+    public List<Integer> getFollowing(Profile profile) {
+        List<Integer> ids = new ArrayList<>(graph.following(profile.getProfileId()));
+        Collections.sort(ids);
+        return ids;
+    }
+
+    // Get the IDs of the profiles that follow a profile, in ID order
+    public List<Integer> getFollowers(Profile profile) {
+        List<Integer> ids = new ArrayList<>(graph.followers(profile.getProfileId()));
+        Collections.sort(ids);
+        return ids;
+    }
+
+    // One input of the k-way merge, with its next posting
+    private static class Source {
+        final Iterator<Posting> iterator;
+        Posting head;
+
+        Source(Iterator<Posting> iterator) {
+            this.iterator = iterator;
+        }
+
+        boolean advance() {
+            head = iterator.hasNext() ? iterator.next() : null;
+            return head != null;
+        }
+    }
+
+    // Get up to limit postings of the profiles a profile follows, newest first,
+    // starting with the ones that come before the key after (null to start at the newest).
+    public List<Posting> getFeed(Profile profile, PostingKey after, int limit) {
+        int profileId = profile.getProfileId();
+        PriorityQueue<Source> sources = new PriorityQueue<>(
+                Comparator.comparing((Source source) -> source.head, PostingKey.OLDEST_FIRST.reversed()));
+
+        // The precomputed inbox, without postings that were deleted or whose author was unfollowed
+        Inbox inbox = inboxes.get(profileId);
+        if (inbox != null) {
+            Iterator<Posting> entries = Arrays.stream(inbox.newestFirst(after))
+                    .filter(posting -> posting.getAuthor().getTimeline().get(posting.getPostingId()) == posting
+                            && graph.isFollowing(profileId, posting.getAuthorId()))
+                    .iterator();
+            Source source = new Source(entries);
+            if (source.advance()) {
+                sources.add(source);
+            }
+        }
+
+        // The timelines of popular profiles, which are not fanned out
+        for (Integer followeeId : graph.following(profileId)) {
+            if (!isCelebrity(followeeId)) {
+                continue;
+            }
+            Profile followee = model.getProfile(followeeId);
+            if (followee != null) {
+                Source source = new Source(model.getPostingsBefore(followee, after).iterator());
+                if (source.advance()) {
+                    sources.add(source);
+                }
+            }
+        }
+
+        // Merge the sources newest first. A posting can be in more than one source
+        // if its author became popular after it was fanned out, so skip repeats.
+        List<Posting> page = new ArrayList<>();
+        Posting last = null;
+        while (page.size() < limit && !sources.isEmpty()) {
+            Source source = sources.poll();
+            Posting posting = source.head;
+            if (last == null || PostingKey.OLDEST_FIRST.compare(posting, last) < 0) {
+                page.add(posting);
+                last = posting;
+            }
+            if (source.advance()) {
+                sources.add(source);
+            }
+        }
+        return page;
+    }
+
+    // Push a new posting into the inboxes of the author's followers
+    @Override
+    public void onPostAdded(Profile profile, Posting posting) {
+        int authorId = profile.getProfileId();
+        if (isCelebrity(authorId)) {
+            return;
+        }
+        for (Integer followerId : graph.followers(authorId)) {
+            inbox(followerId).add(posting);
+        }
+    }
+
+    @Override
+    public void onFollowed(Profile follower, Profile followee) {
+        if (graph.follow(follower.getProfileId(), followee.getProfileId()) && !isCelebrity(followee.getProfileId())) {
+            fill(inbox(follower.getProfileId()), followee);
+        }
+    }
+
+    @Override
+    public void onUnfollowed(Profile follower, Profile followee) {
+        int followeeId = followee.getProfileId();
+        boolean wasCelebrity = isCelebrity(followeeId);
+        graph.unfollow(follower.getProfileId(), followeeId);
+        if (wasCelebrity && !isCelebrity(followeeId)) {
+            demoted(followee);
+        }
+    }
+
+    // Fill the inboxes of the followers of a profile that has just dropped below the celebrity threshold.
+    // Its postings were merged in when feeds were read and never pushed, so without this they
+    // would drop out of the feeds until it posted enough new ones.
+    private void demoted(Profile author) {
+        for (Integer followerId : graph.followers(author.getProfileId())) {
+            fill(inbox(followerId), author);
+        }
+    }
+
+    // Rebuild the graph from the follows the Model loaded, then fill the inboxes.
+    // Also called when this service is created, in case the store was loaded before then.
+    @Override
+    public void onLoaded() {
+        graph.clear();
+        inboxes.clear();
+        Collection<Profile> profiles = model.getProfilesAfter(null);
+        for (Profile profile : profiles) {
+            for (Integer followeeId : profile.getFollowing()) {
+                graph.follow(profile.getProfileId(), followeeId);
+            }
+        }
+        for (Profile profile : profiles) {
+            for (Integer followeeId : graph.following(profile.getProfileId())) {
+                Profile followee = model.getProfile(followeeId);
+                if (followee != null && !isCelebrity(followeeId)) {
+                    fill(inbox(profile.getProfileId()), followee);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onProfileDeleted(Profile profile) {
+        int profileId = profile.getProfileId();
+        // The profiles it followed each lose a follower, which can take them below the threshold
+        List<Integer> celebrities = new ArrayList<>();
+        for (Integer followeeId : graph.following(profileId)) {
+            if (isCelebrity(followeeId)) {
+                celebrities.add(followeeId);
+            }
+        }
+        graph.remove(profileId);
+        inboxes.remove(profileId);
+        for (Integer followeeId : celebrities) {
+            Profile followee = model.getProfile(followeeId);
+            if (followee != null && !isCelebrity(followeeId)) {
+                demoted(followee);
+            }
+        }
+    }
+}
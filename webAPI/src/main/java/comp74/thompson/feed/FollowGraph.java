@@ -0,0 +1,77 @@
+package comp74.thompson.feed;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Who follows whom, by profileId. Edges are stored in both directions so that
+ * both "who do I follow" and "who follows me" are a single lookup.
+ */
+class FollowGraph {
+    private final ConcurrentHashMap<Integer, Set<Integer>> following = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Set<Integer>> followers = new ConcurrentHashMap<>();
+
+    // Add an edge. Returns false if it already existed.
+    boolean follow(int followerId, int followeeId) {
+        boolean added = following.computeIfAbsent(followerId, id -> ConcurrentHashMap.newKeySet()).add(followeeId);
+        followers.computeIfAbsent(followeeId, id -> ConcurrentHashMap.newKeySet()).add(followerId);
+        return added;
+    }
+
+    // Remove an edge. Returns false if it did not exist.
+    boolean unfollow(int followerId, int followeeId) {
+        Set<Integer> followees = following.get(followerId);
+        boolean removed = followees != null && followees.remove(followeeId);
+        Set<Integer> followersOfFollowee = followers.get(followeeId);
+        if (followersOfFollowee != null) {
+            followersOfFollowee.remove(followerId);
+        }
+        return removed;
+    }
+
+    boolean isFollowing(int followerId, int followeeId) {
+        Set<Integer> followees = following.get(followerId);
+        return followees != null && followees.contains(followeeId);
+    }
+
+    Set<Integer> following(int profileId) {
+        return following.getOrDefault(profileId, Collections.emptySet());
+    }
+
+    Set<Integer> followers(int profileId) {
+        return followers.getOrDefault(profileId, Collections.emptySet());
+    }
+
+    int followerCount(int profileId) {
+        return followers(profileId).size();
+    }
+
+    // Remove every edge
+    void clear() {
+        following.clear();
+        followers.clear();
+    }
+
+    // Remove a profile and every edge to or from it
+    void remove(int profileId) {
+        Set<Integer> followees = following.remove(profileId);
+        if (followees != null) {
+            for (Integer followeeId : followees) {
+                Set<Integer> set = followers.get(followeeId);
+                if (set != null) {
+                    set.remove(profileId);
+                }
+            }
+        }
+        Set<Integer> followersOfProfile = followers.remove(profileId);
+        if (followersOfProfile != null) {
+            for (Integer followerId : followersOfProfile) {
+                Set<Integer> set = following.get(followerId);
+                if (set != null) {
+                    set.remove(profileId);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package comp74.thompson.feed;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.PostingKey;
+
+/*
+ * A bounded, precomputed feed for one profile: the most recent postings of the
+ * profiles it follows, pushed here when they are written.
+ * Entries are kept in time order (see PostingKey) in a ring buffer. When the inbox
+ * is full the oldest entry is dropped. Postings usually arrive in order, so adding one
+ * is O(1); a posting that arrives a little late is moved back into place. Many postings
+ * at once (following a profile) are merged in with one pass over the ring.
+ */
+class Inbox {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Posting[] ring;
+    private int start;
+    private int size;
+
+    Inbox(int capacity) {
+        ring = new Posting[capacity];
+    }
+
+    private Posting get(int i) {
+        return ring[(start + i) % ring.length];
+    }
+
+    private void set(int i, Posting posting) {
+        ring[(start + i) % ring.length] = posting;
+    }
+
+    // Add a posting. Does nothing if the posting is already in the inbox,
+    // or if the inbox is full and the posting is older than everything in it.
+    void add(Posting posting) {
+        lock.lock();
+        try {
+            // Find where the posting goes, starting from the newest end
+            int i = size;
+            while (i > 0 && PostingKey.OLDEST_FIRST.compare(get(i - 1), posting) > 0) {
+                i--;
+            }
+            if (i > 0 && get(i - 1).getPostingId() == posting.getPostingId()) {
+                return;
+            }
+            if (size == ring.length) {
+                // Full. Drop the oldest entry, unless the new one would be the oldest.
+                if (i == 0) {
+                    return;
+                }
+                ring[start] = null;
+                start = (start + 1) % ring.length;
+                size--;
+                i--;
+            }
+            for (int j = size; j > i; j--) {
+                set(j, get(j - 1));
+            }
+            set(i, posting);
+            size++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Add postings that are in time order, oldest first, keeping the newest entries of both.
+    // Postings already in the inbox are not added twice. O(capacity) wherever the postings fall.
+    void addAll(List<Posting> oldestFirst) {
+        lock.lock();
+        try {
+            // Merge from the newest ends, newest first, until the inbox would be full
+            Posting[] merged = new Posting[ring.length];
+            int count = 0;
+            int i = size - 1;
+            int j = oldestFirst.size() - 1;
+            while (count < merged.length && (i >= 0 || j >= 0)) {
+                int order = i < 0 ? -1 : j < 0 ? 1 : PostingKey.OLDEST_FIRST.compare(get(i), oldestFirst.get(j));
+                if (order >= 0) {
+                    merged[count++] = get(i--);
+                    if (order == 0) {
+                        j--;
+                    }
+                } else {
+                    merged[count++] = oldestFirst.get(j--);
+                }
+            }
+            for (int k = 0; k < ring.length; k++) {
+                ring[k] = k < count ? merged[count - 1 - k] : null;
+            }
+            start = 0;
+            size = count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Copy the entries that come before the key (or all entries if before is null), newest first
+    Posting[] newestFirst(PostingKey before) {
+        lock.lock();
+        try {
+            int end = size;
+            if (before != null) {
+                while (end > 0 && !before.isAfter(get(end - 1))) {
+                    end--;
+                }
+            }
+            Posting[] copy = new Posting[end];
+            for (int i = 0; i < end; i++) {
+                copy[i] = get(end - 1 - i);
+            }
+            return copy;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package comp74.thompson.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.ModelMetrics;
+import comp74.thompson.model.ModelOperation;
+
+/*
+ * Reports the Model to Micrometer:
+ * - model.operations, a timer for each Model operation and status code it answered with.
+ *   The outcome tag groups the status codes (success, not_found, conflict, bad_request),
+ *   so the count of a timer is also the number of creates, deletes, 404s or conflicts.
+ * - model.profiles, model.postings and model.postings.per.profile gauges.
+ *
+ * Recording has to be cheap because it happens on every call. The timers are looked up
+ * in an array by operation and status code, and are only registered the first time
+ * an operation ends with a status code.
+ */
+@Component
+public class ModelMeters implements ModelMetrics {
+    // Status codes are below this
+    static final int STATUS_CODES = 600;
+
+    MeterRegistry registry;
+    // The timer for operation o and status code s is at o * STATUS_CODES + s
+    final AtomicReferenceArray<Timer> timers =
+            new AtomicReferenceArray<>(ModelOperation.values().length * STATUS_CODES);
+
+    public ModelMeters(Model model, MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("model.profiles", model, Model::getProfileCount)
+                .description("Number of profiles")
+                .register(registry);
+        Gauge.builder("model.postings", model, Model::getPostingCount)
+                .description("Number of postings")
+                .register(registry);
+        Gauge.builder("model.postings.per.profile", model,
+                m -> m.getProfileCount() == 0 ? 0 : (double) m.getPostingCount() / m.getProfileCount())
+                .description("Average number of postings per profile")
+                .register(registry);
+        model.setMetrics(this);
+    }
+
+    // Group a status code for the outcome tag
+    static String outcome(int status) {
+        if (status >= 200 && status < 300) {
+            return "success";
+        }
+        switch (status) {
+            case 400:
+                return "bad_request";
+            case 404:
+                return "not_found";
+            case 409:
+                return "conflict";
+            default:
+                return "other";
+        }
+    }
+
+    @Override
+    public void record(ModelOperation operation, HttpStatusCode status, long nanos) {
+        int code = status.value();
+        int index = operation.ordinal() * STATUS_CODES + code;
+        Timer timer = timers.get(index);
+        if (timer == null) {
+            // The registry hands out the same timer if two threads get here at once
+            timer = Timer.builder("model.operations")
+                    .description("Time taken by Model operations")
+                    .tag("operation", operation.getTag())
+                    .tag("status", String.valueOf(code))
+                    .tag("outcome", outcome(code))
+                    .register(registry);
+            timers.set(index, timer);
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
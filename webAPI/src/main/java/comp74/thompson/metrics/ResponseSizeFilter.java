@@ -0,0 +1,145 @@
+package comp74.thompson.metrics;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+/*
+ * Records the size of each response body in the http.server.response.size distribution,
+ * tagged like http.server.requests with the method, uri pattern and status.
+ * The bytes are counted as they are written, so streamed responses are measured too;
+ * they are recorded when the async request completes. Every body the API sends is written
+ * to the response's output stream (not its writer), so that is all that is counted.
+ *
+ * The summary of each method, uri and status is registered once and kept, so recording a
+ * response only looks it up.
+ */
+@Component
+public class ResponseSizeFilter extends OncePerRequestFilter {
+    // A set of tags a response can be recorded under
+    record Tags(String method, String uri, int status) {
+    }
+
+    MeterRegistry registry;
+    final Map<Tags, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public ResponseSizeFilter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CountingResponse counting = new CountingResponse(response);
+        try {
+            chain.doFilter(request, counting);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(request, counting);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                record(request, counting);
+            }
+        }
+    }
+
+    void record(HttpServletRequest request, CountingResponse response) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Tags tags = new Tags(request.getMethod(), pattern == null ? "UNKNOWN" : pattern.toString(),
+                response.getStatus());
+        summaries.computeIfAbsent(tags, this::register).record(response.count);
+    }
+
+    private DistributionSummary register(Tags tags) {
+        return DistributionSummary.builder("http.server.response.size")
+                .description("Size of response bodies")
+                .baseUnit("bytes")
+                .tag("method", tags.method())
+                .tag("uri", tags.uri())
+                .tag("status", String.valueOf(tags.status()))
+                .register(registry);
+    }
+
+    // A response that counts the bytes written to its body
+    static class CountingResponse extends HttpServletResponseWrapper {
+        long count;
+        ServletOutputStream outputStream;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream target = super.getOutputStream();
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        target.write(b);
+                        count++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        target.write(b, off, len);
+                        count += len;
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        target.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        target.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return target.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        target.setWriteListener(listener);
+                    }
+                };
+            }
+            return outputStream;
+        }
+    }
+}
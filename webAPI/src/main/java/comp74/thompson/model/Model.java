@@ -2,62 +2,273 @@ package comp74.thompson.model;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 
+/*
+ * In-memory store for profiles and postings.
+ * The model is shared by every request thread, so the maps are concurrent, IDs are
+ * handed out by atomic counters, and every change to a profile or its postings is
+ * made while holding that profile's lock stripe. Writes to different profiles only
+ * contend when they hash to the same stripe.
+ * Profiles are kept sorted by ID so that they can be paged through with a
+ * profileId cursor without copying the whole map.
+ * Every change is reported to the registered ModelListeners.
+ */
 @Component
 public class Model {
-    HashMap<Integer, Profile> profiles;
-    HashMap<String, Profile> profilesByUsername;
-    HashMap<Integer, Posting> postings;
+    // Number of lock stripes. Must be a power of two.
+    static final int LOCK_STRIPES = 64;
 
-    private static Integer nextProfileId = 100;
-    private static Integer nextPostingId = 1000;
+    ConcurrentSkipListMap<Integer, Profile> profiles;
+    ConcurrentHashMap<String, Profile> profilesByUsername;
+    ConcurrentHashMap<Integer, Posting> postings;
+
+    final AtomicInteger nextProfileId = new AtomicInteger(100);
+    final AtomicInteger nextPostingId = new AtomicInteger(1000);
+    private final ReentrantLock[] locks;
+    final List<ModelListener> listeners = new CopyOnWriteArrayList<>();
+    // Set while this thread runs a batch (see batch), and whether anything in it has changed yet
+    private final ThreadLocal<boolean[]> batchChanged = new ThreadLocal<>();
+    volatile ModelMetrics metrics = ModelMetrics.NONE;
 
     public Model() {
         super();
-        profiles = new HashMap<Integer, Profile>();
-        postings = new HashMap<Integer, Posting>();
-        profilesByUsername = new HashMap<String, Profile>();
+        profiles = new ConcurrentSkipListMap<Integer, Profile>();
+        postings = new ConcurrentHashMap<Integer, Posting>();
+        profilesByUsername = new ConcurrentHashMap<String, Profile>();
+        locks = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    // Register a listener to be told about every change
+    public void addListener(ModelListener listener) {
+        listeners.add(listener);
+    }
+
+    // Set where the time and result of each operation are reported
+    public void setMetrics(ModelMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Run a change and report how long it took and how it ended.
+    // Returns a status code of 503 (SERVICE_UNAVAILABLE) without changing anything if a listener
+    // can't take changes (see ModelListener.acceptsChanges).
+    private <T> ResponseEntity<T> timed(ModelOperation operation, Supplier<ResponseEntity<T>> body) {
+        long start = System.nanoTime();
+        ResponseEntity<T> response = acceptsChanges() ? body.get() : new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        metrics.record(operation, response.getStatusCode(), System.nanoTime() - start);
+        return response;
+    }
+
+    // Get the index of the lock stripe that guards a profile and its postings
+    static int stripeOf(Profile profile) {
+        return profile.getProfileId() & (LOCK_STRIPES - 1);
+    }
+
+    // Get the lock stripe that guards a profile and its postings
+    ReentrantLock lockFor(Profile profile) {
+        return locks[stripeOf(profile)];
+    }
+
+    // Make a change to a profile while holding its lock.
+    // If the change succeeded, tell the listeners once the lock has been released.
+    private <T> ResponseEntity<T> locked(Profile profile, Supplier<ResponseEntity<T>> change) {
+        ReentrantLock lock = lockFor(profile);
+        ResponseEntity<T> response;
+        lock.lock();
+        try {
+            response = change.get();
+            // Bump the version after the change, so a reader that sees the new version also sees the change
+            if (response.getStatusCode().is2xxSuccessful()) {
+                profile.incrementVersion();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (response.getStatusCode().is2xxSuccessful()) {
+            boolean[] batch = batchChanged.get();
+            if (batch != null) {
+                batch[0] = true;
+            } else {
+                afterChange();
+            }
+        }
+        return response;
+    }
+
+    private boolean acceptsChanges() {
+        for (ModelListener listener : listeners) {
+            if (!listener.acceptsChanges()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void afterChange() {
+        for (ModelListener listener : listeners) {
+            listener.afterChange();
+        }
+    }
+
+    // Make the changes that changes makes on this thread as one batch: the listeners' afterChange
+    // is called once, after the last of them, instead of after each one. So a batch of writes
+    // waits for the disk once.
+    public void batch(Runnable changes) {
+        if (batchChanged.get() != null) {
+            changes.run();
+            return;
+        }
+        boolean[] changed = new boolean[1];
+        batchChanged.set(changed);
+        try {
+            changes.run();
+        } finally {
+            batchChanged.remove();
+            if (changed[0]) {
+                afterChange();
+            }
+        }
+    }
+
+    // Read several profiles as they all were at one moment.
+    // find looks up what is to be read, and profilesOf gives the profiles it involves. The lock stripes of
+    // those profiles are all taken, lowest first, then find is run again with the locks held, and read is
+    // given what it found. If the second lookup involves a profile whose stripe isn't held (because it was
+    // added or renamed in between), the locks are released and it is tried again with that stripe as well.
+    // Writers only ever hold one stripe and this takes them in order, so it can't deadlock with anything.
+    // Profiles can be deleted before their lock is taken, so find must check that what it finds is still stored.
+    public <R, T> T readLocked(Supplier<R> find, Function<R, Collection<Profile>> profilesOf, Function<R, T> read) {
+        long start = System.nanoTime();
+        BitSet stripes = new BitSet(LOCK_STRIPES);
+        R found = find.get();
+        while (true) {
+            for (Profile profile : profilesOf.apply(found)) {
+                stripes.set(stripeOf(profile));
+            }
+            for (int i = stripes.nextSetBit(0); i >= 0; i = stripes.nextSetBit(i + 1)) {
+                locks[i].lock();
+            }
+            try {
+                found = find.get();
+                if (holdsAll(stripes, profilesOf.apply(found))) {
+                    T result = read.apply(found);
+                    metrics.record(ModelOperation.READ_LOCKED, HttpStatus.OK, System.nanoTime() - start);
+                    return result;
+                }
+            } finally {
+                for (int i = stripes.nextSetBit(0); i >= 0; i = stripes.nextSetBit(i + 1)) {
+                    locks[i].unlock();
+                }
+            }
+        }
+    }
+
+    // Check that the stripes of all the profiles are in the set
+    private static boolean holdsAll(BitSet stripes, Collection<Profile> profiles) {
+        for (Profile profile : profiles) {
+            if (!stripes.get(stripeOf(profile))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Check that a profile is the one currently stored under its ID.
+    // Must be called while holding the profile's lock.
+    private boolean isRegistered(Profile profile) {
+        return profile.getProfileId() != null && getProfile(profile.getProfileId()) == profile;
     }
 
     //Create a new profile. Ensure that the username is unique.
     //Return the profile and a status code of 201 (CREATED) if the username is unique.
     //Return a status code of 409 (CONFLICT) if the username is not unique.
+    //Return a status code of 400 (BAD_REQUEST) if there is no username.
     public ResponseEntity<Profile> addProfile(Profile profile) {
-        // Create an empty profile
-        Profile newProfile = null;
-        // Check to see if the username is unique
-        if (profilesByUsername.get(profile.getUserName()) == null) {
-            // If the username is unique, create a new profile and add it to the HashMaps
-            newProfile = profile;
-            newProfile.setProfileId(nextProfileId++);
-            profiles.put(newProfile.getProfileId(), newProfile);
-            profilesByUsername.put(newProfile.getUserName(), newProfile);
-            return new ResponseEntity<>(profile, HttpStatus.CREATED);
-        } else {
-            // If the username is not unique, return a status code of 409 (CONFLICT)
-            return new ResponseEntity<>(HttpStatus.CONFLICT);
-        }
+        return timed(ModelOperation.ADD_PROFILE, () -> {
+            if (profile == null || profile.getUserName() == null) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            // Claim the username atomically. Only one thread can win a given username.
+            profile.setProfileId(nextProfileId.getAndIncrement());
+            if (profilesByUsername.putIfAbsent(profile.getUserName(), profile) == null) {
+                // If the username is unique, add the profile to the profiles map
+                return locked(profile, () -> {
+                    profiles.put(profile.getProfileId(), profile);
+                    for (ModelListener listener : listeners) {
+                        listener.onProfileAdded(profile);
+                    }
+                    return new ResponseEntity<>(profile, HttpStatus.CREATED);
+                });
+            } else {
+                // If the username is not unique, return a status code of 409 (CONFLICT)
+                profile.setProfileId(null);
+                return new ResponseEntity<>(HttpStatus.CONFLICT);
+            }
+        });
     }
 
     //Get a profile by ID
     public Profile getProfile(Integer profileId) {
-        return profiles.get(profileId);
+        return profileId == null ? null : profiles.get(profileId);
     }
 
     //Get a posting by postingID
     public Posting getPosting(Integer postingId) {
-        return postings.get(postingId);
+        return postingId == null ? null : postings.get(postingId);
     }
 
     //Get all profiles
     public List<Profile> getProfiles() {
-        return new ArrayList<>(profiles.values());
+        long start = System.nanoTime();
+        List<Profile> profileList = new ArrayList<>(profiles.values());
+        metrics.record(ModelOperation.GET_PROFILES, HttpStatus.OK, System.nanoTime() - start);
+        return profileList;
+    }
+
+    //Get the profiles with an ID greater than the given cursor, in ID order.
+    //If the cursor is null, start from the first profile.
+    //The result is a live view of the store, so nothing is copied.
+    public Collection<Profile> getProfilesAfter(Integer after) {
+        if (after == null) {
+            return profiles.values();
+        }
+        return profiles.tailMap(after, false).values();
+    }
+
+    //Get the postings of a profile created at or after since and before until (null for no bound),
+    //oldest first or newest first, starting after the posting with ID after (null to start at the beginning).
+    //The result is a live view of the profile's timeline, so nothing is copied.
+    public Collection<Posting> getPostings(Profile profile, LocalDateTime since, LocalDateTime until,
+            Integer after, boolean newestFirst) {
+        return profile.getTimeline().range(
+                since == null ? null : Posting.toEpochMillis(since),
+                until == null ? null : Posting.toEpochMillis(until),
+                after, newestFirst);
+    }
+
+    //Get the postings of a profile that come before the key (null for all of them), newest first.
+    //Used to merge the postings of several profiles in time order. A live view, nothing is copied.
+    public Collection<Posting> getPostingsBefore(Profile profile, PostingKey before) {
+        return before == null
+                ? profile.getTimeline().range(null, null, null, true)
+                : profile.getTimeline().olderThan(before.epochMillis(), before.postingId());
     }
 
     //Get all postings
@@ -65,19 +276,42 @@ public class Model {
         return new ArrayList<>(postings.values());
     }
 
+    //Get the number of postings
+    public int getPostingCount() {
+        return postings.size();
+    }
+
+    //Get the number of profiles (counted from the username index, which is quicker to count)
+    public int getProfileCount() {
+        return profilesByUsername.size();
+    }
+
+    //Get the ID the next new profile will get
+    public int getNextProfileId() {
+        return nextProfileId.get();
+    }
+
+    //Get the ID the next new posting will get
+    public int getNextPostingId() {
+        return nextPostingId.get();
+    }
+
     //Return a list of postings for a profile. Get the profile by username.
     //If the profile does not exist, return null.
     //If the profile exists, return a list of postings for that profile.
     public List<Profile> getProfileByUsername(String username) {
+        long start = System.nanoTime();
         // Check to see if the profile exists
-        if (profilesByUsername.get(username) == null) {
+        Profile profile = username == null ? null : profilesByUsername.get(username);
+        if (profile == null) {
             // Return null if the profile does not exist
+            metrics.record(ModelOperation.GET_PROFILE_BY_USERNAME, HttpStatus.NOT_FOUND, System.nanoTime() - start);
             return null;
         } else {
             // Return a list of postings for the profile
-            Profile profile = profilesByUsername.get(username);
             List<Profile> profileList = new ArrayList<>();
             profileList.add(profile);
+            metrics.record(ModelOperation.GET_PROFILE_BY_USERNAME, HttpStatus.OK, System.nanoTime() - start);
             return profileList;
         }
     }
@@ -86,59 +320,141 @@ public class Model {
     // If the profile does not exist, return a status code of 404 NOT_FOUND.
     // If the profile exists, add the posting to the profile and return the posting and a status code of 201 (CREATED).
     public ResponseEntity<Posting> addPost(Profile profile, Posting posting) {
-        // Check to see if the profile exists
-        if (profile == null) {
-            // Return a status code of 404 (NOT_FOUND) if the profile does not exist
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        } else {
-            // Add the posting to the profile and return the posting and a status code of 201 (CREATED)
-            posting.setPostingId(nextPostingId++);
-            posting.setDateAndTime(LocalDateTime.now());
-            posting.setUserName(profile.getUserName());
-            postings.put(posting.getPostingId(), posting);
-            profile.addPosting(posting);
-            return new ResponseEntity<>(posting, HttpStatus.CREATED);
-        }
+        return timed(ModelOperation.ADD_POST, () -> {
+            // Check to see if the profile exists
+            if (profile == null || profile.getProfileId() == null) {
+                // Return a status code of 404 (NOT_FOUND) if the profile does not exist
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return locked(profile, () -> {
+                // The profile may have been deleted while we were waiting for the lock
+                if (!isRegistered(profile)) {
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+                // Add the posting to the profile and return the posting and a status code of 201 (CREATED).
+                // The time never goes backwards within a profile, even if the clock does,
+                // so that the profile's timeline stays in postingId order.
+                long now = System.currentTimeMillis();
+                Posting latest = profile.getTimeline().latest();
+                if (latest != null && now < latest.getEpochMillis()) {
+                    now = latest.getEpochMillis();
+                }
+                posting.setPostingId(nextPostingId.getAndIncrement());
+                posting.setEpochMillis(now);
+                posting.setAuthor(profile);
+                postings.put(posting.getPostingId(), posting);
+                profile.addPosting(posting);
+                for (ModelListener listener : listeners) {
+                    listener.onPostAdded(profile, posting);
+                }
+                return new ResponseEntity<>(posting, HttpStatus.CREATED);
+            });
+        });
+    }
+
+    // Add many postings to a profile at once, for bulk imports. A posting without a date and time
+    // gets the current time. The postings are added in order of date and time, with IDs from a single
+    // range reserved for them. A profile's postings must be in the same order by time as by ID (see
+    // Timeline), so a posting dated before the profile's newest posting is not added: it keeps its
+    // date and is left without an ID (0). Dates are never changed.
+    // If the profile exists, return the postings that were added and a status code of 201 (CREATED).
+    // If the profile does not exist, return a status code of 404 NOT_FOUND.
+    public ResponseEntity<List<Posting>> addPostings(Profile profile, List<Posting> newPostings) {
+        return timed(ModelOperation.ADD_POSTINGS, () -> {
+            if (profile == null || profile.getProfileId() == null) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return locked(profile, () -> {
+                if (!isRegistered(profile)) {
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+                Posting latest = profile.getTimeline().latest();
+                long newest = latest == null ? Long.MIN_VALUE : latest.getEpochMillis();
+                // As in addPost, the current time never goes backwards within a profile
+                long now = Math.max(System.currentTimeMillis(), newest);
+                List<Posting> added = new ArrayList<>(newPostings.size());
+                for (Posting posting : newPostings) {
+                    if (posting.getEpochMillis() == 0) {
+                        posting.setEpochMillis(now);
+                    }
+                    if (posting.getEpochMillis() >= newest) {
+                        added.add(posting);
+                    }
+                }
+                added.sort(Comparator.comparingLong(Posting::getEpochMillis));
+                // Reserved while holding the lock, so the IDs are higher than any posting the profile has
+                int postingId = nextPostingId.getAndAdd(added.size());
+                for (Posting posting : added) {
+                    posting.setPostingId(postingId++);
+                    posting.setAuthor(profile);
+                    postings.put(posting.getPostingId(), posting);
+                    profile.addPosting(posting);
+                }
+                if (!added.isEmpty()) {
+                    for (ModelListener listener : listeners) {
+                        listener.onPostsAdded(profile, added);
+                    }
+                }
+                return new ResponseEntity<>(added, HttpStatus.CREATED);
+            });
+        });
     }
 
     // Delete a posting for a profile. Get the profile by ID.
     // If the posting exists, delete it and return the posting and a status code of 204 (NO_CONTENT).
-    // If the posting does not exist, return a status code of 404 NOT_FOUND.
+    // If the posting does not exist or belongs to another profile, return a status code of 404 NOT_FOUND.
     public ResponseEntity<Void> deletePost(Profile profile, Integer postingId) {
-        // Get the posting by ID
-        Posting posting = postings.get(postingId);
-        // Check to see if the posting exists
-        if (posting != null) {
-            // Remove the posting from the postings HashMap and the profile's list of postings
-            // and return a status code of 204 (NO_CONTENT)
-            postings.remove(postingId);
-            profile.removePosting(posting);
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-        } else {
-            // Return a status code of 404 (NOT_FOUND) if the posting does not exist
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+        return timed(ModelOperation.DELETE_POST, () -> {
+            if (profile == null || profile.getProfileId() == null || postingId == null) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return locked(profile, () -> {
+                // Check to see if the posting exists and belongs to this profile
+                Posting posting = profile.getTimeline().get(postingId);
+                if (posting != null && isRegistered(profile)) {
+                    // Remove the posting from the profile's timeline and the postings map
+                    // and return a status code of 204 (NO_CONTENT)
+                    profile.removePosting(posting);
+                    postings.remove(postingId);
+                    for (ModelListener listener : listeners) {
+                        listener.onPostDeleted(profile, posting);
+                    }
+                    return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+                } else {
+                    // Return a status code of 404 (NOT_FOUND) if the posting does not exist
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+            });
+        });
     }
 
     // Delete all postings for a profile. Get the profile by ID.
     // If the profile exists, delete all postings for that profile and return a status code of 204 (NO_CONTENT).
     // If the profile does not exist, return a status code of 404 NOT_FOUND.
     public ResponseEntity<Void> deletePosts(Profile profile) {
-        // Check to see if the profile exists
-        if (profile == null) {
-            // Return a status code of 404 (NOT_FOUND) if the profile does not exist
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        } else {
-            // Get a list of postings for the profile
-            List<Posting> postingsList = profile.getPostings();
-            // For each posting in the list, remove it from the postings HashMap
-            for (Posting posting : postingsList) {
-                postings.remove(posting.getPostingId());
-            }
-            // Remove all postings from the profile and return a status code of 204 (NO_CONTENT)
-            profile.setPostings(new ArrayList<Posting>());
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-        }
+        return timed(ModelOperation.DELETE_POSTS, () -> {
+            // Check to see if the profile exists
+            if (profile == null || profile.getProfileId() == null) {
+                // Return a status code of 404 (NOT_FOUND) if the profile does not exist
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return locked(profile, () -> {
+                if (!isRegistered(profile)) {
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+                // For each posting of the profile, remove it from the postings map
+                List<Posting> deleted = new ArrayList<>(profile.getPostings());
+                for (Posting posting : deleted) {
+                    postings.remove(posting.getPostingId());
+                }
+                // Remove all postings from the profile and return a status code of 204 (NO_CONTENT)
+                profile.clearPostings();
+                for (ModelListener listener : listeners) {
+                    listener.onPostsDeleted(profile, deleted);
+                }
+                return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+            });
+        });
     }
 
     // Delete a profile by ID. Model checks to see if the profile has any postings.
@@ -147,65 +463,145 @@ public class Model {
     // If the profile exists and has postings, return the profile and a status code of 409 (CONFLICT).
     // If the profile does not exist, return a status code of 404 NOT_FOUND.
     public ResponseEntity<Void> deleteProfile(Profile profile) {
-        // Check to see if the profile exists
-        if (profile != null) {
-            // Check to see if the profile has postings
-            if (profile.getPostings().isEmpty()) {
-                // Delete the profile, remove it from the HashMaps, and return a status code of 204 (NO_CONTENT)
-                profiles.remove(profile.getProfileId());
-                profilesByUsername.remove(profile.getUserName());
-                return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-            } else {
-                // Return a status code of 409 (CONFLICT) if the profile has postings
-                return new ResponseEntity<>(HttpStatus.CONFLICT);
+        return timed(ModelOperation.DELETE_PROFILE, () -> {
+            // Check to see if the profile exists
+            if (profile == null || profile.getProfileId() == null) {
+                // Return a status code of 404 (NOT_FOUND) if the profile does not exist
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
             }
-        } else {
-            // Return a status code of 404 (NOT_FOUND) if the profile does not exist
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+            return locked(profile, () -> {
+                if (!isRegistered(profile)) {
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+                // Check to see if the profile has postings
+                if (profile.getPostings().isEmpty()) {
+                    // Delete the profile, remove it from the maps, and return a status code of 204 (NO_CONTENT)
+                    profiles.remove(profile.getProfileId(), profile);
+                    profilesByUsername.remove(profile.getUserName(), profile);
+                    for (ModelListener listener : listeners) {
+                        listener.onProfileDeleted(profile);
+                    }
+                    return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+                } else {
+                    // Return a status code of 409 (CONFLICT) if the profile has postings
+                    return new ResponseEntity<>(HttpStatus.CONFLICT);
+                }
+            });
+        });
     }
 
     // Update a posting for a profile. Get the profile by ID.
     // If the posting exists, update it and return a status code of 204 (NO_CONTENT).
-    // If the posting does not exist, return a status code of 404 NOT_FOUND.
+    // If the posting does not exist or belongs to another profile, return a status code of 404 NOT_FOUND.
     public ResponseEntity<Void> updatePost(Profile profile, Integer postingId, String postingText) {
-        // Get the posting by ID
-        Posting oldPosting = postings.get(postingId);
-        // Check to see if the posting exists
-        if (oldPosting != null) {
-            // Update the posting text and return a status code of 204 (NO_CONTENT)
-            oldPosting.setPostingText(postingText);
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-        } else {
-            // Return a status code of 404 (NOT_FOUND) if the posting does not exist
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-    }
-
-public ResponseEntity<Profile> updateProfile(Profile profileToUpdate, String newUsername) {
-    // Check if the new username already exists
-    if (profilesByUsername.get(newUsername) != null && !newUsername.equals(profileToUpdate.getUserName())) {
-        return new ResponseEntity<>(HttpStatus.CONFLICT);
+        return timed(ModelOperation.UPDATE_POST, () -> {
+            if (profile == null || profile.getProfileId() == null || postingId == null) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return locked(profile, () -> {
+                // Get the posting by ID from the profile's timeline, so postings of other profiles are not found
+                Posting oldPosting = profile.getTimeline().get(postingId);
+                // Check to see if the posting exists and belongs to this profile
+                if (oldPosting != null && isRegistered(profile)) {
+                    // Update the posting text and return a status code of 204 (NO_CONTENT)
+                    String oldText = oldPosting.getPostingText();
+                    oldPosting.setPostingText(postingText);
+                    for (ModelListener listener : listeners) {
+                        listener.onPostUpdated(profile, oldPosting, oldText);
+                    }
+                    return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+                } else {
+                    // Return a status code of 404 (NOT_FOUND) if the posting does not exist
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+            });
+        });
     }
 
-    // Remove the old username from the HashMap
-    profilesByUsername.remove(profileToUpdate.getUserName());
-
-    // Set the new username
-    profileToUpdate.setUserName(newUsername);
+    // Update the username of a profile.
+    // If the new username is free, update it and return a status code of 204 (NO_CONTENT).
+    // If the new username is taken by another profile, return a status code of 409 (CONFLICT).
+    // If the profile does not exist, return a status code of 404 NOT_FOUND.
+    public ResponseEntity<Profile> updateProfile(Profile profileToUpdate, String newUsername) {
+        return timed(ModelOperation.UPDATE_PROFILE, () -> {
+            if (profileToUpdate == null || profileToUpdate.getProfileId() == null) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            if (newUsername == null) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            return locked(profileToUpdate, () -> {
+                if (!isRegistered(profileToUpdate)) {
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+                String oldUsername = profileToUpdate.getUserName();
+                if (!newUsername.equals(oldUsername)) {
+                    // Claim the new username atomically. Fails if another profile already has it.
+                    if (profilesByUsername.putIfAbsent(newUsername, profileToUpdate) != null) {
+                        return new ResponseEntity<>(HttpStatus.CONFLICT);
+                    }
 
-    // Add the updated profile with the new username to the HashMap
-    profilesByUsername.put(profileToUpdate.getUserName(), profileToUpdate);
+                    // Set the new username and release the old one.
+                    // Postings read their username from the profile, so they do not need to be updated.
+                    profileToUpdate.setUserName(newUsername);
+                    profilesByUsername.remove(oldUsername, profileToUpdate);
+                    for (ModelListener listener : listeners) {
+                        listener.onProfileUpdated(profileToUpdate, oldUsername);
+                    }
+                }
 
-    // Update the username for each posting
-    for (Posting posting : profileToUpdate.getPostings()) {
-        posting.setUserName(newUsername);
+                // Return a 204 (NO_CONTENT) response
+                return new ResponseEntity<>(profileToUpdate, HttpStatus.NO_CONTENT);
+            });
+        });
     }
 
-    // Return a 204 (NO_CONTENT) response
-    return new ResponseEntity<>(profileToUpdate, HttpStatus.NO_CONTENT);
-}
-
+    // Make follower follow followee. The change belongs to the follower, so only its lock is taken.
+    // Returns a status code of 204 (NO_CONTENT) if the profile is now followed.
+    // Returns a status code of 400 (BAD_REQUEST) if a profile tries to follow itself.
+    // Returns a status code of 404 (NOT_FOUND) if either profile was not found.
+    public ResponseEntity<Void> follow(Profile follower, Profile followee) {
+        return timed(ModelOperation.FOLLOW, () -> {
+            if (follower == null || follower.getProfileId() == null
+                    || followee == null || followee.getProfileId() == null) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            if (follower.getProfileId().equals(followee.getProfileId())) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            return locked(follower, () -> {
+                if (!isRegistered(follower)) {
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+                // Following a profile that is already followed changes nothing, and nobody is told
+                if (follower.following.add(followee.getProfileId())) {
+                    for (ModelListener listener : listeners) {
+                        listener.onFollowed(follower, followee);
+                    }
+                }
+                return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+            });
+        });
+    }
 
+    // Make follower stop following followee.
+    // Returns a status code of 204 (NO_CONTENT) if the profile was unfollowed.
+    // Returns a status code of 404 (NOT_FOUND) if either profile was not found or wasn't followed.
+    public ResponseEntity<Void> unfollow(Profile follower, Profile followee) {
+        return timed(ModelOperation.UNFOLLOW, () -> {
+            if (follower == null || follower.getProfileId() == null
+                    || followee == null || followee.getProfileId() == null) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return locked(follower, () -> {
+                if (!isRegistered(follower) || !follower.following.remove(followee.getProfileId())) {
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+                for (ModelListener listener : listeners) {
+                    listener.onUnfollowed(follower, followee);
+                }
+                return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+            });
+        });
+    }
 }
-
@@ -0,0 +1,78 @@
+package comp74.thompson.model;
+
+import java.util.Collection;
+import java.util.List;
+
+/*
+ * Gets told about every change the Model makes, so that other parts of the
+ * application (feeds, indexes, logs) can keep themselves up to date.
+ *
+ * The Model calls its listeners after the change has been made, on the thread that
+ * made it, while it still holds the lock of the profile that changed. So the calls
+ * for one profile arrive in the order the changes were made. Listeners must be quick
+ * and must not call back into the Model to change anything.
+ * Once the lock has been released, afterChange is called on the same thread. That is
+ * where a listener can block, for example to wait for a change to reach the disk.
+ */
+public interface ModelListener {
+
+    // A profile was created
+    default void onProfileAdded(Profile profile) {
+    }
+
+    // A profile's username was changed from oldUserName to profile.getUserName()
+    default void onProfileUpdated(Profile profile, String oldUserName) {
+    }
+
+    // A profile was deleted
+    default void onProfileDeleted(Profile profile) {
+    }
+
+    // A posting was added to a profile
+    default void onPostAdded(Profile profile, Posting posting) {
+    }
+
+    // Many postings were added to a profile at once, oldest first
+    default void onPostsAdded(Profile profile, List<Posting> postings) {
+        for (Posting posting : postings) {
+            onPostAdded(profile, posting);
+        }
+    }
+
+    // A posting's text was changed from oldText to posting.getPostingText()
+    default void onPostUpdated(Profile profile, Posting posting, String oldText) {
+    }
+
+    // A posting was deleted from a profile
+    default void onPostDeleted(Profile profile, Posting posting) {
+    }
+
+    // All postings of a profile were deleted at once
+    default void onPostsDeleted(Profile profile, Collection<Posting> postings) {
+        for (Posting posting : postings) {
+            onPostDeleted(profile, posting);
+        }
+    }
+
+    // follower started following followee
+    default void onFollowed(Profile follower, Profile followee) {
+    }
+
+    // follower stopped following followee
+    default void onUnfollowed(Profile follower, Profile followee) {
+    }
+
+    // Whether the listener can be told about changes now. While any listener can't, the Model
+    // turns every change down before making it (for example once the log can't be written).
+    default boolean acceptsChanges() {
+        return true;
+    }
+
+    // A change has been made and the profile's lock has been released
+    default void afterChange() {
+    }
+
+    // The store was filled in bulk (for example from disk) without going through the change methods
+    default void onLoaded() {
+    }
+}
@@ -0,0 +1,156 @@
+package comp74.thompson.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Fills a Model directly, without handing out new IDs or telling listeners about
+ * each change. Used to rebuild the store from disk.
+ *
+ * Every operation is idempotent, so a log can be replayed over a snapshot that
+ * already contains some of its changes. Usernames can clash half way through a
+ * replay (a snapshot taken while two profiles swap names may see both with the
+ * same name), so the username index is only rebuilt by finish().
+ *
+ * Must only be used while the Model is not serving requests. Loaders on different threads
+ * can fill different profiles at the same time, as long as one of them sets the next IDs
+ * and calls finish() once they are all done.
+ */
+public class ModelLoader {
+    Model model;
+    int maxProfileId = -1;
+    int maxPostingId = -1;
+    int nextProfileId;
+    int nextPostingId;
+    Profile lastProfile;
+
+    public ModelLoader(Model model) {
+        this.model = model;
+    }
+
+    // Add a profile, or set its username if it already exists
+    public void putProfile(int profileId, String userName) {
+        maxProfileId = Math.max(maxProfileId, profileId);
+        Profile profile = model.getProfile(profileId);
+        if (profile == null) {
+            profile = new Profile(userName);
+            profile.setProfileId(profileId);
+            model.profiles.put(profileId, profile);
+        } else {
+            renameProfile(profileId, userName);
+        }
+    }
+
+    // Set the username of a profile (its postings read it from the profile)
+    public void renameProfile(int profileId, String userName) {
+        Profile profile = model.getProfile(profileId);
+        if (profile != null) {
+            profile.setUserName(userName);
+        }
+    }
+
+    // Remove a profile and any postings it still has
+    public void removeProfile(int profileId) {
+        removePostings(profileId);
+        model.profiles.remove(profileId);
+        lastProfile = null;
+    }
+
+    // Add a posting to a profile, unless it is already there
+    public void putPosting(int profileId, int postingId, long epochMillis, String postingText) {
+        putPosting(profileId, postingId, epochMillis,
+                postingText == null ? null : postingText.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Add a posting whose text is already UTF-8 bytes to a profile, unless it is already there.
+    // The bytes become the posting's, so they must not be changed afterwards.
+    public void putPosting(int profileId, int postingId, long epochMillis, byte[] postingText) {
+        maxPostingId = Math.max(maxPostingId, postingId);
+        // Postings usually come in runs from one profile, so the last one found is tried first
+        Profile profile = lastProfile != null && lastProfile.getProfileId() == profileId
+                ? lastProfile
+                : model.getProfile(profileId);
+        if (profile == null) {
+            return;
+        }
+        lastProfile = profile;
+        Posting posting = new Posting();
+        posting.setPostingTextUtf8(postingText);
+        posting.setPostingId(postingId);
+        posting.setEpochMillis(epochMillis);
+        posting.setAuthor(profile);
+        if (model.postings.putIfAbsent(postingId, posting) == null) {
+            profile.addPosting(posting);
+        }
+    }
+
+    // Set the text of a posting
+    public void updatePosting(int postingId, String postingText) {
+        Posting posting = model.getPosting(postingId);
+        if (posting != null) {
+            posting.setPostingText(postingText);
+        }
+    }
+
+    // Remove a posting from a profile
+    public void removePosting(int profileId, int postingId) {
+        Profile profile = model.getProfile(profileId);
+        if (profile != null && profile.getTimeline().remove(postingId)) {
+            model.postings.remove(postingId);
+        }
+    }
+
+    // Remove all postings of a profile
+    public void removePostings(int profileId) {
+        Profile profile = model.getProfile(profileId);
+        if (profile != null) {
+            for (Posting posting : profile.getPostings()) {
+                model.postings.remove(posting.getPostingId());
+            }
+            profile.clearPostings();
+        }
+    }
+
+    // Make one profile follow another
+    public void follow(int followerId, int followeeId) {
+        Profile follower = model.getProfile(followerId);
+        if (follower != null) {
+            follower.following.add(followeeId);
+        }
+    }
+
+    // Make one profile stop following another
+    public void unfollow(int followerId, int followeeId) {
+        Profile follower = model.getProfile(followerId);
+        if (follower != null) {
+            follower.following.remove(followeeId);
+        }
+    }
+
+    // Make sure IDs handed out after loading are at least these
+    public void setNextIds(int nextProfileId, int nextPostingId) {
+        this.nextProfileId = Math.max(this.nextProfileId, nextProfileId);
+        this.nextPostingId = Math.max(this.nextPostingId, nextPostingId);
+    }
+
+    // Rebuild the username index, drop follows of profiles that no longer exist, move the ID
+    // counters past every loaded ID and tell the listeners that the store has been loaded.
+    // Returns the usernames that were claimed by more than one profile (the profile with the highest ID keeps it).
+    public List<String> finish() {
+        List<String> clashes = new ArrayList<>();
+        model.profilesByUsername.clear();
+        for (Profile profile : model.getProfilesAfter(null)) {
+            if (model.profilesByUsername.put(profile.getUserName(), profile) != null) {
+                clashes.add(profile.getUserName());
+            }
+            profile.following.removeIf(followeeId -> model.getProfile(followeeId) == null);
+        }
+        model.nextProfileId.accumulateAndGet(Math.max(nextProfileId, maxProfileId + 1), Math::max);
+        model.nextPostingId.accumulateAndGet(Math.max(nextPostingId, maxPostingId + 1), Math::max);
+        for (ModelListener listener : model.listeners) {
+            listener.onLoaded();
+        }
+        return clashes;
+    }
+}
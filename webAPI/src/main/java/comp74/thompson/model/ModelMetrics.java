@@ -0,0 +1,18 @@
+package comp74.thompson.model;
+
+import org.springframework.http.HttpStatusCode;
+
+/*
+ * Gets told how long each Model operation took and how it ended, as the status code
+ * the Model answered with (reads that don't answer with a status code report 200 (OK)
+ * if they found something and 404 (NOT_FOUND) if they didn't).
+ * Called on the thread that made the call, for every call, so it must be cheap.
+ */
+public interface ModelMetrics {
+
+    // Reports nowhere. Used until metrics are set.
+    ModelMetrics NONE = (operation, status, nanos) -> {
+    };
+
+    void record(ModelOperation operation, HttpStatusCode status, long nanos);
+}
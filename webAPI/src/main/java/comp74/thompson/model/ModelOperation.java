@@ -0,0 +1,31 @@
+package comp74.thompson.model;
+
+/*
+ * The Model operations that are timed and reported to ModelMetrics.
+ * The tag is the name of the Model method.
+ */
+public enum ModelOperation {
+    ADD_PROFILE("addProfile"),
+    GET_PROFILES("getProfiles"),
+    GET_PROFILE_BY_USERNAME("getProfileByUsername"),
+    ADD_POST("addPost"),
+    ADD_POSTINGS("addPostings"),
+    DELETE_POST("deletePost"),
+    DELETE_POSTS("deletePosts"),
+    DELETE_PROFILE("deleteProfile"),
+    UPDATE_POST("updatePost"),
+    UPDATE_PROFILE("updateProfile"),
+    FOLLOW("follow"),
+    UNFOLLOW("unfollow"),
+    READ_LOCKED("readLocked");
+
+    private final String tag;
+
+    ModelOperation(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+}
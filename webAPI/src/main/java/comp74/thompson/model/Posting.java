@@ -1,27 +1,152 @@
 package comp74.thompson.model;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
+/*
+ * This class represents a posting in the social media application.
+ * There can be tens of millions of postings, so each one is kept small:
+ * the ID is a primitive int, the date and time are a single long (milliseconds since the epoch),
+ * the text is kept as UTF-8 bytes, and the username is not copied but read from the author profile.
+ * Renaming a profile therefore renames all of its postings at once.
+ * The JSON is the same as it has always been: postingId, postingText, date, time and userName.
+ */
 @NoArgsConstructor
 @Data
+@JsonSerialize(using = Posting.Serializer.class)
+@JsonIgnoreProperties(value = { "postingId", "date", "time", "userName" }, allowGetters = true)
 public class Posting {
-    Integer postingId;
-    String postingText;
-    LocalDate date;
-    LocalTime time;
-    String userName;
+    int postingId;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    byte[] text;
+    @JsonIgnore
+    long epochMillis;
+    @JsonIgnore
+    @Setter(AccessLevel.PACKAGE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    Profile author;
 
     public Posting(String postingText) {
-        this.postingText = postingText;
+        setPostingText(postingText);
+    }
+
+    @ToString.Include
+    public String getPostingText() {
+        return text == null ? null : new String(text, StandardCharsets.UTF_8);
+    }
+
+    public void setPostingText(String postingText) {
+        this.text = postingText == null ? null : postingText.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Set the text from UTF-8 bytes, which are kept as they are rather than copied (for loading in bulk)
+    void setPostingTextUtf8(byte[] utf8) {
+        this.text = utf8;
+    }
+
+    // Get the text as UTF-8 bytes without copying them, for reading it in bulk. The bytes must not be changed.
+    public byte[] postingTextUtf8() {
+        return text;
+    }
+
+    // Get the username of the author, or null if the posting has not been added to a profile
+    public String getUserName() {
+        return author == null ? null : author.getUserName();
+    }
+
+    // Get the profileId of the author, or 0 if the posting has not been added to a profile
+    @JsonIgnore
+    public int getAuthorId() {
+        return author == null ? 0 : author.getProfileId();
     }
 
     public void setDateAndTime(LocalDateTime datetime) {
-        this.date = datetime.toLocalDate();
-        this.time = datetime.toLocalTime();
+        this.epochMillis = toEpochMillis(datetime);
+    }
+
+    // Get the date and time of the posting, or null if it has not been set
+    @JsonIgnore
+    public LocalDateTime getDateTime() {
+        if (epochMillis == 0) {
+            return null;
+        }
+        return toLocalDateTime(epochMillis);
+    }
+
+    public LocalDate getDate() {
+        LocalDateTime dateTime = getDateTime();
+        return dateTime == null ? null : dateTime.toLocalDate();
+    }
+
+    public LocalTime getTime() {
+        LocalDateTime dateTime = getDateTime();
+        return dateTime == null ? null : dateTime.toLocalTime();
+    }
+
+    // Convert milliseconds since the epoch to a local date and time
+    public static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    // Convert a local date and time to milliseconds since the epoch
+    public static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // Write a posting in its usual JSON shape. When writing bytes, the text is copied straight
+    // from its UTF-8 bytes without making a String. The date and time use whatever format
+    // the mapper is set up with.
+    static class Serializer extends StdSerializer<Posting> {
+        // StdSerializer is Serializable, though a serializer is never serialized here
+        private static final long serialVersionUID = 1L;
+
+        Serializer() {
+            super(Posting.class);
+        }
+
+        @Override
+        public void serialize(Posting posting, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(posting);
+            gen.writeNumberField("postingId", posting.postingId);
+            gen.writeFieldName("postingText");
+            byte[] text = posting.text;
+            if (text == null) {
+                gen.writeNull();
+            } else if (gen instanceof UTF8JsonGenerator) {
+                gen.writeUTF8String(text, 0, text.length);
+            } else {
+                // Generators that write characters rather than bytes need a String
+                gen.writeString(new String(text, StandardCharsets.UTF_8));
+            }
+            LocalDateTime dateTime = posting.getDateTime();
+            provider.defaultSerializeField("date", dateTime == null ? null : dateTime.toLocalDate(), gen);
+            provider.defaultSerializeField("time", dateTime == null ? null : dateTime.toLocalTime(), gen);
+            gen.writeStringField("userName", posting.getUserName());
+            gen.writeEndObject();
+        }
     }
 }
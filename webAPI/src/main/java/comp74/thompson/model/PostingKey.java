@@ -0,0 +1,52 @@
+package comp74.thompson.model;
+
+import java.util.Comparator;
+
+/*
+ * Where a posting stands in time among the postings of every profile: its time, with its
+ * postingId to break ties, the same order a Timeline keeps. Within one profile postingIds are
+ * in time order, but not across profiles (an import adds old postings with new IDs), so
+ * anything that puts the postings of several profiles in order uses this key instead of the ID.
+ *
+ * As a paging cursor it is written "<epochMillis>-<postingId>".
+ */
+public record PostingKey(long epochMillis, int postingId) implements Comparable<PostingKey> {
+
+    // Postings oldest first, by time and then postingId
+    public static final Comparator<Posting> OLDEST_FIRST = Comparator.comparingLong(Posting::getEpochMillis)
+            .thenComparingInt(Posting::getPostingId);
+
+    public static PostingKey of(Posting posting) {
+        return new PostingKey(posting.getEpochMillis(), posting.getPostingId());
+    }
+
+    // Read a cursor written by toString. Returns null if it isn't one.
+    public static PostingKey parse(String cursor) {
+        // The time can be negative, so the last dash is the separator
+        int dash = cursor == null ? -1 : cursor.lastIndexOf('-');
+        if (dash <= 0) {
+            return null;
+        }
+        try {
+            return new PostingKey(Long.parseLong(cursor.substring(0, dash)), Integer.parseInt(cursor.substring(dash + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Check whether a posting comes before (is older than) this key
+    public boolean isAfter(Posting posting) {
+        return compareTo(of(posting)) > 0;
+    }
+
+    @Override
+    public int compareTo(PostingKey other) {
+        int byTime = Long.compare(epochMillis, other.epochMillis);
+        return byTime != 0 ? byTime : Integer.compare(postingId, other.postingId);
+    }
+
+    @Override
+    public String toString() {
+        return epochMillis + "-" + postingId;
+    }
+}
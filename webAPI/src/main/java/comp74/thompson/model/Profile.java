@@ -1,41 +1,77 @@
 package comp74.thompson.model;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 
 /*
  * This class represents a profile in the social media application.
- * A profile has a unique profileId, a userName, and a list of postings.
+ * A profile has a unique profileId, a userName, a timeline of postings, and the IDs
+ * of the profiles it follows.
+ * The timeline and the followed IDs are only changed by the Model while it holds the profile's lock,
+ * but it is read (and serialized) by other request threads at the same time.
+ * The version goes up by one each time the Model changes the profile or its postings,
+ * after the change has been made. Anything built from a profile (a cached response,
+ * an ETag) can be tagged with the version read before building it, and is out of date
+ * once the version has moved on.
  */
 @NoArgsConstructor
 @Data
 public class Profile {
     Integer profileId;
     String userName;
-    List<Posting> postings;
+    @JsonIgnore
+    final Timeline timeline = new Timeline();
+    @JsonIgnore
+    final Set<Integer> following = ConcurrentHashMap.newKeySet();
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    volatile long version;
 
     public Profile(String userName) {
         this.userName = userName;
-        postings = new ArrayList<>();
     }
 
-    // Add a posting to the list of postings
+    // Record that the profile has changed. Only called by the Model while it holds the profile's lock.
+    void incrementVersion() {
+        version++;
+    }
+
+    // Add a posting to the timeline of postings
     public void addPosting(Posting posting) {
-        postings.add(posting);
+        timeline.add(posting);
+    }
+
+    // Remove a posting from the timeline of postings
+    public boolean removePosting(Posting posting) {
+        return timeline.remove(posting.getPostingId());
+    }
+
+    // Remove all postings from the timeline of postings
+    public void clearPostings() {
+        timeline.clear();
     }
 
-    // Remove a posting from the list of postings
-    public void removePosting(Posting posting) {
-        postings.remove(posting);
+    // Get all postings, oldest first. This is a live view of the timeline.
+    // Postings can only be added through the Model, so they are ignored in a request body.
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public Collection<Posting> getPostings() {
+        return timeline.values();
     }
 
-    public List<Posting> getPostings() {
-        if (postings == null) {
-            postings = new ArrayList<>();
-        }
-        return postings;
+    // Get the IDs of the profiles this profile follows. This is a live, read-only view.
+    // A profile that has been deleted can still be in it until the store is next loaded.
+    @JsonIgnore
+    public Set<Integer> getFollowing() {
+        return Collections.unmodifiableSet(following);
     }
 }
@@ -0,0 +1,159 @@
+package comp74.thompson.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * The postings of one profile, ordered by time.
+ * Postings are kept in a skip list keyed by (time, postingId), so adding or removing
+ * a posting is O(log n) and reading "the latest N" or "everything between t1 and t2"
+ * walks a view of the list instead of copying it.
+ *
+ * The Model gives a profile's postings increasing IDs and non-decreasing times, so
+ * ordering by time and ordering by postingId are the same thing. That lets a posting
+ * be found by its ID alone: an ID-only key compares by postingId against the stored keys.
+ *
+ * Changes are made by the Model while it holds the profile's lock. Reads can happen
+ * at any time from any thread.
+ */
+public class Timeline {
+
+    // Position of a posting in the timeline
+    record Key(long epochMillis, int postingId, boolean idOnly) {
+        static Key of(Posting posting) {
+            return new Key(posting.getEpochMillis(), posting.getPostingId(), false);
+        }
+
+        static Key ofId(int postingId) {
+            return new Key(0, postingId, true);
+        }
+
+        static Key ofTime(long epochMillis, int postingId) {
+            return new Key(epochMillis, postingId, false);
+        }
+    }
+
+    static final Comparator<Key> ORDER = (a, b) -> {
+        if (a.idOnly() || b.idOnly()) {
+            return Integer.compare(a.postingId(), b.postingId());
+        }
+        int byTime = Long.compare(a.epochMillis(), b.epochMillis());
+        return byTime != 0 ? byTime : Integer.compare(a.postingId(), b.postingId());
+    };
+
+    private final ConcurrentSkipListMap<Key, Posting> entries = new ConcurrentSkipListMap<>(ORDER);
+    // ConcurrentSkipListMap.size() is O(n), so the size is counted separately
+    private final AtomicInteger size = new AtomicInteger();
+
+    // Add a posting to the end of the timeline
+    public void add(Posting posting) {
+        if (entries.put(Key.of(posting), posting) == null) {
+            size.incrementAndGet();
+        }
+    }
+
+    // Remove a posting. Returns false if the posting is not in this timeline.
+    public boolean remove(Integer postingId) {
+        if (postingId != null && entries.remove(Key.ofId(postingId)) != null) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    // Get a posting of this timeline by ID, or null if it is not in this timeline
+    public Posting get(Integer postingId) {
+        return postingId == null ? null : entries.get(Key.ofId(postingId));
+    }
+
+    // Get the most recent posting, or null if the timeline is empty
+    public Posting latest() {
+        Map.Entry<Key, Posting> last = entries.lastEntry();
+        return last == null ? null : last.getValue();
+    }
+
+    public void clear() {
+        entries.clear();
+        size.set(0);
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    // All postings, oldest first. This is a live view, nothing is copied.
+    public Collection<Posting> values() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    // Postings created at or after since and before until (both epoch millis, null for no bound),
+    // oldest first or newest first, starting after the posting with ID after (null to start at the beginning).
+    // This is a live view, nothing is copied.
+    public Collection<Posting> range(Long since, Long until, Integer after, boolean newestFirst) {
+        // The lower and upper bounds of the view. A null bound means the timeline is open on that side.
+        Key lower = since == null ? null : Key.ofTime(since, Integer.MIN_VALUE);
+        boolean lowerInclusive = true;
+        Key upper = until == null ? null : Key.ofTime(until, Integer.MIN_VALUE);
+        boolean upperInclusive = false;
+
+        // Turn the cursor into the real key of a stored posting so that every bound has a time.
+        // If the cursor posting has been deleted, the next stored posting takes its place.
+        if (after != null) {
+            if (newestFirst) {
+                Key cursor = entries.floorKey(Key.ofId(after));
+                if (cursor == null) {
+                    return Collections.emptyList();
+                }
+                boolean inclusive = cursor.postingId() != after;
+                if (upper == null || ORDER.compare(cursor, upper) < 0) {
+                    upper = cursor;
+                    upperInclusive = inclusive;
+                }
+            } else {
+                Key cursor = entries.ceilingKey(Key.ofId(after));
+                if (cursor == null) {
+                    return Collections.emptyList();
+                }
+                boolean inclusive = cursor.postingId() != after;
+                if (lower == null || ORDER.compare(cursor, lower) > 0) {
+                    lower = cursor;
+                    lowerInclusive = inclusive;
+                }
+            }
+        }
+
+        NavigableMap<Key, Posting> view;
+        if (lower != null && upper != null) {
+            if (ORDER.compare(lower, upper) > 0) {
+                return Collections.emptyList();
+            }
+            view = entries.subMap(lower, lowerInclusive, upper, upperInclusive);
+        } else if (lower != null) {
+            view = entries.tailMap(lower, lowerInclusive);
+        } else if (upper != null) {
+            view = entries.headMap(upper, upperInclusive);
+        } else {
+            view = entries;
+        }
+        if (newestFirst) {
+            view = view.descendingMap();
+        }
+        return Collections.unmodifiableCollection(view.values());
+    }
+
+    // Postings older than the given time and postingId (see PostingKey), newest first.
+    // This is a live view, nothing is copied.
+    public Collection<Posting> olderThan(long epochMillis, int postingId) {
+        return Collections.unmodifiableCollection(
+                entries.headMap(Key.ofTime(epochMillis, postingId), false).descendingMap().values());
+    }
+}
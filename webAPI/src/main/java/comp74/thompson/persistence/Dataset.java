@@ -0,0 +1,34 @@
+package comp74.thompson.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.ModelLoader;
+
+/*
+ * A prebuilt store kept in a file, so that a large dataset can be loaded on startup
+ * instead of being generated again. The file is a snapshot (see SnapshotFile) with no
+ * log to replay after it, and is read straight into the Model by a ModelLoader.
+ */
+public final class Dataset {
+
+    private Dataset() {
+    }
+
+    // Write every profile and posting of the model to a file, replacing it only once it is complete
+    public static void write(Path file, Model model) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        SnapshotFile.write(temporary, model, 0, model.getNextProfileId(), model.getNextPostingId());
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Load a file written by write into the model, and tell the model's listeners it was loaded
+    public static void read(Path file, Model model) throws IOException {
+        ModelLoader loader = new ModelLoader(model);
+        SnapshotFile.read(file, loader);
+        loader.finish();
+    }
+}
@@ -0,0 +1,115 @@
+package comp74.thompson.persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import comp74.thompson.model.ModelLoader;
+
+/*
+ * The binary format of the changes written to the write-ahead log.
+ * A record is a one byte type followed by its fields. Integers are big-endian
+ * and strings are an int byte count followed by UTF-8 bytes. A null string
+ * (a posting sent without text) is a count of -1 and no bytes, so it comes back as null.
+ */
+final class LogRecords {
+    static final byte PROFILE_ADDED = 1;     // profileId, userName
+    static final byte PROFILE_UPDATED = 2;   // profileId, userName
+    static final byte PROFILE_DELETED = 3;   // profileId
+    static final byte POST_ADDED = 4;        // profileId, postingId, epochMillis, postingText
+    static final byte POST_UPDATED = 5;      // profileId, postingId, postingText
+    static final byte POST_DELETED = 6;      // profileId, postingId
+    static final byte POSTS_DELETED = 7;     // profileId
+    static final byte FOLLOWED = 8;          // followerId, followeeId
+    static final byte UNFOLLOWED = 9;        // followerId, followeeId
+
+    private LogRecords() {
+    }
+
+    static byte[] utf8(String text) {
+        return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // The bytes a string field takes
+    static int size(byte[] utf8) {
+        return 4 + (utf8 == null ? 0 : utf8.length);
+    }
+
+    static ByteBuffer putString(ByteBuffer buffer, byte[] utf8) {
+        return utf8 == null ? buffer.putInt(-1) : buffer.putInt(utf8.length).put(utf8);
+    }
+
+    static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static byte[] profileAdded(int profileId, String userName) {
+        byte[] name = utf8(userName);
+        return putString(ByteBuffer.allocate(1 + 4 + size(name))
+                .put(PROFILE_ADDED).putInt(profileId), name).array();
+    }
+
+    static byte[] profileUpdated(int profileId, String userName) {
+        byte[] name = utf8(userName);
+        return putString(ByteBuffer.allocate(1 + 4 + size(name))
+                .put(PROFILE_UPDATED).putInt(profileId), name).array();
+    }
+
+    static byte[] profileDeleted(int profileId) {
+        return ByteBuffer.allocate(1 + 4).put(PROFILE_DELETED).putInt(profileId).array();
+    }
+
+    static byte[] postAdded(int profileId, int postingId, long epochMillis, String postingText) {
+        byte[] text = utf8(postingText);
+        return putString(ByteBuffer.allocate(1 + 4 + 4 + 8 + size(text))
+                .put(POST_ADDED).putInt(profileId).putInt(postingId).putLong(epochMillis), text).array();
+    }
+
+    static byte[] postUpdated(int profileId, int postingId, String postingText) {
+        byte[] text = utf8(postingText);
+        return putString(ByteBuffer.allocate(1 + 4 + 4 + size(text))
+                .put(POST_UPDATED).putInt(profileId).putInt(postingId), text).array();
+    }
+
+    static byte[] postDeleted(int profileId, int postingId) {
+        return ByteBuffer.allocate(1 + 4 + 4).put(POST_DELETED).putInt(profileId).putInt(postingId).array();
+    }
+
+    static byte[] postsDeleted(int profileId) {
+        return ByteBuffer.allocate(1 + 4).put(POSTS_DELETED).putInt(profileId).array();
+    }
+
+    static byte[] followed(int followerId, int followeeId) {
+        return ByteBuffer.allocate(1 + 4 + 4).put(FOLLOWED).putInt(followerId).putInt(followeeId).array();
+    }
+
+    static byte[] unfollowed(int followerId, int followeeId) {
+        return ByteBuffer.allocate(1 + 4 + 4).put(UNFOLLOWED).putInt(followerId).putInt(followeeId).array();
+    }
+
+    // Apply one record to the store being loaded
+    static void apply(ByteBuffer record, ModelLoader loader) {
+        byte type = record.get();
+        switch (type) {
+            case PROFILE_ADDED -> loader.putProfile(record.getInt(), readString(record));
+            case PROFILE_UPDATED -> loader.renameProfile(record.getInt(), readString(record));
+            case PROFILE_DELETED -> loader.removeProfile(record.getInt());
+            case POST_ADDED -> loader.putPosting(record.getInt(), record.getInt(), record.getLong(),
+                    readString(record));
+            case POST_UPDATED -> {
+                record.getInt();
+                loader.updatePosting(record.getInt(), readString(record));
+            }
+            case POST_DELETED -> loader.removePosting(record.getInt(), record.getInt());
+            case POSTS_DELETED -> loader.removePostings(record.getInt());
+            case FOLLOWED -> loader.follow(record.getInt(), record.getInt());
+            case UNFOLLOWED -> loader.unfollow(record.getInt(), record.getInt());
+            default -> throw new IllegalStateException("Unknown log record type " + type);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package comp74.thompson.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.ModelListener;
+import comp74.thompson.model.ModelLoader;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+import jakarta.annotation.PreDestroy;
+
+/*
+ * Makes the Model survive restarts.
+ *
+ * Every change the Model makes is appended to a write-ahead log. Every
+ * persistence.snapshot-interval-seconds the log is rotated and the whole store is
+ * written to a snapshot file, after which older log segments and snapshots are deleted.
+ * On startup the latest snapshot is loaded and the log segments written since are
+ * replayed on top of it, before the application starts serving requests.
+ *
+ * With persistence.sync=true (the default), a change isn't acknowledged until its log
+ * record is on disk. The wait happens after the profile's lock has been released, so
+ * other writers keep going and share the next fsync.
+ *
+ * If the log can't be written, it stops (see WriteAheadLog). From then on the Model turns
+ * every change down with 503 before making it, instead of changing the store with nothing
+ * logged, and the failure is reported as DOWN by /actuator/health. Reads carry on.
+ *
+ * Enabled with persistence.enabled=true.
+ */
+@Component
+@ConditionalOnProperty(name = "persistence.enabled", havingValue = "true")
+public class PersistenceManager implements ModelListener, HealthIndicator {
+    static final Logger log = LoggerFactory.getLogger(PersistenceManager.class);
+    static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d+)\\.log");
+    static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.snap");
+
+    Model model;
+    Path directory;
+    boolean sync;
+    WriteAheadLog wal;
+    ScheduledExecutorService snapshotter;
+    // Only one snapshot is written at a time
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    // The log sequence number of the last record appended by each thread
+    private final ThreadLocal<long[]> lastLsn = ThreadLocal.withInitial(() -> new long[1]);
+
+    public PersistenceManager(Model model,
+            @Value("${persistence.directory:data}") String directory,
+            @Value("${persistence.sync:true}") boolean sync,
+            @Value("${persistence.fsync:true}") boolean fsync,
+            @Value("${persistence.snapshot-interval-seconds:300}") long snapshotIntervalSeconds) throws IOException {
+        this.model = model;
+        this.directory = Paths.get(directory);
+        this.sync = sync;
+        Files.createDirectories(this.directory);
+        int segment = recover();
+        this.wal = new WriteAheadLog(this.directory, segment, fsync);
+        model.addListener(this);
+        if (snapshotIntervalSeconds > 0) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "snapshotter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotter.scheduleWithFixedDelay(this::snapshotQuietly,
+                    snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    // Find the files in the directory whose names match the pattern, sorted by their number
+    private List<Integer> numbered(Pattern pattern) throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = pattern.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    numbers.add(Integer.parseInt(matcher.group(1)));
+                }
+            });
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    // Load the latest snapshot and replay the log on top of it.
+    // Returns the number of the segment new records should be appended to.
+    int recover() throws IOException {
+        long start = System.nanoTime();
+        ModelLoader loader = new ModelLoader(model);
+        int firstSegment = 0;
+        List<Integer> snapshots = numbered(SNAPSHOT_NAME);
+        if (!snapshots.isEmpty()) {
+            Path snapshot = SnapshotFile.snapshotPath(directory, snapshots.get(snapshots.size() - 1));
+            firstSegment = SnapshotFile.read(snapshot, loader);
+            log.info("Loaded snapshot {}", snapshot);
+        }
+        int nextSegment = firstSegment;
+        long records = 0;
+        for (Integer segment : numbered(SEGMENT_NAME)) {
+            if (segment < firstSegment) {
+                continue;
+            }
+            Path file = WriteAheadLog.segmentPath(directory, segment);
+            long[] count = new long[1];
+            long validLength = WriteAheadLog.replay(file, record -> {
+                LogRecords.apply(record, loader);
+                count[0]++;
+            });
+            if (validLength < Files.size(file)) {
+                log.warn("Dropping a half-written record at the end of {}", file);
+                WriteAheadLog.truncate(file, validLength);
+            }
+            records += count[0];
+            nextSegment = segment + 1;
+        }
+        for (String userName : loader.finish()) {
+            log.warn("Username {} was claimed by more than one profile while recovering", userName);
+        }
+        log.info("Recovered {} profiles and {} postings ({} log records) in {} ms",
+                model.getProfilesAfter(null).size(), model.getPostingCount(), records,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return nextSegment;
+    }
+
+    // Write a snapshot of the whole store and delete the log segments and snapshots it replaces
+    public void snapshot() throws IOException {
+        snapshotLock.lock();
+        try {
+            int segment = wal.rotate();
+            // Read the ID counters after rotating, so they cover every ID handed out before it,
+            // whose records are in the segments this snapshot replaces. An ID handed out since
+            // is logged in the new segment, and replaying it raises the counters again.
+            int nextProfileId = model.getNextProfileId();
+            int nextPostingId = model.getNextPostingId();
+            Path file = SnapshotFile.snapshotPath(directory, segment);
+            Path temporary = directory.resolve(file.getFileName() + ".tmp");
+            long start = System.nanoTime();
+            SnapshotFile.write(temporary, model, segment, nextProfileId, nextPostingId);
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.info("Wrote snapshot {} in {} ms", file, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            for (Integer old : numbered(SEGMENT_NAME)) {
+                if (old < segment) {
+                    Files.deleteIfExists(WriteAheadLog.segmentPath(directory, old));
+                }
+            }
+            for (Integer old : numbered(SNAPSHOT_NAME)) {
+                if (old < segment) {
+                    Files.deleteIfExists(SnapshotFile.snapshotPath(directory, old));
+                }
+            }
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not write a snapshot", e);
+        }
+    }
+
+    // Stop taking snapshots and write out the rest of the log
+    @PreDestroy
+    public void close() throws IOException {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        wal.close();
+    }
+
+    // DOWN, with the error, once the log can't be written
+    @Override
+    public Health health() {
+        IOException failure = wal.getFailure();
+        if (failure != null) {
+            return Health.down(failure).withDetail("segment", wal.getSegment()).build();
+        }
+        return Health.up().withDetail("segment", wal.getSegment()).build();
+    }
+
+    private void append(byte[] record) {
+        lastLsn.get()[0] = wal.append(record);
+    }
+
+    @Override
+    public void onProfileAdded(Profile profile) {
+        append(LogRecords.profileAdded(profile.getProfileId(), profile.getUserName()));
+    }
+
+    @Override
+    public void onProfileUpdated(Profile profile, String oldUserName) {
+        append(LogRecords.profileUpdated(profile.getProfileId(), profile.getUserName()));
+    }
+
+    @Override
+    public void onProfileDeleted(Profile profile) {
+        append(LogRecords.profileDeleted(profile.getProfileId()));
+    }
+
+    @Override
+    public void onPostAdded(Profile profile, Posting posting) {
+        append(LogRecords.postAdded(profile.getProfileId(), posting.getPostingId(),
+                posting.getEpochMillis(), posting.getPostingText()));
+    }
+
+    @Override
+    public void onPostUpdated(Profile profile, Posting posting, String oldText) {
+        append(LogRecords.postUpdated(profile.getProfileId(), posting.getPostingId(), posting.getPostingText()));
+    }
+
+    @Override
+    public void onPostDeleted(Profile profile, Posting posting) {
+        append(LogRecords.postDeleted(profile.getProfileId(), posting.getPostingId()));
+    }
+
+    @Override
+    public void onPostsDeleted(Profile profile, Collection<Posting> postings) {
+        append(LogRecords.postsDeleted(profile.getProfileId()));
+    }
+
+    @Override
+    public void onFollowed(Profile follower, Profile followee) {
+        append(LogRecords.followed(follower.getProfileId(), followee.getProfileId()));
+    }
+
+    @Override
+    public void onUnfollowed(Profile follower, Profile followee) {
+        append(LogRecords.unfollowed(follower.getProfileId(), followee.getProfileId()));
+    }
+
+    // Turn changes down once the log has stopped, so the store doesn't get ahead of it
+    @Override
+    public boolean acceptsChanges() {
+        return wal.getFailure() == null;
+    }
+
+    // Wait for this thread's last record to reach the disk
+    @Override
+    public void afterChange() {
+        long[] lsn = lastLsn.get();
+        if (sync && lsn[0] > 0) {
+            try {
+                wal.awaitDurable(lsn[0]);
+            } finally {
+                lsn[0] = 0;
+            }
+        }
+    }
+
+}
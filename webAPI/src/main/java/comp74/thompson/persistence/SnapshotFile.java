@@ -0,0 +1,248 @@
+package comp74.thompson.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.ModelLoader;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+/*
+ * A full copy of the store in one file, written and read through memory-mapped windows.
+ *
+ * Layout (big-endian):
+ *   long magic, int version, int walSegment, int nextProfileId, int nextPostingId
+ *   then for each profile:  byte 'P', int profileId, string userName
+ *     followed by the profiles it follows:  byte 'F', int followeeId
+ *     and its postings:  byte 'T', int postingId, long epochMillis, string postingText
+ *   byte 'E', long profileCount, long postingCount
+ * Strings are an int byte count followed by UTF-8 bytes, or a count of -1 for null.
+ *
+ * walSegment is the first log segment that has to be replayed on top of the snapshot.
+ */
+final class SnapshotFile {
+    static final long MAGIC = 0x534D534E41503031L; // "SMSNAP01"
+    // Version 1 had no follows. It is still read, as a store in which nobody follows anybody.
+    static final int VERSION = 2;
+    static final int WINDOW_SIZE = 64 << 20;
+
+    static final byte PROFILE = 'P';
+    static final byte FOLLOW = 'F';
+    static final byte POSTING = 'T';
+    static final byte END = 'E';
+
+    private SnapshotFile() {
+    }
+
+    static Path snapshotPath(Path directory, int walSegment) {
+        return directory.resolve(String.format("snapshot-%010d.snap", walSegment));
+    }
+
+    // Write every profile, follow and posting of the model to a file.
+    // The model can keep changing while this runs. Changes that are missed, or only
+    // partly seen, are in the log from walSegment on and are replayed over the snapshot.
+    static void write(Path file, Model model, int walSegment, int nextProfileId, int nextPostingId)
+            throws IOException {
+        try (MappedOutput out = new MappedOutput(file)) {
+            out.putLong(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(walSegment);
+            out.putInt(nextProfileId);
+            out.putInt(nextPostingId);
+            long profileCount = 0;
+            long postingCount = 0;
+            for (Profile profile : model.getProfilesAfter(null)) {
+                out.putByte(PROFILE);
+                out.putInt(profile.getProfileId());
+                out.putString(profile.getUserName());
+                profileCount++;
+                for (Integer followeeId : profile.getFollowing()) {
+                    out.putByte(FOLLOW);
+                    out.putInt(followeeId);
+                }
+                for (Posting posting : profile.getPostings()) {
+                    out.putByte(POSTING);
+                    out.putInt(posting.getPostingId());
+                    out.putLong(posting.getEpochMillis());
+                    out.putString(posting.getPostingText());
+                    postingCount++;
+                }
+            }
+            out.putByte(END);
+            out.putLong(profileCount);
+            out.putLong(postingCount);
+        }
+    }
+
+    // Load a snapshot into the store. Returns the first log segment to replay on top of it.
+    static int read(Path file, ModelLoader loader) throws IOException {
+        try (MappedInput in = new MappedInput(file)) {
+            if (in.getLong() != MAGIC) {
+                throw new IOException(file + " is not a snapshot");
+            }
+            int version = in.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException(file + " has unsupported version " + version);
+            }
+            int walSegment = in.getInt();
+            loader.setNextIds(in.getInt(), in.getInt());
+            int profileId = -1;
+            while (true) {
+                byte tag = in.getByte();
+                if (tag == PROFILE) {
+                    profileId = in.getInt();
+                    loader.putProfile(profileId, in.getString());
+                } else if (tag == FOLLOW) {
+                    loader.follow(profileId, in.getInt());
+                } else if (tag == POSTING) {
+                    int postingId = in.getInt();
+                    long epochMillis = in.getLong();
+                    // The text stays as UTF-8 bytes, which is how a posting keeps it anyway
+                    loader.putPosting(profileId, postingId, epochMillis, in.getBytes());
+                } else if (tag == END) {
+                    return walSegment;
+                } else {
+                    throw new IOException(file + " is corrupt at byte " + in.position());
+                }
+            }
+        }
+    }
+
+    // Sequential writes to a file through a sliding memory-mapped window
+    static class MappedOutput implements Closeable {
+        final FileChannel channel;
+        MappedByteBuffer window;
+        long windowStart;
+
+        MappedOutput(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            window = channel.map(FileChannel.MapMode.READ_WRITE, 0, WINDOW_SIZE);
+        }
+
+        long position() {
+            return windowStart + window.position();
+        }
+
+        // Make sure the window has room for n more bytes
+        void ensure(int n) throws IOException {
+            if (window.remaining() < n) {
+                window.force();
+                windowStart += window.position();
+                window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, Math.max(WINDOW_SIZE, n));
+            }
+        }
+
+        void putByte(byte value) throws IOException {
+            ensure(1);
+            window.put(value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            window.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            window.putLong(value);
+        }
+
+        void putString(String value) throws IOException {
+            if (value == null) {
+                ensure(4);
+                window.putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensure(4 + bytes.length);
+            window.putInt(bytes.length);
+            window.put(bytes);
+        }
+
+        // Flush the window, cut the file to what was written and sync it
+        @Override
+        public void close() throws IOException {
+            try {
+                window.force();
+                channel.truncate(position());
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // Sequential reads from a file through a sliding memory-mapped window
+    static class MappedInput implements Closeable {
+        final FileChannel channel;
+        final long size;
+        MappedByteBuffer window;
+        long windowStart;
+
+        MappedInput(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            size = channel.size();
+            window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(WINDOW_SIZE, size));
+        }
+
+        long position() {
+            return windowStart + window.position();
+        }
+
+        // Make sure the window holds n more bytes
+        void ensure(int n) throws IOException {
+            if (window.remaining() < n) {
+                windowStart += window.position();
+                if (windowStart + n > size) {
+                    throw new IOException("Snapshot ends unexpectedly at byte " + windowStart);
+                }
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                        Math.min(Math.max(WINDOW_SIZE, n), size - windowStart));
+            }
+        }
+
+        byte getByte() throws IOException {
+            ensure(1);
+            return window.get();
+        }
+
+        int getInt() throws IOException {
+            ensure(4);
+            return window.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensure(8);
+            return window.getLong();
+        }
+
+        // Returns null for a null string
+        byte[] getBytes() throws IOException {
+            int length = getInt();
+            if (length < 0) {
+                return null;
+            }
+            ensure(length);
+            byte[] bytes = new byte[length];
+            window.get(bytes);
+            return bytes;
+        }
+
+        String getString() throws IOException {
+            byte[] bytes = getBytes();
+            return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package comp74.thompson.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/*
+ * An append-only log of changes, split into numbered segment files.
+ *
+ * Each record is framed as [int length][record bytes][int CRC32 of the record bytes],
+ * so a record that was only half written when the process died is detected and
+ * ignored on replay.
+ *
+ * Writes are group-committed. append() only copies the record into an in-memory
+ * buffer. A background thread writes the whole buffer to the file and fsyncs it,
+ * and records that arrive during an fsync go into the next batch. So one fsync
+ * covers every record that was waiting for it. Callers that need to know their
+ * record is on disk wait for it with awaitDurable().
+ *
+ * If a write or fsync fails, the log stops for good: what is on disk after the failure
+ * can't be trusted, so nothing more is written, and append() turns every new record down
+ * instead of buffering it. getFailure() tells whether that has happened.
+ */
+public class WriteAheadLog implements Closeable {
+    static final int INITIAL_BUFFER_SIZE = 1 << 16;
+
+    final Path directory;
+    final boolean fsync;
+
+    // Guards the pending buffer and the log sequence numbers
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition dataAvailable = appendLock.newCondition();
+    private final Condition flushed = appendLock.newCondition();
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ByteBuffer writing = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    // Log sequence numbers: the number of bytes appended, and the number of bytes known to be on disk
+    private long appendedLsn;
+    private long durableLsn;
+    private IOException failure;
+
+    // Guards the file. Held while a batch is written, so that rotation happens between batches.
+    private final ReentrantLock ioLock = new ReentrantLock();
+    private FileChannel channel;
+    private int segment;
+
+    private final Thread flusher;
+    private volatile boolean closed;
+    private final CRC32 crc = new CRC32();
+
+    // Open the log, appending to the given segment
+    public WriteAheadLog(Path directory, int segment, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.segment = segment;
+        this.fsync = fsync;
+        this.channel = open(segment);
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    static Path segmentPath(Path directory, int segment) {
+        return directory.resolve(String.format("wal-%010d.log", segment));
+    }
+
+    private FileChannel open(int segment) throws IOException {
+        return FileChannel.open(segmentPath(directory, segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    public int getSegment() {
+        ioLock.lock();
+        try {
+            return segment;
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // Add a record to the log. Returns its log sequence number, to pass to awaitDurable.
+    // Throws UncheckedIOException if the log could not be written.
+    public long append(byte[] record) {
+        int frameSize = 4 + record.length + 4;
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("The write-ahead log is closed");
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("The write-ahead log could not be written", failure);
+            }
+            if (pending.remaining() < frameSize) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + frameSize));
+                pending.flip();
+                bigger.put(pending);
+                pending = bigger;
+            }
+            crc.reset();
+            crc.update(record);
+            pending.putInt(record.length).put(record).putInt((int) crc.getValue());
+            appendedLsn += frameSize;
+            dataAvailable.signal();
+            return appendedLsn;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Get the error that stopped the log, or null if it is still working
+    public IOException getFailure() {
+        appendLock.lock();
+        try {
+            return failure;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Wait until the record with the given log sequence number has been written (and fsynced, if enabled)
+    public void awaitDurable(long lsn) {
+        appendLock.lock();
+        try {
+            while (durableLsn < lsn && failure == null) {
+                flushed.awaitUninterruptibly();
+            }
+            if (durableLsn < lsn) {
+                throw new UncheckedIOException("The write-ahead log could not be written", failure);
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            appendLock.lock();
+            try {
+                while (pending.position() == 0 && !closed) {
+                    dataAvailable.awaitUninterruptibly();
+                }
+                if (pending.position() == 0 && closed) {
+                    return;
+                }
+            } finally {
+                appendLock.unlock();
+            }
+            try {
+                flush();
+            } catch (IOException e) {
+                // Recorded by flushLocked
+                return;
+            }
+        }
+    }
+
+    // Write everything appended so far to the current segment
+    private void flush() throws IOException {
+        ioLock.lock();
+        try {
+            flushLocked();
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // Write the pending batch. If that fails, record the failure, which stops the log.
+    private void flushLocked() throws IOException {
+        long batchLsn;
+        appendLock.lock();
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            ByteBuffer full = pending;
+            pending = writing;
+            writing = full;
+            batchLsn = appendedLsn;
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            writing.flip();
+            while (writing.hasRemaining()) {
+                channel.write(writing);
+            }
+            writing.clear();
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        }
+        appendLock.lock();
+        try {
+            durableLsn = Math.max(durableLsn, batchLsn);
+            flushed.signalAll();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Stop the log, waking anyone waiting for a record to reach the disk
+    private void fail(IOException e) {
+        appendLock.lock();
+        try {
+            if (failure == null) {
+                failure = e;
+            }
+            flushed.signalAll();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Finish the current segment and start appending to a new one.
+    // Returns the number of the new segment. Every record appended before this call is in an older segment.
+    public int rotate() throws IOException {
+        ioLock.lock();
+        try {
+            flushLocked();
+            channel.close();
+            segment++;
+            channel = open(segment);
+            return segment;
+        } catch (IOException e) {
+            // With the old segment closed, nothing more can be written
+            fail(e);
+            throw e;
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // Write out everything that is still pending and close the file
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            closed = true;
+            dataAvailable.signal();
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ioLock.lock();
+        try {
+            flushLocked();
+        } finally {
+            channel.close();
+            ioLock.unlock();
+        }
+    }
+
+    // Read the records of a segment in order and pass each one to the handler.
+    // Stops at the first record that is incomplete or corrupt, which can only be
+    // the last one if the process died while writing it.
+    // Returns the length of the valid part of the segment.
+    static long replay(Path segmentFile, Consumer<ByteBuffer> handler) throws IOException {
+        long validLength = 0;
+        CRC32 checksum = new CRC32();
+        try (FileChannel file = FileChannel.open(segmentFile, StandardOpenOption.READ);
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(Channels.newInputStream(file), 1 << 20))) {
+            long size = file.size();
+            while (true) {
+                int length;
+                byte[] record;
+                int expected;
+                try {
+                    length = in.readInt();
+                    if (length < 0 || validLength + 8 + length > size) {
+                        break;
+                    }
+                    record = new byte[length];
+                    in.readFully(record);
+                    expected = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                checksum.reset();
+                checksum.update(record);
+                if ((int) checksum.getValue() != expected) {
+                    break;
+                }
+                handler.accept(ByteBuffer.wrap(record));
+                validLength += 8 + length;
+            }
+        }
+        return validLength;
+    }
+
+    // Cut a segment back to the given length, dropping a half-written record at its end
+    static void truncate(Path segmentFile, long length) throws IOException {
+        try (FileChannel file = FileChannel.open(segmentFile, StandardOpenOption.WRITE)) {
+            if (file.size() > length) {
+                file.truncate(length);
+                file.force(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package comp74.thompson.search;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * The latest time of any posting indexed with an ID up to a given one, so that a search which
+ * walks the postings lists from the largest ID down can tell when nothing further down can be
+ * newer than what it has found. IDs are mostly handed out in time order, so that is usually
+ * soon after the first page. Imported postings, with old dates and new IDs, don't change
+ * the bound; only a posting dated later than postings with larger IDs holds it up.
+ *
+ * IDs are grouped into blocks of 2^BLOCK_BITS, and each block keeps the latest time of any
+ * posting in it or a block below it, so reading the bound is O(1). Recording a posting raises
+ * its block and the blocks above it that are lower, which for a new posting is just its own.
+ * Times are only raised, never lowered when a posting goes, so the bound can be late but
+ * never early. Lock-free: the blocks are in chunks that are allocated once and never moved.
+ */
+class LatestTimes {
+    static final int BLOCK_BITS = 8;
+    static final int CHUNK_BITS = 12;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private final AtomicReferenceArray<AtomicLongArray> chunks =
+            new AtomicReferenceArray<>(1 << (Integer.SIZE - 1 - BLOCK_BITS - CHUNK_BITS));
+    // The highest block anything has been recorded in, or -1
+    private final AtomicInteger highest = new AtomicInteger(-1);
+
+    private AtomicLongArray chunk(int block) {
+        int index = block >>> CHUNK_BITS;
+        AtomicLongArray chunk = chunks.get(index);
+        if (chunk == null) {
+            AtomicLongArray created = new AtomicLongArray(CHUNK_SIZE);
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                created.set(i, Long.MIN_VALUE);
+            }
+            chunk = chunks.compareAndSet(index, null, created) ? created : chunks.get(index);
+        }
+        return chunk;
+    }
+
+    private long get(int block) {
+        AtomicLongArray chunk = chunks.get(block >>> CHUNK_BITS);
+        return chunk == null ? Long.MIN_VALUE : chunk.get(block & (CHUNK_SIZE - 1));
+    }
+
+    // Record the time of a posting
+    void record(int postingId, long epochMillis) {
+        int block = postingId >>> BLOCK_BITS;
+        // Blocks used for the first time start from the block below them. highest is raised
+        // before the block below is read, so a posting recorded below at the same time either
+        // is seen here or carries its time up past this block itself.
+        int before = highest.getAndAccumulate(block, Math::max);
+        for (int b = Math.max(before + 1, 1); b <= block; b++) {
+            raise(b, get(b - 1));
+        }
+        raise(block, epochMillis);
+    }
+
+    // Raise the blocks from block up to at least time, stopping at the first that already was
+    private void raise(int block, long time) {
+        for (int b = block; b <= highest.get(); b++) {
+            if (chunk(b).getAndAccumulate(b & (CHUNK_SIZE - 1), time, Math::max) >= time) {
+                return;
+            }
+        }
+    }
+
+    // Get the latest time of any posting recorded with an ID below postingId, or a time later than
+    // that (it takes in the whole block postingId is in). Long.MIN_VALUE if there are none.
+    long below(int postingId) {
+        int block = Math.min(postingId >>> BLOCK_BITS, highest.get());
+        return block < 0 ? Long.MIN_VALUE : get(block);
+    }
+
+    // Forget everything recorded. Not safe to call while postings are being recorded.
+    void clear() {
+        for (int i = 0; i < chunks.length(); i++) {
+            chunks.set(i, null);
+        }
+        highest.set(-1);
+    }
+}
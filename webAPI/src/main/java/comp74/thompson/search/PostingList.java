@@ -0,0 +1,249 @@
+package comp74.thompson.search;
+
+import java.util.Arrays;
+
+/*
+ * The sorted postingIds of the postings that contain one term, stored compressed.
+ *
+ * The newest IDs are kept in a small uncompressed int array (the tail). Once the tail
+ * holds two blocks' worth, its oldest BLOCK_SIZE IDs are closed into a block: the
+ * first ID, followed by the gaps between IDs as variable-length bytes. Most gaps are
+ * small, so most IDs take one or two bytes instead of a 16-byte boxed Integer.
+ *
+ * IDs usually arrive in increasing order. One that arrives late, or one that is removed,
+ * only rewrites the block it belongs in.
+ *
+ * Not thread-safe. The SearchIndex guards it.
+ */
+class PostingList {
+    static final int BLOCK_SIZE = 128;
+
+    // Closed blocks, oldest first
+    private int[] blockFirst = new int[0];
+    private int[] blockCount = new int[0];
+    private byte[][] blocks = new byte[0][];
+    private int blockTotal;
+    // The largest ID in the closed blocks
+    private int lastClosedId = Integer.MIN_VALUE;
+
+    // Newest IDs, uncompressed and sorted
+    private int[] tail = new int[2];
+    private int tailSize;
+
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    // Add an ID. Does nothing if it is already in the list.
+    void add(int id) {
+        if (blockTotal > 0 && id <= lastClosedId) {
+            // A late arrival. It goes into the closed block that covers it, or the first block.
+            int block = Math.max(findBlock(id), 0);
+            int[] ids = decode(block);
+            int index = Arrays.binarySearch(ids, id);
+            if (index >= 0) {
+                return;
+            }
+            int insertAt = -index - 1;
+            int[] grown = new int[ids.length + 1];
+            System.arraycopy(ids, 0, grown, 0, insertAt);
+            grown[insertAt] = id;
+            System.arraycopy(ids, insertAt, grown, insertAt + 1, ids.length - insertAt);
+            encode(block, grown, grown.length);
+            size++;
+            return;
+        }
+        int insertAt;
+        if (tailSize == 0 || id > tail[tailSize - 1]) {
+            // The usual case, a new posting
+            insertAt = tailSize;
+        } else {
+            int index = Arrays.binarySearch(tail, 0, tailSize, id);
+            if (index >= 0) {
+                return;
+            }
+            insertAt = -index - 1;
+        }
+        if (tailSize == tail.length) {
+            tail = Arrays.copyOf(tail, tail.length * 2);
+        }
+        System.arraycopy(tail, insertAt, tail, insertAt + 1, tailSize - insertAt);
+        tail[insertAt] = id;
+        tailSize++;
+        size++;
+        if (tailSize == 2 * BLOCK_SIZE) {
+            closeBlock();
+        }
+    }
+
+    // Remove an ID. Returns false if it was not in the list.
+    boolean remove(int id) {
+        int index = Arrays.binarySearch(tail, 0, tailSize, id);
+        if (index >= 0) {
+            System.arraycopy(tail, index + 1, tail, index, tailSize - index - 1);
+            tailSize--;
+            size--;
+            return true;
+        }
+        int block = findBlock(id);
+        if (block < 0) {
+            return false;
+        }
+        int[] ids = decode(block);
+        index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return false;
+        }
+        int[] shrunk = new int[ids.length - 1];
+        System.arraycopy(ids, 0, shrunk, 0, index);
+        System.arraycopy(ids, index + 1, shrunk, index, ids.length - index - 1);
+        if (shrunk.length == 0) {
+            removeBlock(block);
+        } else {
+            encode(block, shrunk, shrunk.length);
+        }
+        size--;
+        return true;
+    }
+
+    // Move the oldest BLOCK_SIZE IDs of the tail into a new closed block
+    private void closeBlock() {
+        if (blockTotal == blocks.length) {
+            int capacity = Math.max(4, blocks.length * 2);
+            blocks = Arrays.copyOf(blocks, capacity);
+            blockFirst = Arrays.copyOf(blockFirst, capacity);
+            blockCount = Arrays.copyOf(blockCount, capacity);
+        }
+        blockTotal++;
+        encode(blockTotal - 1, tail, BLOCK_SIZE);
+        System.arraycopy(tail, BLOCK_SIZE, tail, 0, tailSize - BLOCK_SIZE);
+        tailSize -= BLOCK_SIZE;
+    }
+
+    private void removeBlock(int block) {
+        System.arraycopy(blocks, block + 1, blocks, block, blockTotal - block - 1);
+        System.arraycopy(blockFirst, block + 1, blockFirst, block, blockTotal - block - 1);
+        System.arraycopy(blockCount, block + 1, blockCount, block, blockTotal - block - 1);
+        blockTotal--;
+        blocks[blockTotal] = null;
+        if (block == blockTotal) {
+            int[] last = blockTotal == 0 ? null : decode(blockTotal - 1);
+            lastClosedId = last == null ? Integer.MIN_VALUE : last[last.length - 1];
+        }
+    }
+
+    // Find the closed block whose range could hold the ID, or -1 if the ID is before the first block
+    private int findBlock(int id) {
+        int index = Arrays.binarySearch(blockFirst, 0, blockTotal, id);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    // Compress the first count IDs of ids into the given block
+    private void encode(int block, int[] ids, int count) {
+        byte[] bytes = new byte[count * 5];
+        int position = 0;
+        for (int i = 1; i < count; i++) {
+            int gap = ids[i] - ids[i - 1];
+            while ((gap & ~0x7F) != 0) {
+                bytes[position++] = (byte) ((gap & 0x7F) | 0x80);
+                gap >>>= 7;
+            }
+            bytes[position++] = (byte) gap;
+        }
+        blocks[block] = Arrays.copyOf(bytes, position);
+        blockFirst[block] = ids[0];
+        blockCount[block] = count;
+        if (block == blockTotal - 1) {
+            lastClosedId = ids[count - 1];
+        }
+    }
+
+    // Decompress a closed block
+    private int[] decode(int block) {
+        int[] ids = new int[blockCount[block]];
+        byte[] bytes = blocks[block];
+        ids[0] = blockFirst[block];
+        int position = 0;
+        for (int i = 1; i < ids.length; i++) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            ids[i] = ids[i - 1] + gap;
+        }
+        return ids;
+    }
+
+    // Walks the list from the largest ID down. Also answers "is this ID in the list?"
+    // for IDs that get smaller with each call, which is how an intersection probes it.
+    class DescendingCursor {
+        // blockTotal is the tail, 0..blockTotal-1 are blocks, blockTotal + 1 is before the start
+        private int current = blockTotal + 1;
+        private int[] ids;
+        private int index;
+
+        // The next smaller ID, or -1 when the list is exhausted
+        int next() {
+            while (true) {
+                if (ids != null && index > 0) {
+                    return ids[--index];
+                }
+                if (!load(current - 1)) {
+                    return -1;
+                }
+            }
+        }
+
+        // Move to the given part of the list: blockTotal for the tail, lower numbers for blocks
+        private boolean load(int part) {
+            if (part < 0) {
+                return false;
+            }
+            current = part;
+            if (part == blockTotal) {
+                ids = Arrays.copyOf(tail, tailSize);
+            } else {
+                ids = decode(part);
+            }
+            index = ids.length;
+            return true;
+        }
+
+        // Skip the IDs that are not smaller than the given ID, so that next() returns the first one below it
+        void skipBelow(int id) {
+            int part = blockTotal == 0 || (tailSize > 0 && id > tail[0]) ? blockTotal : findBlock(id);
+            if (part < 0) {
+                current = 0;
+                ids = new int[0];
+                index = 0;
+                return;
+            }
+            load(part);
+            int found = Arrays.binarySearch(ids, id);
+            index = found >= 0 ? found : -found - 1;
+        }
+
+        // Check whether the list contains the ID. IDs passed to successive calls must not increase.
+        boolean contains(int id) {
+            int part = id >= (tailSize > 0 ? tail[0] : Integer.MAX_VALUE) || blockTotal == 0
+                    ? blockTotal : findBlock(id);
+            if (part < 0) {
+                return false;
+            }
+            if (ids == null || part != current) {
+                load(part);
+            }
+            return Arrays.binarySearch(ids, id) >= 0;
+        }
+    }
+
+    DescendingCursor descending() {
+        return new DescendingCursor();
+    }
+}
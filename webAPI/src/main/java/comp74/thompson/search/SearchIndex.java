@@ -0,0 +1,361 @@
+package comp74.thompson.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.ModelListener;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.PostingKey;
+import comp74.thompson.model.Profile;
+
+/*
+ * An inverted index over the text of every posting: for each term, the compressed
+ * list of the postingIds that contain it. The Model's change events keep it up to date.
+ *
+ * A query is a list of terms and "quoted phrases", all of which must match.
+ * Results are ranked by time, newest first (see PostingKey). The postings lists are walked
+ * from the largest ID down, the shortest list driving the walk and the others probed, and
+ * the newest matches found so far are kept. postingIds are not in time order across profiles
+ * (an import adds old postings with new IDs), so the walk goes on until nothing with a smaller
+ * ID can be newer than those (see LatestTimes). With IDs mostly in time order, that is soon
+ * after the first page. Phrases are checked against the posting's text.
+ *
+ * The terms are spread over PARTITIONS partitions by their hash, each with its own lock.
+ * Listeners are called while the changed profile's lock is held, so an index update only
+ * takes the lock of one term's partition at a time, and writes to different terms don't
+ * contend. A query read-locks the partitions of its terms, lowest first, only while it
+ * walks the lists for a batch of candidates. Phrases are checked with no lock held.
+ */
+@Component
+public class SearchIndex implements ModelListener, MeterBinder {
+    // Queries with more terms than this are cut short
+    static final int MAX_QUERY_TERMS = 16;
+    // Whether lower-casing ASCII text gives ASCII, as it does in every locale but a few (Turkish
+    // turns I into a dotless i). Only then can the terms of ASCII text be worked out from its bytes.
+    static final boolean ASCII_CASE_FOLDING = "I".toLowerCase().equals("i");
+
+    // Number of partitions the terms are spread over. Must be a power of two.
+    static final int PARTITIONS = 64;
+    // Candidates gathered at a time for a query with phrases, which may turn some of them down
+    static final int PHRASE_BATCH = 32;
+
+    Model model;
+    private final Partition[] partitions = new Partition[PARTITIONS];
+    private final LatestTimes latestTimes = new LatestTimes();
+
+    // A share of the terms and the lock that guards their postings lists
+    static final class Partition {
+        final HashMap<String, PostingList> terms = new HashMap<>();
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    }
+
+    // A parsed query: the terms that must all appear, and the phrases that must appear as written
+    record Query(List<String> terms, List<List<String>> phrases) {
+    }
+
+    public SearchIndex(Model model) {
+        for (int i = 0; i < PARTITIONS; i++) {
+            partitions[i] = new Partition();
+        }
+        this.model = model;
+        model.addListener(this);
+        onLoaded();
+    }
+
+    // Parse a query such as: lorem "dolor sit" amet
+    static Query parse(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        List<List<String>> phrases = new ArrayList<>();
+        String[] parts = text == null ? new String[0] : text.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            List<String> partTerms = Tokenizer.tokenize(parts[i]);
+            // Odd parts are inside quotes
+            if (i % 2 == 1 && partTerms.size() > 1) {
+                phrases.add(partTerms);
+            }
+            terms.addAll(partTerms);
+        }
+        List<String> limited = new ArrayList<>(terms);
+        return new Query(limited.subList(0, Math.min(limited.size(), MAX_QUERY_TERMS)), phrases);
+    }
+
+    // Publish the number of distinct terms in the index
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("search.terms", this, SearchIndex::getTermCount)
+                .description("Number of distinct terms in the search index")
+                .register(registry);
+    }
+
+    // Get the index of the partition that holds a term
+    static int partitionIndex(String term) {
+        int hash = term.hashCode();
+        return (hash ^ (hash >>> 16)) & (PARTITIONS - 1);
+    }
+
+    private Partition partitionOf(String term) {
+        return partitions[partitionIndex(term)];
+    }
+
+    // Get the number of distinct terms in the index
+    public int getTermCount() {
+        int count = 0;
+        for (Partition partition : partitions) {
+            partition.lock.readLock().lock();
+            try {
+                count += partition.terms.size();
+            } finally {
+                partition.lock.readLock().unlock();
+            }
+        }
+        return count;
+    }
+
+    // Find up to limit postings that match the query, newest first,
+    // starting with postings that come before the key after (null to start at the newest).
+    public List<Posting> search(String text, PostingKey after, int limit) {
+        Query query = parse(text);
+        if (query.terms().isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        // The newest matches found so far, the oldest of them at the head
+        PriorityQueue<Posting> newest = new PriorityQueue<>(limit + 1, PostingKey.OLDEST_FIRST);
+        int batch = query.phrases().isEmpty() ? limit : Math.max(limit, PHRASE_BATCH);
+        Integer below = null;
+        while (true) {
+            int[] candidates = candidates(query.terms(), below, batch);
+            for (int id : candidates) {
+                Posting posting = model.getPosting(id);
+                if (posting != null && (after == null || after.isAfter(posting))
+                        && matchesPhrases(posting, query.phrases())) {
+                    newest.add(posting);
+                    if (newest.size() > limit) {
+                        newest.poll();
+                    }
+                }
+            }
+            if (candidates.length < batch) {
+                break;
+            }
+            below = candidates[candidates.length - 1];
+            // Everything not walked yet has a smaller ID. A posting with the same time as the
+            // oldest kept and a smaller ID comes before it, so it can't displace it either.
+            if (newest.size() == limit && latestTimes.below(below) <= newest.peek().getEpochMillis()) {
+                break;
+            }
+        }
+        List<Posting> results = new ArrayList<>(newest);
+        results.sort(PostingKey.OLDEST_FIRST.reversed());
+        return results;
+    }
+
+    // Get up to count IDs of postings that have all the terms, largest first, starting below the
+    // ID after (null to start at the largest). Holds the read locks of the terms' partitions while
+    // it walks their lists, taken lowest first. Writers hold one partition lock at a time, so that
+    // can't deadlock.
+    private int[] candidates(List<String> queryTerms, Integer after, int count) {
+        BitSet held = new BitSet(PARTITIONS);
+        for (String term : queryTerms) {
+            held.set(partitionIndex(term));
+        }
+        for (int i = held.nextSetBit(0); i >= 0; i = held.nextSetBit(i + 1)) {
+            partitions[i].lock.readLock().lock();
+        }
+        try {
+            List<PostingList> lists = new ArrayList<>();
+            for (String term : queryTerms) {
+                PostingList list = partitionOf(term).terms.get(term);
+                if (list == null) {
+                    return new int[0];
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(PostingList::size));
+            PostingList.DescendingCursor driver = lists.get(0).descending();
+            if (after != null) {
+                driver.skipBelow(after);
+            }
+            List<PostingList.DescendingCursor> probes = new ArrayList<>();
+            for (PostingList list : lists.subList(1, lists.size())) {
+                probes.add(list.descending());
+            }
+            int[] found = new int[count];
+            int size = 0;
+            candidates:
+            for (int id = driver.next(); id >= 0 && size < count; id = driver.next()) {
+                for (PostingList.DescendingCursor probe : probes) {
+                    if (!probe.contains(id)) {
+                        continue candidates;
+                    }
+                }
+                found[size++] = id;
+            }
+            return Arrays.copyOf(found, size);
+        } finally {
+            for (int i = held.nextSetBit(0); i >= 0; i = held.nextSetBit(i + 1)) {
+                partitions[i].lock.readLock().unlock();
+            }
+        }
+    }
+
+    private static boolean matchesPhrases(Posting posting, List<List<String>> phrases) {
+        if (phrases.isEmpty()) {
+            return true;
+        }
+        List<String> postingTerms = Tokenizer.tokenize(posting.getPostingText());
+        for (List<String> phrase : phrases) {
+            if (!Tokenizer.containsPhrase(postingTerms, phrase)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<String> termsOf(String text) {
+        return new LinkedHashSet<>(Tokenizer.tokenize(text));
+    }
+
+    // Add a posting to the list of each term, taking one partition's lock at a time
+    private void add(int postingId, Set<String> postingTerms) {
+        for (String term : postingTerms) {
+            Partition partition = partitionOf(term);
+            partition.lock.writeLock().lock();
+            try {
+                partition.terms.computeIfAbsent(term, key -> new PostingList()).add(postingId);
+            } finally {
+                partition.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Remove a posting from the list of each term, dropping lists that become empty
+    private void remove(int postingId, Set<String> postingTerms) {
+        for (String term : postingTerms) {
+            Partition partition = partitionOf(term);
+            partition.lock.writeLock().lock();
+            try {
+                PostingList list = partition.terms.get(term);
+                if (list != null && list.remove(postingId) && list.size() == 0) {
+                    partition.terms.remove(term);
+                }
+            } finally {
+                partition.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public void onPostAdded(Profile profile, Posting posting) {
+        latestTimes.record(posting.getPostingId(), posting.getEpochMillis());
+        add(posting.getPostingId(), termsOf(posting.getPostingText()));
+    }
+
+    @Override
+    public void onPostUpdated(Profile profile, Posting posting, String oldText) {
+        Set<String> oldTerms = termsOf(oldText);
+        Set<String> newTerms = termsOf(posting.getPostingText());
+        Set<String> removed = new LinkedHashSet<>(oldTerms);
+        removed.removeAll(newTerms);
+        newTerms.removeAll(oldTerms);
+        remove(posting.getPostingId(), removed);
+        add(posting.getPostingId(), newTerms);
+    }
+
+    @Override
+    public void onPostDeleted(Profile profile, Posting posting) {
+        remove(posting.getPostingId(), termsOf(posting.getPostingText()));
+    }
+
+    // Index everything in the store from scratch. The postings are taken in order of ID, so every
+    // list is only appended to. Terms of ASCII text are cut straight out of the posting's bytes
+    // (see TermTable), other text goes through the Tokenizer. Every partition is write-locked,
+    // lowest first, until the new lists are in place.
+    @Override
+    public void onLoaded() {
+        TermTable asciiTerms = new TermTable();
+        Map<String, PostingList> rebuilt = new HashMap<>();
+        for (Partition partition : partitions) {
+            partition.lock.writeLock().lock();
+        }
+        try {
+            latestTimes.clear();
+            for (Posting posting : inIdOrder(model.getPostings())) {
+                if (posting == null || posting.postingTextUtf8() == null) {
+                    continue;
+                }
+                int postingId = posting.getPostingId();
+                latestTimes.record(postingId, posting.getEpochMillis());
+                if (ASCII_CASE_FOLDING && asciiTerms.addTerms(postingId, posting.postingTextUtf8())) {
+                    continue;
+                }
+                for (String term : Tokenizer.tokenize(posting.getPostingText())) {
+                    if (ASCII_CASE_FOLDING && isAscii(term)) {
+                        asciiTerms.get(term).add(postingId);
+                    } else {
+                        rebuilt.computeIfAbsent(term, key -> new PostingList()).add(postingId);
+                    }
+                }
+            }
+            asciiTerms.copyTo(rebuilt);
+            for (Partition partition : partitions) {
+                partition.terms.clear();
+            }
+            for (Map.Entry<String, PostingList> entry : rebuilt.entrySet()) {
+                partitionOf(entry.getKey()).terms.put(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            for (Partition partition : partitions) {
+                partition.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static boolean isAscii(String term) {
+        for (int i = 0; i < term.length(); i++) {
+            if (term.charAt(i) >= 128) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Sort postings by ID, leaving gaps as nulls. IDs are handed out in order, so they are usually
+    // close enough together to be put straight into place instead of being compared.
+    static Posting[] inIdOrder(List<Posting> postings) {
+        if (postings.isEmpty()) {
+            return new Posting[0];
+        }
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (Posting posting : postings) {
+            min = Math.min(min, posting.getPostingId());
+            max = Math.max(max, posting.getPostingId());
+        }
+        if ((long) max - min >= 4L * postings.size() + 1024) {
+            Posting[] sorted = postings.toArray(new Posting[0]);
+            Arrays.sort(sorted, Comparator.comparingInt(Posting::getPostingId));
+            return sorted;
+        }
+        Posting[] placed = new Posting[max - min + 1];
+        for (Posting posting : postings) {
+            placed[posting.getPostingId() - min] = posting;
+        }
+        return placed;
+    }
+}
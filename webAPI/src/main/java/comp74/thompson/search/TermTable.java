@@ -0,0 +1,141 @@
+package comp74.thompson.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/*
+ * The postings lists of ASCII terms while the whole index is rebuilt, looked up by the bytes
+ * of a term as it appears in a posting's text. Upper-case letters are folded while hashing
+ * and comparing, so finding a term that is already there makes no String and copies nothing.
+ * Only a new term is copied out, once.
+ *
+ * Open addressing with linear probing, kept at most half full.
+ *
+ * Not thread-safe. Used by one rebuild at a time.
+ */
+class TermTable {
+    private byte[][] keys = new byte[1024][];
+    private int[] hashes = new int[1024];
+    private PostingList[] lists = new PostingList[1024];
+    private int size;
+
+    static boolean isAsciiLetterOrDigit(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9');
+    }
+
+    static byte lowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    // Add a posting to the list of every term in its UTF-8 text, split as the Tokenizer would.
+    // Returns false, having added nothing, if the text isn't all ASCII.
+    boolean addTerms(int postingId, byte[] text) {
+        for (byte b : text) {
+            if (b < 0) {
+                return false;
+            }
+        }
+        int start = -1;
+        int hash = 0;
+        for (int i = 0; i <= text.length; i++) {
+            if (i < text.length && isAsciiLetterOrDigit(text[i])) {
+                if (start < 0) {
+                    start = i;
+                    hash = 0;
+                }
+                hash = hash * 31 + lowerCase(text[i]);
+            } else if (start >= 0) {
+                get(text, start, i, mix(hash)).add(postingId);
+                start = -1;
+            }
+        }
+        return true;
+    }
+
+    // Get the postings list of the term in text from start to end (exclusive), adding it if it is new.
+    // hash must be the hash of the lower-case term, worked out as in hash.
+    PostingList get(byte[] text, int start, int end, int hash) {
+        int mask = keys.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            byte[] key = keys[slot];
+            if (key == null) {
+                byte[] copy = new byte[end - start];
+                for (int i = start; i < end; i++) {
+                    copy[i - start] = lowerCase(text[i]);
+                }
+                PostingList list = new PostingList();
+                keys[slot] = copy;
+                hashes[slot] = hash;
+                lists[slot] = list;
+                if (++size * 2 > keys.length) {
+                    grow();
+                }
+                return list;
+            }
+            if (hashes[slot] == hash && matches(key, text, start, end)) {
+                return lists[slot];
+            }
+        }
+    }
+
+    // Get the postings list of a term that is already lower case
+    PostingList get(String term) {
+        byte[] bytes = term.getBytes(StandardCharsets.US_ASCII);
+        return get(bytes, 0, bytes.length, hash(bytes, 0, bytes.length));
+    }
+
+    static int hash(byte[] text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = hash * 31 + lowerCase(text[i]);
+        }
+        return mix(hash);
+    }
+
+    // Spread the bits of a hash worked out a byte at a time, so the low bits pick slots evenly
+    static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(byte[] key, byte[] text, int start, int end) {
+        if (key.length != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (key[i - start] != lowerCase(text[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void grow() {
+        byte[][] oldKeys = keys;
+        int[] oldHashes = hashes;
+        PostingList[] oldLists = lists;
+        keys = new byte[oldKeys.length * 2][];
+        hashes = new int[oldKeys.length * 2];
+        lists = new PostingList[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                hashes[slot] = oldHashes[i];
+                lists[slot] = oldLists[i];
+            }
+        }
+    }
+
+    // Put every term and its list into an index keyed by String
+    void copyTo(Map<String, PostingList> terms) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                terms.put(new String(keys[i], StandardCharsets.US_ASCII), lists[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package comp74.thompson.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Splits text into lower-case terms. A term is a run of letters and digits,
+ * everything else separates terms.
+ */
+public final class Tokenizer {
+
+    private Tokenizer() {
+    }
+
+    // Get the terms of a text in the order they appear
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean partOfTerm = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (partOfTerm && start < 0) {
+                start = i;
+            } else if (!partOfTerm && start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    // Check whether the phrase appears in the terms as consecutive terms
+    static boolean containsPhrase(List<String> terms, List<String> phrase) {
+        if (phrase.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i + phrase.size() <= terms.size(); i++) {
+            if (terms.subList(i, i + phrase.size()).equals(phrase)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,250 @@
+package comp74.thompson.seed;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.ModelLoader;
+
+/*
+ * Fills an empty Model with a synthetic dataset of any size, for load tests and benchmarks.
+ *
+ * Activity is skewed the way it is on a real site: the number of postings of each profile
+ * follows a Zipf distribution, so a few profiles post a great deal and most post a little,
+ * and the words of the postings are also picked from a Zipf distribution over a made-up
+ * vocabulary (so search and trending have common and rare terms to work with).
+ * Postings are spread evenly over the last `days` days and numbered in time order across all
+ * profiles, as they would be if they had been posted live. Each one is written by a profile
+ * picked at random, in proportion to the number of postings that profile has.
+ *
+ * The profiles are split into ranges that are filled in parallel on a fork/join pool, each
+ * by its own ModelLoader, so nothing goes through the Model's locks or listeners. The same
+ * seed gives the same dataset whatever the number of threads.
+ */
+public class DatasetGenerator {
+    // Profiles filled by one task before it stops splitting
+    static final int PROFILES_PER_TASK = 4096;
+    static final int VOCABULARY_SIZE = 8192;
+    static final int MIN_WORDS = 4;
+    static final int MAX_WORDS = 40;
+    static final String[] SYLLABLES = {
+            "ba", "ko", "ri", "ta", "me", "lu", "sa", "no", "vi", "de",
+            "ga", "pe", "zu", "mo", "ki", "fa", "ne", "ro", "tu", "li" };
+
+    final Model model;
+    final int profiles;
+    final int postings;
+    final double zipfExponent;
+    final long seed;
+    final long days;
+    // The words of the vocabulary as ASCII bytes, most common first, and the chance of
+    // picking each word or one before it
+    final byte[][] vocabulary = new byte[VOCABULARY_SIZE][];
+    final double[] cumulativeWordShare;
+
+    public DatasetGenerator(Model model, int profiles, int postings, double zipfExponent, long seed, long days) {
+        if (profiles <= 0 || postings < 0 || zipfExponent < 0 || days <= 0) {
+            throw new IllegalArgumentException("profiles and days must be positive, postings and zipfExponent not negative");
+        }
+        this.model = model;
+        this.profiles = profiles;
+        this.postings = postings;
+        this.zipfExponent = zipfExponent;
+        this.seed = seed;
+        this.days = days;
+        for (int word = 0; word < VOCABULARY_SIZE; word++) {
+            vocabulary[word] = word(word).getBytes(StandardCharsets.US_ASCII);
+        }
+        cumulativeWordShare = cumulative(zipfWeights(VOCABULARY_SIZE, zipfExponent));
+    }
+
+    // A made-up word of at least two syllables, different for every number
+    static String word(int number) {
+        StringBuilder word = new StringBuilder();
+        int rest = number;
+        do {
+            word.append(SYLLABLES[rest % SYLLABLES.length]);
+            rest /= SYLLABLES.length;
+        } while (rest > 0 || word.length() < 4);
+        return word.toString();
+    }
+
+    // 1/rank^exponent for ranks 1 to n
+    static double[] zipfWeights(int n, double exponent) {
+        double[] weights = new double[n];
+        for (int rank = 0; rank < n; rank++) {
+            weights[rank] = Math.pow(rank + 1, -exponent);
+        }
+        return weights;
+    }
+
+    // The running totals of the weights, divided by their sum
+    static double[] cumulative(double[] weights) {
+        double[] totals = new double[weights.length];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += weights[i];
+            totals[i] = total;
+        }
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] /= total;
+        }
+        return totals;
+    }
+
+    // Split the postings between the ranks of a Zipf distribution, so that the counts add up exactly.
+    // The rounding leftovers go to the highest ranks.
+    static int[] zipfCounts(int ranks, int total, double exponent) {
+        double[] weights = zipfWeights(ranks, exponent);
+        double sum = 0;
+        for (double weight : weights) {
+            sum += weight;
+        }
+        int[] counts = new int[ranks];
+        long assigned = 0;
+        for (int rank = 0; rank < ranks; rank++) {
+            counts[rank] = (int) (total * (weights[rank] / sum));
+            assigned += counts[rank];
+        }
+        for (int rank = 0; assigned < total; rank = (rank + 1) % ranks) {
+            counts[rank]++;
+            assigned++;
+        }
+        return counts;
+    }
+
+    // Fill the model, which must be empty and not yet serving requests, then tell its listeners
+    // it was loaded. Profile and posting IDs carry on from the model's next IDs.
+    public void generate() {
+        generate(ForkJoinPool.commonPool());
+    }
+
+    public void generate(ForkJoinPool pool) {
+        if (model.getProfileCount() > 0) {
+            throw new IllegalStateException("The model already has profiles");
+        }
+        // Give each profile the count of a random rank, so the busy ones are spread over the IDs
+        int[] countsByRank = zipfCounts(profiles, postings, zipfExponent);
+        int[] counts = new int[profiles];
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] ranks = new int[profiles];
+        for (int i = 0; i < profiles; i++) {
+            int j = random.nextInt(i + 1);
+            ranks[i] = ranks[j];
+            ranks[j] = i;
+        }
+        for (int i = 0; i < profiles; i++) {
+            counts[i] = countsByRank[ranks[i]];
+        }
+        // Pick the writer of each posting, in time order, by shuffling every profile's share
+        // of the postings together
+        int[] writers = new int[postings];
+        int[] firsts = new int[profiles + 1];
+        for (int i = 0, k = 0; i < profiles; i++) {
+            firsts[i] = k;
+            Arrays.fill(writers, k, k + counts[i], i);
+            k += counts[i];
+        }
+        firsts[profiles] = postings;
+        for (int k = postings - 1; k > 0; k--) {
+            int j = random.nextInt(k + 1);
+            int writer = writers[k];
+            writers[k] = writers[j];
+            writers[j] = writer;
+        }
+        // Then list the postings of each profile together, the postings of profile i at
+        // firsts[i] to firsts[i + 1], each in time order
+        int[] positions = new int[postings];
+        int[] filled = Arrays.copyOf(firsts, profiles);
+        for (int k = 0; k < postings; k++) {
+            positions[filled[writers[k]]++] = k;
+        }
+
+        int firstProfileId = model.getNextProfileId();
+        int firstPostingId = model.getNextPostingId();
+        long until = System.currentTimeMillis();
+        long from = until - days * 24 * 60 * 60 * 1000;
+        pool.invoke(new Fill(0, profiles, firstProfileId, firstPostingId, firsts, positions, from, until));
+
+        ModelLoader loader = new ModelLoader(model);
+        loader.setNextIds(firstProfileId + profiles, firstPostingId + postings);
+        loader.finish();
+    }
+
+    // The time of the posting that is k-th in time order, spread evenly from from to until.
+    // Split so that (until - from) * k can't overflow, however many days there are.
+    long timeOf(int k, long from, long until) {
+        long span = until - from;
+        return from + span / postings * k + span % postings * k / postings;
+    }
+
+    // Fills the profiles with indexes from lo to hi, splitting the range while it is large
+    class Fill extends RecursiveAction {
+        // RecursiveAction is Serializable, though a task is never serialized here
+        private static final long serialVersionUID = 1L;
+
+        final int lo;
+        final int hi;
+        final int firstProfileId;
+        final int firstPostingId;
+        final int[] firsts;
+        final int[] positions;
+        final long from;
+        final long until;
+
+        Fill(int lo, int hi, int firstProfileId, int firstPostingId, int[] firsts, int[] positions, long from, long until) {
+            this.lo = lo;
+            this.hi = hi;
+            this.firstProfileId = firstProfileId;
+            this.firstPostingId = firstPostingId;
+            this.firsts = firsts;
+            this.positions = positions;
+            this.from = from;
+            this.until = until;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > PROFILES_PER_TASK) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Fill(lo, mid, firstProfileId, firstPostingId, firsts, positions, from, until),
+                        new Fill(mid, hi, firstProfileId, firstPostingId, firsts, positions, from, until));
+                return;
+            }
+            // Seeded from the range, so the dataset doesn't depend on which thread fills it
+            SplittableRandom random = new SplittableRandom(seed * 31 + lo);
+            ModelLoader loader = new ModelLoader(model);
+            byte[] buffer = new byte[MAX_WORDS * 16];
+            for (int i = lo; i < hi; i++) {
+                int profileId = firstProfileId + i;
+                loader.putProfile(profileId, word(i) + i);
+                for (int j = firsts[i]; j < firsts[i + 1]; j++) {
+                    int k = positions[j];
+                    loader.putPosting(profileId, firstPostingId + k, timeOf(k, from, until), text(random, buffer));
+                }
+            }
+        }
+    }
+
+    // Make up the text of a posting as UTF-8 bytes (which ASCII is)
+    byte[] text(SplittableRandom random, byte[] buffer) {
+        int words = random.nextInt(MIN_WORDS, MAX_WORDS + 1);
+        int length = 0;
+        for (int i = 0; i < words; i++) {
+            int index = Arrays.binarySearch(cumulativeWordShare, random.nextDouble());
+            byte[] word = vocabulary[Math.min(index < 0 ? -index - 1 : index, VOCABULARY_SIZE - 1)];
+            if (length + word.length + 1 > buffer.length) {
+                break;
+            }
+            if (i > 0) {
+                buffer[length++] = ' ';
+            }
+            System.arraycopy(word, 0, buffer, length, word.length);
+            length += word.length;
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+}
@@ -0,0 +1,80 @@
+package comp74.thompson.trending;
+
+import java.util.Arrays;
+
+/*
+ * Approximate counts of any number of keys in a fixed amount of memory.
+ *
+ * Each of DEPTH rows is an array of width counters, and a key adds to one counter in
+ * each row, picked by a different hash of the key. Other keys land on the same counters,
+ * so each counter can only be too high. The count of a key is the lowest of its counters,
+ * which is off by more than total/width with a chance of about 2^-DEPTH.
+ *
+ * Counts can go down as well as up (a posting is deleted), as long as no key's count goes
+ * below zero. Not thread-safe.
+ */
+class CountMinSketch {
+    static final int DEPTH = 4;
+    // Seeds that make the rows' hashes independent of each other
+    static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+
+    final int width;
+    final int[] counts;
+
+    // width is rounded up to a power of two
+    CountMinSketch(int width) {
+        this.width = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        this.counts = new int[DEPTH * this.width];
+    }
+
+    // Add delta to the count of the key with this hash. Returns the key's count afterwards.
+    int add(int hash, int delta) {
+        int count = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(row, hash);
+            counts[index] += delta;
+            count = Math.min(count, counts[index]);
+        }
+        return Math.max(0, count);
+    }
+
+    // Get the count of the key with this hash
+    int estimate(int hash) {
+        int count = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            count = Math.min(count, counts[index(row, hash)]);
+        }
+        return Math.max(0, count);
+    }
+
+    // Add every count of another sketch of the same width to this one. A key's count is then
+    // its count in both, off by no more than if it had all been added to one sketch.
+    void addAll(CountMinSketch other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+    }
+
+    void clear() {
+        Arrays.fill(counts, 0);
+    }
+
+    // Get the size of the counters, in bytes
+    int bytes() {
+        return counts.length * Integer.BYTES;
+    }
+
+    private int index(int row, int hash) {
+        return row * width + (mix(hash ^ SEEDS[row]) & (width - 1));
+    }
+
+    // The finalizer of MurmurHash3, which spreads every bit of h over the whole result
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
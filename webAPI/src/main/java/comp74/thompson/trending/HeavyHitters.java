@@ -0,0 +1,91 @@
+package comp74.thompson.trending;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Counts keys in a CountMinSketch and remembers the few with the highest counts.
+ *
+ * The sketch can give the count of any key but can't list them, so alongside it is a
+ * map of at most capacity candidates. A key that isn't a candidate takes the place of
+ * the lowest one once its count is higher. So any key whose count is more than a
+ * capacity-th of the total is a candidate, and memory stays the same however many
+ * different keys are counted. Not thread-safe.
+ */
+class HeavyHitters<K> {
+    final CountMinSketch sketch;
+    final int capacity;
+    final Map<K, Integer> candidates;
+    // No candidate has a lower count than this. Can be below the real lowest, never above it.
+    int floor;
+
+    HeavyHitters(int width, int capacity) {
+        this.sketch = new CountMinSketch(width);
+        this.capacity = capacity;
+        this.candidates = new HashMap<>(capacity * 2);
+    }
+
+    // Add delta to the count of a key
+    void add(K key, int delta) {
+        int count = sketch.add(key.hashCode(), delta);
+        if (candidates.containsKey(key)) {
+            candidates.put(key, count);
+            floor = Math.min(floor, count);
+        } else if (delta > 0 && candidates.size() < capacity) {
+            candidates.put(key, count);
+            floor = candidates.size() == 1 ? count : Math.min(floor, count);
+        } else if (delta > 0 && count > floor) {
+            replaceLowest(key, count);
+        }
+    }
+
+    // Swap the candidate with the lowest count for key, if key's count is higher
+    private void replaceLowest(K key, int count) {
+        K lowest = null;
+        int lowestCount = Integer.MAX_VALUE;
+        int secondCount = Integer.MAX_VALUE;
+        for (Map.Entry<K, Integer> candidate : candidates.entrySet()) {
+            int candidateCount = candidate.getValue();
+            if (candidateCount < lowestCount) {
+                secondCount = lowestCount;
+                lowest = candidate.getKey();
+                lowestCount = candidateCount;
+            } else if (candidateCount < secondCount) {
+                secondCount = candidateCount;
+            }
+        }
+        if (count <= lowestCount) {
+            floor = lowestCount;
+            return;
+        }
+        candidates.remove(lowest);
+        candidates.put(key, count);
+        floor = Math.min(secondCount, count);
+    }
+
+    // Add the counts of another HeavyHitters, with a sketch of the same width, to these.
+    // The candidates of both are kept, so there can be more than capacity of them.
+    void addAll(HeavyHitters<K> other) {
+        sketch.addAll(other.sketch);
+        for (Map.Entry<K, Integer> candidate : other.candidates.entrySet()) {
+            candidates.merge(candidate.getKey(), candidate.getValue(), Integer::sum);
+        }
+    }
+
+    // Get the count of a key
+    int estimate(K key) {
+        return sketch.estimate(key.hashCode());
+    }
+
+    // Get the keys that may have the highest counts
+    Set<K> candidates() {
+        return candidates.keySet();
+    }
+
+    void clear() {
+        sketch.clear();
+        candidates.clear();
+        floor = 0;
+    }
+}
@@ -0,0 +1,157 @@
+package comp74.thompson.trending;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/*
+ * Counts of postings by author and by term over the last length milliseconds, kept as a
+ * ring of buckets that each cover bucketMillis. A bucket is reused (cleared) once the
+ * time it covers has left the window, so the window slides a bucket at a time: it covers
+ * between length - bucketMillis and length milliseconds, depending on how far the current
+ * bucket has filled. Not thread-safe.
+ */
+class SlidingWindow {
+
+    // The counts for one stretch of bucketMillis, starting at start
+    static class Bucket {
+        long start = Long.MIN_VALUE;
+        final HeavyHitters<Integer> authors;
+        final HeavyHitters<String> terms;
+
+        Bucket(int width, int capacity) {
+            authors = new HeavyHitters<>(width, capacity);
+            terms = new HeavyHitters<>(width, capacity);
+        }
+
+        void reset(long start) {
+            this.start = start;
+            authors.clear();
+            terms.clear();
+        }
+    }
+
+    // A key and its count over the window
+    record Count<K>(K key, int count) {
+    }
+
+    final String name;
+    final long bucketMillis;
+    final Bucket[] buckets;
+
+    SlidingWindow(String name, long bucketMillis, int bucketCount, int width, int capacity) {
+        this.name = name;
+        this.bucketMillis = bucketMillis;
+        this.buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new Bucket(width, capacity);
+        }
+    }
+
+    long length() {
+        return bucketMillis * buckets.length;
+    }
+
+    // Count a posting made at time by author (if not null) with terms.
+    // delta is 1 when a posting is added and -1 when it is taken away.
+    void add(long time, Integer author, Set<String> terms, int delta) {
+        Bucket bucket = bucketFor(time, delta > 0);
+        if (bucket == null) {
+            return;
+        }
+        if (author != null) {
+            bucket.authors.add(author, delta);
+        }
+        for (String term : terms) {
+            bucket.terms.add(term, delta);
+        }
+    }
+
+    // Get the bucket that covers time. A bucket still holding an older stretch is cleared for it
+    // if create is true. Returns null if time is older than the stretch its bucket holds,
+    // which means it has already left the window.
+    private Bucket bucketFor(long time, boolean create) {
+        long slot = Math.floorDiv(time, bucketMillis);
+        long start = slot * bucketMillis;
+        Bucket bucket = buckets[(int) Math.floorMod(slot, (long) buckets.length)];
+        if (bucket.start == start) {
+            return bucket;
+        }
+        if (create && start > bucket.start) {
+            bucket.reset(start);
+            return bucket;
+        }
+        return null;
+    }
+
+    // Add the counts of the buckets of another window, of the same shape, that are in it at time now.
+    // The buckets in a window cover different stretches, so each goes into a bucket of its own here.
+    void addAll(SlidingWindow other, long now) {
+        for (Bucket bucket : other.live(now)) {
+            Bucket mine = bucketFor(bucket.start, true);
+            if (mine != null) {
+                mine.authors.addAll(bucket.authors);
+                mine.terms.addAll(bucket.terms);
+            }
+        }
+    }
+
+    // Get the buckets that are in the window at time now
+    private List<Bucket> live(long now) {
+        List<Bucket> live = new ArrayList<>();
+        for (Bucket bucket : buckets) {
+            if (bucket.start > now - length() && bucket.start <= now) {
+                live.add(bucket);
+            }
+        }
+        return live;
+    }
+
+    // Get the authors with the most postings in the window at time now, most first
+    List<Count<Integer>> topAuthors(long now, int limit) {
+        return top(now, limit, bucket -> bucket.authors);
+    }
+
+    // Get the terms in the most postings in the window at time now, most first
+    List<Count<String>> topTerms(long now, int limit) {
+        return top(now, limit, bucket -> bucket.terms);
+    }
+
+    // Add up the counts of every bucket's candidates over the window,
+    // and keep the limit highest above zero, highest first and then by key
+    private <K extends Comparable<K>> List<Count<K>> top(long now, int limit,
+            Function<Bucket, HeavyHitters<K>> counter) {
+        List<Bucket> live = live(now);
+        Set<K> keys = new HashSet<>();
+        for (Bucket bucket : live) {
+            keys.addAll(counter.apply(bucket).candidates());
+        }
+        List<Count<K>> counts = new ArrayList<>();
+        for (K key : keys) {
+            int count = 0;
+            for (Bucket bucket : live) {
+                count += counter.apply(bucket).estimate(key);
+            }
+            if (count > 0) {
+                counts.add(new Count<>(key, count));
+            }
+        }
+        counts.sort((x, y) -> x.count() != y.count()
+                ? Integer.compare(y.count(), x.count())
+                : x.key().compareTo(y.key()));
+        return new ArrayList<>(counts.subList(0, Math.min(limit, counts.size())));
+    }
+
+    void clear() {
+        for (Bucket bucket : buckets) {
+            bucket.reset(Long.MIN_VALUE);
+        }
+    }
+
+    // Get the size of the window's counters, in bytes
+    int bytes() {
+        return buckets.length * 2 * buckets[0].authors.sketch.bytes();
+    }
+}
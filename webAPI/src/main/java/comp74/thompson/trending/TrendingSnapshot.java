@@ -0,0 +1,21 @@
+package comp74.thompson.trending;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * The most active authors and most used terms over each window ("5m", "1h" and "1d"),
+ * as they were at asOf. Counts are of postings, and can be a little high (see CountMinSketch).
+ */
+public record TrendingSnapshot(Instant asOf, Map<String, Window> windows) {
+
+    public record Window(List<Author> authors, List<Term> terms) {
+    }
+
+    public record Author(int profileId, String userName, int postings) {
+    }
+
+    public record Term(String term, int postings) {
+    }
+}
@@ -0,0 +1,264 @@
+package comp74.thompson.trending;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.ModelListener;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+import comp74.thompson.search.Tokenizer;
+
+/*
+ * Keeps count of who is posting and what they are posting about, over the last
+ * 5 minutes, hour and day, for GET /api/trending.
+ *
+ * The Model's change events add each posting to a SlidingWindow for each period, under
+ * its author and under each distinct term in its text, and take it away again when it is
+ * deleted. The windows keep their counts in Count-Min sketches with a short list of heavy
+ * hitters (see HeavyHitters), so they take the same memory however many postings,
+ * authors and terms there are. A posting is counted at the time it was made, so
+ * postings older than a day, such as ones imported in bulk, are never counted, and nor
+ * are postings dated in the future.
+ *
+ * The counts are split into trending.stripes stripes, each with its own windows and lock,
+ * and a posting is counted in the stripe of its author. The Model calls its listeners while
+ * holding the profile's lock, so writers to different profiles mostly don't wait for each
+ * other here either. A posting is always taken away from the stripe it was added to.
+ *
+ * Every trending.refresh-seconds the stripes are added up (sketches of the same width add
+ * up counter by counter) and the top trending.top-k of each window are worked out into a
+ * TrendingSnapshot, and that is what readers get. Reading never touches the counts or the postings.
+ */
+@Component
+public class TrendingTracker implements ModelListener, MeterBinder {
+    // Shorter terms (and, or, to) are too common to say anything
+    static final int MIN_TERM_LENGTH = 3;
+    // Heavy hitter candidates kept per bucket, for each place in the top k
+    static final int CANDIDATES_PER_PLACE = 4;
+
+    // A share of the counts, and the lock that guards them
+    static class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final List<SlidingWindow> windows;
+
+        Stripe(List<SlidingWindow> windows) {
+            this.windows = windows;
+        }
+    }
+
+    Model model;
+    final int topK;
+    final Stripe[] stripes;
+    // The sum of the stripes, worked out again by every refresh
+    final List<SlidingWindow> totals;
+    final long longest;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    // The time now, in milliseconds since the epoch. Replaced by tests.
+    LongSupplier clock = System::currentTimeMillis;
+    volatile TrendingSnapshot snapshot;
+    ScheduledExecutorService refresher;
+    Timer refreshTimer;
+
+    public TrendingTracker(Model model,
+            @Value("${trending.top-k:10}") int topK,
+            @Value("${trending.sketch-width:2048}") int sketchWidth,
+            @Value("${trending.refresh-seconds:10}") long refreshSeconds,
+            @Value("${trending.stripes:4}") int stripeCount) {
+        this.model = model;
+        this.topK = topK;
+        int capacity = topK * CANDIDATES_PER_PLACE;
+        this.stripes = new Stripe[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(windows(sketchWidth, capacity));
+        }
+        this.totals = windows(sketchWidth, capacity);
+        this.longest = totals.get(totals.size() - 1).length();
+        model.addListener(this);
+        onLoaded();
+        if (refreshSeconds > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "trending-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refresh, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    // One window for each period, all empty
+    static List<SlidingWindow> windows(int sketchWidth, int capacity) {
+        return List.of(
+                new SlidingWindow("5m", TimeUnit.MINUTES.toMillis(1), 5, sketchWidth, capacity),
+                new SlidingWindow("1h", TimeUnit.MINUTES.toMillis(5), 12, sketchWidth, capacity),
+                new SlidingWindow("1d", TimeUnit.HOURS.toMillis(1), 24, sketchWidth, capacity));
+    }
+
+    // Get the latest snapshot
+    public TrendingSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    // Work out the top of every window as of now and make it the snapshot readers get
+    public void refresh() {
+        long start = System.nanoTime();
+        long now = clock.getAsLong();
+        Map<String, List<SlidingWindow.Count<Integer>>> authors = new LinkedHashMap<>();
+        Map<String, List<SlidingWindow.Count<String>>> terms = new LinkedHashMap<>();
+        refreshLock.lock();
+        try {
+            for (SlidingWindow total : totals) {
+                total.clear();
+            }
+            // One stripe at a time, so writers only wait for the stripe being added up
+            for (Stripe stripe : stripes) {
+                stripe.lock.lock();
+                try {
+                    for (int i = 0; i < totals.size(); i++) {
+                        totals.get(i).addAll(stripe.windows.get(i), now);
+                    }
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            for (SlidingWindow total : totals) {
+                authors.put(total.name, total.topAuthors(now, topK));
+                terms.put(total.name, total.topTerms(now, topK));
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+        // Usernames are looked up afterwards, so the counts aren't held up, and are the current ones
+        Map<String, TrendingSnapshot.Window> result = new LinkedHashMap<>();
+        for (SlidingWindow window : totals) {
+            List<TrendingSnapshot.Author> windowAuthors = new ArrayList<>();
+            for (SlidingWindow.Count<Integer> count : authors.get(window.name)) {
+                Profile profile = model.getProfile(count.key());
+                if (profile != null) {
+                    windowAuthors.add(new TrendingSnapshot.Author(count.key(), profile.getUserName(), count.count()));
+                }
+            }
+            List<TrendingSnapshot.Term> windowTerms = new ArrayList<>();
+            for (SlidingWindow.Count<String> count : terms.get(window.name)) {
+                windowTerms.add(new TrendingSnapshot.Term(count.key(), count.count()));
+            }
+            result.put(window.name, new TrendingSnapshot.Window(windowAuthors, windowTerms));
+        }
+        snapshot = new TrendingSnapshot(Instant.ofEpochMilli(now), Collections.unmodifiableMap(result));
+        if (refreshTimer != null) {
+            refreshTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Get the distinct terms of a text that are long enough to count
+    static Set<String> termsOf(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String term : Tokenizer.tokenize(text)) {
+            if (term.length() >= MIN_TERM_LENGTH) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    // Count a posting of profile made at time into every window of the profile's stripe,
+    // unless it is too old for all of them.
+    // A posting dated after now (an import from a clock that is ahead) isn't counted either:
+    // its bucket would be taken for a stretch that hasn't started, clearing the live counts in it.
+    // The text is only split into terms once it is known to be needed.
+    private void count(Profile profile, long time, Integer author, String text, int delta) {
+        long now = clock.getAsLong();
+        if (time <= now - longest || time > now) {
+            return;
+        }
+        Set<String> terms = termsOf(text);
+        Stripe stripe = stripes[Math.floorMod(profile.getProfileId(), stripes.length)];
+        stripe.lock.lock();
+        try {
+            for (SlidingWindow window : stripe.windows) {
+                window.add(time, author, terms, delta);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        refreshTimer = Timer.builder("trending.refresh")
+                .description("Time to work out a new trending snapshot")
+                .register(registry);
+        Gauge.builder("trending.counters.size", this,
+                tracker -> (tracker.stripes.length + 1L) * tracker.totals.stream().mapToLong(SlidingWindow::bytes).sum())
+                .description("Size of the trending counters, which doesn't grow with the number of postings")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    @Override
+    public void onPostAdded(Profile profile, Posting posting) {
+        count(profile, posting.getEpochMillis(), profile.getProfileId(), posting.getPostingText(), 1);
+    }
+
+    @Override
+    public void onPostUpdated(Profile profile, Posting posting, String oldText) {
+        // Still the same author, but the terms of the old text go and those of the new one come
+        count(profile, posting.getEpochMillis(), null, oldText, -1);
+        count(profile, posting.getEpochMillis(), null, posting.getPostingText(), 1);
+    }
+
+    @Override
+    public void onPostDeleted(Profile profile, Posting posting) {
+        count(profile, posting.getEpochMillis(), profile.getProfileId(), posting.getPostingText(), -1);
+    }
+
+    // Count the recent postings of a store that was loaded in bulk
+    @Override
+    public void onLoaded() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                for (SlidingWindow window : stripe.windows) {
+                    window.clear();
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        // Only the postings recent enough for some window, found without looking at the older ones
+        long since = clock.getAsLong() - longest + 1;
+        for (Profile profile : model.getProfilesAfter(null)) {
+            for (Posting posting : profile.getTimeline().range(since, null, null, false)) {
+                onPostAdded(profile, posting);
+            }
+        }
+        refresh();
+    }
+}
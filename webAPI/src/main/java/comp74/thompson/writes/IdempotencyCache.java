@@ -0,0 +1,155 @@
+package comp74.thompson.writes;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/*
+ * Makes a write safe to retry. A client sends the same Idempotency-Key header with every
+ * attempt of one write, and only the first attempt is carried out: the others get its
+ * response again, marked with an Idempotent-Replayed header. An attempt that arrives while
+ * the first is still running waits for it, so retries that race each other are coalesced.
+ *
+ * The first response's body is kept as the JSON it was when the write was carried out, not
+ * as the object, so a replay doesn't show later changes to the profile or posting, and the
+ * cache doesn't keep the object (or what it refers to) from being collected.
+ *
+ * A key is only good for the request it was first used with. Reusing it with a different
+ * request gets a status code of 422 (UNPROCESSABLE_ENTITY).
+ *
+ * Keys are remembered for idempotency.ttl-minutes, and at most idempotency.max-keys of them
+ * are kept. A write that failed with an exception or a 5xx status is forgotten, so that it
+ * can be retried. So a write must only answer 5xx if it made no change (WriteQueue takes
+ * a posting back before it answers 503).
+ */
+@Component
+public class IdempotencyCache {
+    public static final String KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    // The request a key was first used with, and its response once there is one
+    record Entry(String request, CompletableFuture<Recorded> response) {
+    }
+
+    // A response as it was first sent, with its body as JSON (null if it had none)
+    record Recorded(HttpStatusCode status, HttpHeaders headers, byte[] body) {
+    }
+
+    final ObjectMapper objectMapper;
+    final Cache<String, Entry> cache;
+    final Counter replayed;
+    final Counter mismatched;
+
+    public IdempotencyCache(MeterRegistry registry, ObjectMapper objectMapper,
+            @Value("${idempotency.max-keys:100000}") long maxKeys,
+            @Value("${idempotency.ttl-minutes:1440}") long ttlMinutes) {
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "idempotency");
+        this.replayed = outcomeCounter(registry, "replayed");
+        this.mismatched = outcomeCounter(registry, "mismatched");
+    }
+
+    private static Counter outcomeCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder("idempotency.requests")
+                .description("Requests with an Idempotency-Key that were not carried out again")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    // Describe a request to an endpoint with a body, for once. The body is reduced to its SHA-256,
+    // so the cache doesn't hold on to whole request bodies, and two different bodies can't be taken
+    // for the same one (as they can by a 32-bit hash, even of the same length).
+    public static String request(String endpoint, String body) {
+        if (body == null) {
+            return endpoint;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+            return endpoint + " " + HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Carry out a write once for a key. request says what was asked for (the endpoint and what
+    // matters in the body), and must be the same on every attempt. With no key, the write is just carried out.
+    // The first attempt gets the write's response. A replay gets its body as JSON bytes.
+    public <T> ResponseEntity<?> once(String key, String request, Supplier<ResponseEntity<T>> write) {
+        if (key == null || key.isEmpty()) {
+            return write.get();
+        }
+        Entry mine = new Entry(request, new CompletableFuture<>());
+        Entry first = cache.asMap().putIfAbsent(key, mine);
+        if (first != null) {
+            if (!first.request().equals(request)) {
+                mismatched.increment();
+                return new ResponseEntity<>(HttpStatus.UNPROCESSABLE_ENTITY);
+            }
+            Recorded earlier;
+            try {
+                earlier = first.response().join();
+            } catch (CompletionException e) {
+                // The first attempt failed and has been forgotten, so this one is now the first
+                return once(key, request, write);
+            }
+            replayed.increment();
+            ResponseEntity.BodyBuilder replay = ResponseEntity.status(earlier.status())
+                    .headers(earlier.headers())
+                    .header(REPLAYED_HEADER, "true");
+            return earlier.body() == null ? replay.build()
+                    : replay.contentType(MediaType.APPLICATION_JSON).body(earlier.body());
+        }
+        ResponseEntity<T> response;
+        try {
+            response = write.get();
+        } catch (RuntimeException | Error e) {
+            cache.asMap().remove(key, mine);
+            mine.response().completeExceptionally(e);
+            throw e;
+        }
+        Recorded recorded;
+        try {
+            recorded = new Recorded(response.getStatusCode(), response.getHeaders(),
+                    response.getBody() == null ? null : objectMapper.writeValueAsBytes(response.getBody()));
+        } catch (JsonProcessingException e) {
+            // Can't be replayed, so it is forgotten like a failed write
+            cache.asMap().remove(key, mine);
+            mine.response().completeExceptionally(e);
+            throw new UncheckedIOException(e);
+        }
+        if (response.getStatusCode().is5xxServerError()) {
+            cache.asMap().remove(key, mine);
+        }
+        mine.response().complete(recorded);
+        return response;
+    }
+}
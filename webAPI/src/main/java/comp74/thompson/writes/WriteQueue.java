@@ -0,0 +1,226 @@
+package comp74.thompson.writes;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+/*
+ * Adds postings from a single writer thread, in batches, when writes.async.enabled is true.
+ * Otherwise each posting is added to the Model straight away on the request's own thread.
+ *
+ * Request threads put their postings in a bounded queue and wait. The writer takes whatever
+ * has queued up since its last batch, up to writes.async.max-batch, the way the LMAX
+ * Disruptor's batching consumer does: the busier it gets, the bigger the batches. The postings
+ * of a batch are grouped by profile, and each group is added with a single addPostings, so
+ * under one lock, with one range of IDs and one listener call. The whole batch then waits
+ * for the disk once (see Model.batch) before the responses of every posting in it are
+ * completed together.
+ *
+ * A full queue makes request threads wait for room, which holds back clients once the
+ * writer can't keep up. Admission control turns them away before that happens.
+ *
+ * A request thread waits at most writes.async.timeout-seconds for room, and as long again for
+ * the writer to take its posting. If it would have to wait longer, it takes the posting back
+ * and gets a status code of 503 (SERVICE_UNAVAILABLE), and the posting is never added, so a
+ * retry (see IdempotencyCache) can't add it twice. So does a request that arrives once the
+ * writer has stopped. A posting the writer has taken is being added, and its request waits
+ * for the answer, as it would without the queue.
+ */
+@Component
+public class WriteQueue {
+
+    // A posting waiting to be added, the response of the request that sent it, and whether
+    // the writer or the request (giving up) has taken it
+    record Write(Profile profile, Posting posting, CompletableFuture<ResponseEntity<Posting>> response,
+            AtomicBoolean taken) {
+
+        // Take the posting. Only the first caller gets it.
+        boolean take() {
+            return taken.compareAndSet(false, true);
+        }
+    }
+
+    Model model;
+    final boolean enabled;
+    final int maxBatch;
+    final long timeoutSeconds;
+    final BlockingQueue<Write> queue;
+    final DistributionSummary batchSizes;
+    Thread writer;
+    volatile boolean closed;
+
+    public WriteQueue(Model model, MeterRegistry registry,
+            @Value("${writes.async.enabled:false}") boolean enabled,
+            @Value("${writes.async.queue-capacity:65536}") int capacity,
+            @Value("${writes.async.max-batch:1024}") int maxBatch,
+            @Value("${writes.async.timeout-seconds:30}") long timeoutSeconds) {
+        this.model = model;
+        this.enabled = enabled;
+        this.maxBatch = maxBatch;
+        this.timeoutSeconds = timeoutSeconds;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSizes = DistributionSummary.builder("writes.batch.size")
+                .description("Postings added by the write queue in one batch")
+                .register(registry);
+        Gauge.builder("writes.queue.size", queue, BlockingQueue::size)
+                .description("Postings waiting in the write queue")
+                .register(registry);
+        if (enabled) {
+            writer = new Thread(this::run, "write-queue");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    // Add a posting to a profile, the same as Model.addPost, and return the response once it has been added
+    public ResponseEntity<Posting> addPost(Profile profile, Posting posting) {
+        if (!enabled || profile == null) {
+            return model.addPost(profile, posting);
+        }
+        if (closed || !writer.isAlive()) {
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        Write write = new Write(profile, posting, new CompletableFuture<>(), new AtomicBoolean());
+        try {
+            if (!queue.offer(write, timeoutSeconds, TimeUnit.SECONDS)) {
+                return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            return write.response().get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return giveUp(write);
+        } catch (TimeoutException e) {
+            return giveUp(write);
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    // Stop waiting for a posting to be added. If the writer hasn't taken it, it never will, and
+    // the answer is 503. If it has, the posting is being added, so wait for the answer instead.
+    private static ResponseEntity<Posting> giveUp(Write write) {
+        if (write.take()) {
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return write.response().join();
+    }
+
+    private void run() {
+        List<Write> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, maxBatch - 1);
+            // Leave out the postings whose requests have given up on them
+            batch.removeIf(write -> !write.take());
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                apply(batch);
+            } catch (Throwable e) {
+                // Whatever went wrong, the writer carries on, and nobody in the batch is left waiting
+                for (Write write : batch) {
+                    write.response().completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    // Add a batch of postings, grouped by profile, and then answer every request in it
+    void apply(List<Write> batch) {
+        batchSizes.record(batch.size());
+        Map<Integer, List<Write>> byProfile = new LinkedHashMap<>();
+        for (Write write : batch) {
+            byProfile.computeIfAbsent(write.profile().getProfileId(), id -> new ArrayList<>()).add(write);
+        }
+        List<Runnable> answers = new ArrayList<>(batch.size());
+        try {
+            model.batch(() -> {
+                for (List<Write> writes : byProfile.values()) {
+                    addGroup(writes, answers);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Waiting for the disk failed, so none of the batch can be said to be saved
+            for (Write write : batch) {
+                write.response().completeExceptionally(e);
+            }
+            return;
+        }
+        // Only now that the whole batch is on disk
+        for (Runnable answer : answers) {
+            answer.run();
+        }
+    }
+
+    // Add the postings of one profile, and queue up the answers to their requests
+    private void addGroup(List<Write> writes, List<Runnable> answers) {
+        Profile profile = writes.get(0).profile();
+        try {
+            if (writes.size() == 1) {
+                ResponseEntity<Posting> response = model.addPost(profile, writes.get(0).posting());
+                answers.add(() -> writes.get(0).response().complete(response));
+                return;
+            }
+            List<Posting> postings = new ArrayList<>(writes.size());
+            for (Write write : writes) {
+                postings.add(write.posting());
+            }
+            HttpStatus status = HttpStatus.valueOf(model.addPostings(profile, postings).getStatusCode().value());
+            for (Write write : writes) {
+                ResponseEntity<Posting> response = status.is2xxSuccessful()
+                        ? new ResponseEntity<>(write.posting(), status)
+                        : new ResponseEntity<>(status);
+                answers.add(() -> write.response().complete(response));
+            }
+        } catch (RuntimeException e) {
+            for (Write write : writes) {
+                answers.add(() -> write.response().completeExceptionally(e));
+            }
+        }
+    }
+
+    // Stop the writer, and fail the postings it hadn't got to
+    @PreDestroy
+    public void close() throws InterruptedException {
+        closed = true;
+        if (writer == null) {
+            return;
+        }
+        writer.interrupt();
+        writer.join();
+        List<Write> left = new ArrayList<>();
+        queue.drainTo(left);
+        for (Write write : left) {
+            write.response().complete(new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package comp74.thompson.admission;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Profile;
+
+@SpringBootTest(properties = { "admission.rate-per-second=0.1", "admission.burst=3" })
+@AutoConfigureMockMvc
+class AdmissionInterceptorTest {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	Model model;
+
+	@Autowired
+	AdmissionControl admission;
+
+	@Autowired
+	MeterRegistry registry;
+
+	MockHttpServletRequestBuilder postTo(Profile profile) {
+		return post("/api/profiles/" + profile.getProfileId() + "/postings")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"postingText\":\"admitted?\"}");
+	}
+
+	double count(String outcome) {
+		return registry.get("admission.requests").tag("outcome", outcome).counter().count();
+	}
+
+	@Test
+	void limitsEachProfileSeparately() throws Exception {
+		Profile noisy = new Profile("noisyTenant");
+		Profile quiet = new Profile("quietTenant");
+		model.addProfile(noisy);
+		model.addProfile(quiet);
+		double limitedBefore = count("rate_limited");
+
+		for (int i = 0; i < 3; i++) {
+			mockMvc.perform(postTo(noisy)).andExpect(status().isCreated());
+		}
+		mockMvc.perform(postTo(noisy))
+				.andExpect(status().isTooManyRequests())
+				.andExpect(header().string(HttpHeaders.RETRY_AFTER, "10"));
+		assertEquals(3, noisy.getPostings().size());
+		assertEquals(limitedBefore + 1, count("rate_limited"));
+
+		// Other profiles, and reads, are not held back
+		mockMvc.perform(postTo(quiet)).andExpect(status().isCreated());
+		mockMvc.perform(get("/api/profiles/" + noisy.getProfileId())).andExpect(status().isOk());
+		assertEquals(0, admission.running());
+	}
+
+	@Test
+	void limitsWritesByUsername() throws Exception {
+		model.addProfile(new Profile("namedTenant"));
+		for (int i = 0; i < 3; i++) {
+			mockMvc.perform(post("/api/profileByUsername").param("username", "namedTenant")
+					.contentType(MediaType.APPLICATION_JSON).content("{\"postingText\":\"by name\"}"))
+					.andExpect(status().isCreated());
+		}
+		mockMvc.perform(post("/api/profileByUsername").param("username", "namedTenant")
+				.contentType(MediaType.APPLICATION_JSON).content("{\"postingText\":\"by name\"}"))
+				.andExpect(status().isTooManyRequests());
+	}
+
+	@Test
+	void shedsWritesWhenAllSlotsAreBusy() throws Exception {
+		Profile profile = new Profile("shedTenant");
+		model.addProfile(profile);
+		double overloadedBefore = count("overloaded");
+		// Hold every write slot, as if that many writes were running
+		int slots = admission.maxConcurrentWrites;
+		admission.writeSlots.acquire(slots);
+		try {
+			mockMvc.perform(postTo(profile))
+					.andExpect(status().isTooManyRequests())
+					.andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+		} finally {
+			admission.writeSlots.release(slots);
+		}
+		assertEquals(overloadedBefore + 1, count("overloaded"));
+		mockMvc.perform(postTo(profile)).andExpect(status().isCreated());
+	}
+}
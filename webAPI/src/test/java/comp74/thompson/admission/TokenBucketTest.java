@@ -0,0 +1,44 @@
+package comp74.thompson.admission;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+	static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	void allowsABurstThenTheRate() {
+		long now = 1_000 * SECOND;
+		TokenBucket bucket = new TokenBucket(10, 5, now);
+		for (int i = 0; i < 5; i++) {
+			assertEquals(0, bucket.tryTake(now));
+		}
+		// Empty: the next token comes a tenth of a second later
+		long wait = bucket.tryTake(now);
+		assertEquals(SECOND / 10, wait);
+		assertTrue(bucket.tryTake(now + wait - 1) > 0);
+		assertEquals(0, bucket.tryTake(now + wait));
+		assertTrue(bucket.tryTake(now + wait) > 0);
+
+		// Refills to no more than its capacity
+		now += 60 * SECOND;
+		for (int i = 0; i < 5; i++) {
+			assertEquals(0, bucket.tryTake(now));
+		}
+		assertTrue(bucket.tryTake(now) > 0);
+	}
+
+	@Test
+	void worksWithNegativeNanoTimes() {
+		long now = -5 * SECOND;
+		TokenBucket bucket = new TokenBucket(1, 1, now);
+		assertEquals(0, bucket.tryTake(now));
+		assertEquals(SECOND, bucket.tryTake(now));
+		assertEquals(0, bucket.tryTake(now + SECOND));
+	}
+}
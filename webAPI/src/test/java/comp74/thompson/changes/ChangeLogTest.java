@@ -0,0 +1,99 @@
+package comp74.thompson.changes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+class ChangeLogTest {
+
+	Model model;
+	ObjectMapper objectMapper;
+	ChangeLog changeLog;
+
+	@BeforeEach
+	void setUp() {
+		model = new Model();
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		changeLog = new ChangeLog(model, objectMapper, 4);
+	}
+
+	List<String> types(List<ChangeLog.Change> changes) {
+		return changes.stream().map(ChangeLog.Change::type).toList();
+	}
+
+	@Test
+	void numbersChangesInOrder() throws Exception {
+		Profile profile = new Profile("changer");
+		model.addProfile(profile);
+		Posting posting = model.addPost(profile, new Posting("first text")).getBody();
+		model.updatePost(profile, posting.getPostingId(), "second text");
+
+		List<ChangeLog.Change> changes = changeLog.read(0, 10);
+		assertEquals(List.of("profileAdded", "postAdded", "postUpdated"), types(changes));
+		assertEquals(List.of(1L, 2L, 3L), changes.stream().map(ChangeLog.Change::sequence).toList());
+		assertEquals(3, changeLog.latest());
+		assertEquals(List.of("postUpdated"), types(changeLog.read(2, 10)));
+		assertEquals(List.of(), changeLog.read(3, 10));
+
+		// Each event has the posting as it was right after its change
+		JsonNode added = objectMapper.readTree(changes.get(1).json());
+		assertEquals("first text", added.get("posting").get("postingText").asText());
+		assertEquals("changer", added.get("userName").asText());
+		assertEquals(profile.getProfileId(), added.get("profileId").asInt());
+		assertEquals("second text",
+				objectMapper.readTree(changes.get(2).json()).get("posting").get("postingText").asText());
+	}
+
+	@Test
+	void deletesListThePostingIds() throws Exception {
+		Profile profile = new Profile("deleter");
+		model.addProfile(profile);
+		Posting first = model.addPost(profile, new Posting("one")).getBody();
+		Posting second = model.addPost(profile, new Posting("two")).getBody();
+		model.deletePosts(profile);
+
+		ChangeLog.Change deleted = changeLog.read(3, 10).get(0);
+		assertEquals("postsDeleted", deleted.type());
+		JsonNode postingIds = objectMapper.readTree(deleted.json()).get("postingIds");
+		assertEquals(first.getPostingId(), postingIds.get(0).asInt());
+		assertEquals(second.getPostingId(), postingIds.get(1).asInt());
+	}
+
+	@Test
+	void readersThatFallTooFarBehindAreTold() {
+		Profile profile = new Profile("busy");
+		model.addProfile(profile);
+		for (int i = 0; i < 5; i++) {
+			model.addPost(profile, new Posting("posting " + i));
+		}
+		// 6 changes and room for 4: changes 1 and 2 have been overwritten
+		assertNull(changeLog.read(0, 10));
+		assertNull(changeLog.read(1, 10));
+		assertEquals(4, changeLog.read(2, 10).size());
+		assertEquals(2, changeLog.read(2, 2).size());
+		// A position past the latest change
+		assertNull(changeLog.read(7, 10));
+	}
+
+	@Test
+	void onlyKnowsTheIdsOfItsOwnRun() {
+		assertEquals(5L, changeLog.sequenceOf(changeLog.eventId(5)));
+		// IDs from another run have another epoch, whatever their sequence numbers
+		assertNull(changeLog.sequenceOf("0-5"));
+		assertNull(changeLog.sequenceOf("5"));
+		assertNull(changeLog.sequenceOf(changeLog.epoch + "-x"));
+		assertNull(changeLog.sequenceOf(null));
+	}
+}
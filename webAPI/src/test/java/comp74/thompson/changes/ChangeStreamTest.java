@@ -0,0 +1,140 @@
+package comp74.thompson.changes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ChangeStreamTest {
+
+	@LocalServerPort
+	int port;
+
+	@Autowired
+	Model model;
+
+	@Autowired
+	ChangeLog changeLog;
+
+	@Autowired
+	ChangeStream changeStream;
+
+	// Don't leave the streams of one test open while the next runs: their clients have stopped
+	// reading, and the server would otherwise only find out on its next send
+	@AfterEach
+	void disconnect() {
+		changeStream.disconnectAll();
+	}
+
+	// Open the change stream and read events from it until count events have been read
+	List<String[]> readEvents(String query, String lastEventId, int count) throws Exception {
+		HttpRequest.Builder request = HttpRequest.newBuilder(
+				URI.create("http://localhost:" + port + "/api/changes" + query));
+		if (lastEventId != null) {
+			request.header("Last-Event-ID", lastEventId);
+		}
+		HttpResponse<InputStream> response = HttpClient.newHttpClient()
+				.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+		assertEquals(200, response.statusCode());
+		List<String[]> events = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+			String id = null;
+			String name = null;
+			while (events.size() < count) {
+				String line = reader.readLine();
+				if (line.startsWith("id:")) {
+					id = line.substring(3);
+				} else if (line.startsWith("event:")) {
+					name = line.substring(6);
+				} else if (line.startsWith("data:")) {
+					events.add(new String[] { id, name, line.substring(5) });
+				}
+			}
+		}
+		return events;
+	}
+
+	@Test
+	void sendsChangesAfterAPosition() throws Exception {
+		Profile profile = new Profile("streamed");
+		model.addProfile(profile);
+		long before = changeLog.latest();
+		model.addPost(profile, new Posting("streamed posting"));
+		model.updateProfile(profile, "renamedStream");
+
+		List<String[]> events = readEvents("?after=" + changeLog.eventId(before), null, 2);
+		assertEquals(changeLog.eventId(before + 1), events.get(0)[0]);
+		assertEquals("postAdded", events.get(0)[1]);
+		assertTrue(events.get(0)[2].contains("streamed posting"));
+		assertEquals("profileUpdated", events.get(1)[1]);
+		assertTrue(events.get(1)[2].contains("\"oldUserName\":\"streamed\""));
+
+		// Picks up from Last-Event-ID when reconnecting
+		events = readEvents("", changeLog.eventId(before + 1), 1);
+		assertEquals("profileUpdated", events.get(0)[1]);
+	}
+
+	@Test
+	void sendsNewChangesToSubscribers() throws Exception {
+		Profile profile = new Profile("live");
+		model.addProfile(profile);
+		long before = changeLog.latest();
+		int subscribers = changeStream.subscriberCount();
+		// Post once the subscription has started (or, if some other subscription ended first, a little early)
+		Thread writer = new Thread(() -> {
+			try {
+				while (changeStream.subscriberCount() == subscribers) {
+					Thread.sleep(10);
+				}
+			} catch (InterruptedException e) {
+				return;
+			}
+			model.addPost(profile, new Posting("live posting"));
+		});
+		writer.start();
+		List<String[]> events = readEvents("?after=" + changeLog.eventId(before), null, 1);
+		writer.join();
+		assertEquals("postAdded", events.get(0)[1]);
+		assertTrue(events.get(0)[2].contains("live posting"));
+	}
+
+	@Test
+	void resetsSubscribersThatAreTooFarBehind() throws Exception {
+		List<String[]> events = readEvents("?after=" + changeLog.eventId(changeLog.latest() + 100), null, 1);
+		assertEquals(ChangeEvent.RESET, events.get(0)[1]);
+	}
+
+	@Test
+	void resetsSubscribersWithAnIdFromBeforeARestart() throws Exception {
+		// The same sequence number, but from an earlier run, whose numbering may have got further
+		Profile profile = new Profile("restarted");
+		model.addProfile(profile);
+		String earlierRun = "1-" + (changeLog.latest() - 1);
+		List<String[]> events = readEvents("", earlierRun, 1);
+		assertEquals(ChangeEvent.RESET, events.get(0)[1]);
+		assertEquals(changeLog.eventId(changeLog.latest()), events.get(0)[0]);
+		events = readEvents("?after=" + (changeLog.latest() - 1), null, 1);
+		assertEquals(ChangeEvent.RESET, events.get(0)[1]);
+	}
+}
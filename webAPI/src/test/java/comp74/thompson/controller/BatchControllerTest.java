@@ -0,0 +1,116 @@
+package comp74.thompson.controller;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class BatchControllerTest {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	Model model;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@Test
+	void getsProfilesByIdAndUsernameAndReportsMisses() throws Exception {
+		Profile first = new Profile("batchFirst");
+		Profile second = new Profile("batchSecond");
+		model.addProfile(first);
+		model.addProfile(second);
+		model.addPost(first, new Posting("batch posting"));
+
+		String body = "{\"profileIds\":[" + first.getProfileId() + ",-1],"
+				+ "\"usernames\":[\"batchSecond\",\"batchFirst\",\"batchNobody\"]}";
+		mockMvc.perform(post("/api/profiles:batchGet").contentType(MediaType.APPLICATION_JSON).content(body))
+				.andExpect(status().isOk())
+				// batchFirst is asked for twice but only returned once
+				.andExpect(jsonPath("$.profiles", hasSize(2)))
+				.andExpect(jsonPath("$.profiles[0].userName").value("batchFirst"))
+				.andExpect(jsonPath("$.profiles[0].postings[0].postingText").value("batch posting"))
+				.andExpect(jsonPath("$.profiles[1].profileId").value(second.getProfileId()))
+				.andExpect(jsonPath("$.missingProfileIds[0]").value(-1))
+				.andExpect(jsonPath("$.missingUsernames[0]").value("batchNobody"));
+	}
+
+	@Test
+	void getsPostingsAndReportsMisses() throws Exception {
+		Profile profile = new Profile("batchPoster");
+		model.addProfile(profile);
+		Posting kept = model.addPost(profile, new Posting("kept")).getBody();
+		Posting deleted = model.addPost(profile, new Posting("deleted")).getBody();
+		model.deletePost(profile, deleted.getPostingId());
+
+		String body = "{\"postingIds\":[" + deleted.getPostingId() + "," + kept.getPostingId() + "]}";
+		mockMvc.perform(post("/api/postings:batchGet").contentType(MediaType.APPLICATION_JSON).content(body))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.postings", hasSize(1)))
+				.andExpect(jsonPath("$.postings[0].postingText").value("kept"))
+				.andExpect(jsonPath("$.postings[0].userName").value("batchPoster"))
+				.andExpect(jsonPath("$.missingPostingIds[0]").value(deleted.getPostingId()));
+	}
+
+	@Test
+	void rejectsBatchesThatAreTooBig() throws Exception {
+		StringBuilder ids = new StringBuilder();
+		for (int i = 0; i <= BatchController.MAX_BATCH_SIZE; i++) {
+			ids.append(i == 0 ? "" : ",").append(i);
+		}
+		mockMvc.perform(post("/api/postings:batchGet").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"postingIds\":[" + ids + "]}"))
+				.andExpect(status().isBadRequest());
+	}
+
+	// A writer adds a posting to one profile and then to another, over and over, so at every moment
+	// the first has the same number of postings as the second or one more. A batch read of both
+	// must never see the second profile ahead of the first.
+	@Test
+	void readsProfilesAsTheyWereAtOneMoment() throws Exception {
+		Profile leader = new Profile("batchLeader");
+		Profile follower = new Profile("batchFollower");
+		model.addProfile(leader);
+		model.addProfile(follower);
+		Thread writer = new Thread(() -> {
+			for (int i = 0; i < 1000; i++) {
+				model.addPost(leader, new Posting("lead"));
+				model.addPost(follower, new Posting("follow"));
+			}
+		});
+		writer.start();
+		try {
+			String body = "{\"profileIds\":[" + leader.getProfileId() + "," + follower.getProfileId() + "]}";
+			while (writer.isAlive()) {
+				String json = mockMvc.perform(post("/api/profiles:batchGet")
+						.contentType(MediaType.APPLICATION_JSON).content(body))
+						.andReturn().getResponse().getContentAsString();
+				JsonNode profiles = objectMapper.readTree(json).get("profiles");
+				int lead = profiles.get(0).get("postings").size();
+				int follow = profiles.get(1).get("postings").size();
+				assertTrue(lead == follow || lead == follow + 1, lead + " and " + follow);
+			}
+		} finally {
+			writer.join();
+		}
+	}
+}
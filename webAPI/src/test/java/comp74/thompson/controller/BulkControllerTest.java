@@ -0,0 +1,170 @@
+package comp74.thompson.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class BulkControllerTest {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	Model model;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	Profile profile(String userName) {
+		return model.getProfileByUsername(userName).get(0);
+	}
+
+	List<String> texts(Profile profile) {
+		List<String> texts = new ArrayList<>();
+		for (Posting posting : profile.getPostings()) {
+			texts.add(posting.getPostingText());
+		}
+		return texts;
+	}
+
+	byte[] export(boolean gzip) throws Exception {
+		MvcResult started = mockMvc.perform(get("/api/bulk/export").param("gzip", String.valueOf(gzip)))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		return mockMvc.perform(asyncDispatch(started))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsByteArray();
+	}
+
+	@Test
+	void importsValidLinesAndReportsTheRest() throws Exception {
+		String ndjson = """
+				{"userName":"bulkA","postingText":"second","date":"2024-01-01","time":"12:05:00"}
+				{"userName":"bulkA","postingText":"first","date":"2024-01-01","time":"12:00:00"}
+				{"postingText":"nobody wrote this"}
+				{"userName":"bulkB","postingText":"half a date","date":"2024-01-01"}
+				{"userName":"bulkB","postingText":"bad date","date":"yesterday","time":"12:00:00"}
+				{"userName":"bulkB"}
+				{"userName":"bulkA","postingText":"now","postingId":5}
+				""";
+		mockMvc.perform(post("/api/bulk/postings").content(ndjson))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.profilesCreated").value(2))
+				.andExpect(jsonPath("$.postingsCreated").value(3))
+				.andExpect(jsonPath("$.errorCount").value(3))
+				.andExpect(jsonPath("$.errors[0].line").value(3))
+				.andExpect(jsonPath("$.errors[1].line").value(4))
+				.andExpect(jsonPath("$.errors[2].line").value(5));
+
+		// Added in order of time, so the timeline is still in postingId order
+		assertEquals(List.of("first", "second", "now"), texts(profile("bulkA")));
+		assertTrue(profile("bulkB").getTimeline().isEmpty());
+	}
+
+	@Test
+	void skipsPostingsOlderThanTheProfilesNewest() throws Exception {
+		Profile profile = new Profile("bulkD");
+		model.addProfile(profile);
+		model.addPost(profile, new Posting("posted today"));
+		String ndjson = """
+				{"userName":"bulkD","postingText":"from last year","date":"2024-01-01","time":"12:00:00"}
+				{"userName":"bulkD","postingText":"no date"}
+				""";
+		mockMvc.perform(post("/api/bulk/postings").content(ndjson))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.postingsCreated").value(1))
+				.andExpect(jsonPath("$.errorCount").value(1))
+				.andExpect(jsonPath("$.errors[0].line").value(1));
+		// The old posting isn't moved up to today either
+		assertEquals(List.of("posted today", "no date"), texts(profile("bulkD")));
+	}
+
+	@Test
+	void stopsAtALineThatIsNotJson() throws Exception {
+		String ndjson = """
+				{"userName":"bulkC","postingText":"kept"}
+				this is not json
+				{"userName":"bulkC","postingText":"never read"}
+				""";
+		mockMvc.perform(post("/api/bulk/postings").content(ndjson))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.postingsCreated").value(1))
+				.andExpect(jsonPath("$.errorCount").value(1));
+		assertEquals(List.of("kept"), texts(profile("bulkC")));
+	}
+
+	@Test
+	void exportCanBeImportedAgain() throws Exception {
+		Profile source = new Profile("bulkSource");
+		model.addProfile(source);
+		model.addPost(source, new Posting("exported \"text\" with ünïcödé"));
+		model.addProfile(new Profile("bulkEmpty"));
+
+		String export = new String(export(false), StandardCharsets.UTF_8);
+		byte[] gzipped = export(true);
+		assertEquals(export, new String(new GZIPInputStream(new ByteArrayInputStream(gzipped)).readAllBytes(),
+				StandardCharsets.UTF_8));
+
+		JsonNode posted = null;
+		boolean emptyProfileExported = false;
+		for (String line : export.split("\n")) {
+			JsonNode node = objectMapper.readTree(line);
+			if (node.get("userName").asText().equals("bulkSource")) {
+				posted = node;
+			}
+			if (node.get("userName").asText().equals("bulkEmpty")) {
+				emptyProfileExported = !node.has("postingText");
+			}
+		}
+		assertNotNull(posted);
+		assertTrue(emptyProfileExported);
+
+		// Import the exported line for another user, gzipped
+		((ObjectNode) posted).put("userName", "bulkCopy");
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(body)) {
+			out.write(objectMapper.writeValueAsBytes(posted));
+		}
+		mockMvc.perform(post("/api/bulk/postings").content(body.toByteArray())
+				.header(HttpHeaders.CONTENT_ENCODING, "gzip"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.postingsCreated").value(1));
+
+		Posting original = source.getPostings().iterator().next();
+		Posting copy = profile("bulkCopy").getPostings().iterator().next();
+		assertEquals(original.getPostingText(), copy.getPostingText());
+		assertEquals(original.getEpochMillis(), copy.getEpochMillis());
+	}
+}
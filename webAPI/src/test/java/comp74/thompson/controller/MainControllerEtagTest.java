@@ -0,0 +1,80 @@
+package comp74.thompson.controller;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerEtagTest {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	Model model;
+
+	@Test
+	void answersNotModifiedUntilTheProfileChanges() throws Exception {
+		Profile profile = new Profile("etagTest");
+		model.addProfile(profile);
+		model.addPost(profile, new Posting("first"));
+		String url = "/api/profiles/" + profile.getProfileId();
+
+		String etag = mockMvc.perform(get(url))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.userName").value("etagTest"))
+				.andExpect(jsonPath("$.postings[0].postingText").value("first"))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified());
+		mockMvc.perform(get("/api/profileByUsername").param("username", "etagTest")
+				.header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified());
+		// In a list, as a strong tag, or as *
+		mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + etag))
+				.andExpect(status().isNotModified());
+		mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag.substring(2)))
+				.andExpect(status().isNotModified());
+		mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, "*"))
+				.andExpect(status().isNotModified());
+		mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, "\"other\", W/\"another\""))
+				.andExpect(status().isOk());
+
+		model.addPost(profile, new Posting("second"));
+
+		String newEtag = mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.postings[1].postingText").value("second"))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		assertNotEquals(etag, newEtag);
+
+		model.updateProfile(profile, "etagTestRenamed");
+		mockMvc.perform(get("/api/profileByUsername").param("username", "etagTestRenamed"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.postings[0].userName").value("etagTestRenamed"));
+	}
+
+	@Test
+	void answersNotFoundForUnknownProfiles() throws Exception {
+		mockMvc.perform(get("/api/profiles/1"))
+				.andExpect(status().isNotFound());
+		mockMvc.perform(get("/api/profileByUsername").param("username", "nobody-has-this-name"))
+				.andExpect(status().isNotFound())
+				.andExpect(header().doesNotExist(HttpHeaders.ETAG));
+	}
+}
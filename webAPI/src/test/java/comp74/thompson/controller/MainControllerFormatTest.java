@@ -0,0 +1,116 @@
+package comp74.thompson.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class MainControllerFormatTest {
+
+	@LocalServerPort
+	int port;
+
+	@Autowired
+	Model model;
+
+	HttpClient client = HttpClient.newHttpClient();
+
+	HttpResponse<byte[]> get(String path, String... headers) throws Exception {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path));
+		if (headers.length > 0) {
+			request.headers(headers);
+		}
+		return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+	}
+
+	Profile addProfile(String userName, int postings) {
+		Profile profile = new Profile(userName);
+		model.addProfile(profile);
+		for (int i = 0; i < postings; i++) {
+			model.addPost(profile, new Posting("posting " + i + " of " + userName));
+		}
+		return profile;
+	}
+
+	@Test
+	void sendsAProfileInTheFormatAskedFor() throws Exception {
+		Profile profile = addProfile("formatTest", 2);
+		String url = "/api/profiles/" + profile.getProfileId();
+
+		HttpResponse<byte[]> json = get(url);
+		HttpResponse<byte[]> cbor = get(url, "Accept", "application/cbor");
+		HttpResponse<byte[]> smile = get(url, "Accept", "application/x-jackson-smile");
+		assertEquals("application/json", json.headers().firstValue("Content-Type").get());
+		assertEquals("application/cbor", cbor.headers().firstValue("Content-Type").get());
+		assertEquals("application/x-jackson-smile", smile.headers().firstValue("Content-Type").get());
+
+		// The same fields whatever the format
+		JsonNode expected = new ObjectMapper().readTree(json.body());
+		assertEquals(expected, new CBORMapper().readTree(cbor.body()));
+		assertEquals(expected, new SmileMapper().readTree(smile.body()));
+		assertEquals("formatTest", expected.get("userName").asText());
+
+		// Each format has its own ETag
+		String jsonEtag = json.headers().firstValue("ETag").get();
+		String cborEtag = cbor.headers().firstValue("ETag").get();
+		assertNotEquals(jsonEtag, cborEtag);
+		assertEquals(304, get(url, "Accept", "application/cbor", "If-None-Match", cborEtag).statusCode());
+		assertEquals(200, get(url, "Accept", "application/cbor", "If-None-Match", jsonEtag).statusCode());
+		assertTrue(String.join(",", cbor.headers().allValues("Vary")).contains("Accept"));
+	}
+
+	@Test
+	void streamsPostingsInTheFormatAskedFor() throws Exception {
+		Profile profile = addProfile("formatStreamTest", 3);
+		HttpResponse<byte[]> smile = get("/api/profiles/" + profile.getProfileId() + "/postings?limit=2",
+				"Accept", "application/x-jackson-smile");
+		assertEquals(200, smile.statusCode());
+		assertEquals("application/x-jackson-smile", smile.headers().firstValue("Content-Type").get());
+		JsonNode postings = new SmileMapper().readTree(smile.body());
+		assertEquals(2, postings.size());
+		assertEquals("posting 1 of formatStreamTest", postings.get(1).get("postingText").asText());
+		assertTrue(smile.headers().firstValue(MainController.NEXT_CURSOR_HEADER).isPresent());
+	}
+
+	@Test
+	void compressesLargeResponses() throws Exception {
+		Profile profile = addProfile("compressionTest", 100);
+		String url = "/api/profiles/" + profile.getProfileId();
+
+		HttpResponse<byte[]> plain = get(url);
+		HttpResponse<byte[]> gzip = get(url, "Accept-Encoding", "gzip");
+		assertTrue(plain.headers().firstValue("Content-Encoding").isEmpty());
+		assertEquals("gzip", gzip.headers().firstValue("Content-Encoding").get());
+		assertTrue(gzip.body().length * 3 < plain.body().length,
+				gzip.body().length + " bytes compressed, " + plain.body().length + " bytes plain");
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.body()))) {
+			assertEquals(new ObjectMapper().readTree(plain.body()), new ObjectMapper().readTree(in));
+		}
+
+		// Too small to be worth compressing
+		Profile small = addProfile("compressionSmallTest", 0);
+		HttpResponse<byte[]> smallGzip = get("/api/profiles/" + small.getProfileId(), "Accept-Encoding", "gzip");
+		assertTrue(smallGzip.headers().firstValue("Content-Encoding").isEmpty());
+	}
+}
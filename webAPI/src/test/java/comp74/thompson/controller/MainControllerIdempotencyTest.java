@@ -0,0 +1,59 @@
+package comp74.thompson.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Profile;
+import comp74.thompson.writes.IdempotencyCache;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerIdempotencyTest {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	Model model;
+
+	MockHttpServletRequestBuilder addPosting(Profile profile, String key, String text) {
+		return post("/api/profiles/" + profile.getProfileId() + "/postings")
+				.header(IdempotencyCache.KEY_HEADER, key)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"postingText\":\"" + text + "\"}");
+	}
+
+	@Test
+	void retriedPostingIsOnlyAddedOnce() throws Exception {
+		Profile profile = new Profile("idempotencyTest");
+		model.addProfile(profile);
+
+		String first = mockMvc.perform(addPosting(profile, "retry-1", "only once"))
+				.andExpect(status().isCreated())
+				.andExpect(header().doesNotExist(IdempotencyCache.REPLAYED_HEADER))
+				.andReturn().getResponse().getContentAsString();
+		String retry = mockMvc.perform(addPosting(profile, "retry-1", "only once"))
+				.andExpect(status().isCreated())
+				.andExpect(header().string(IdempotencyCache.REPLAYED_HEADER, "true"))
+				.andReturn().getResponse().getContentAsString();
+		assertEquals(first, retry);
+		assertEquals(1, profile.getPostings().size());
+
+		mockMvc.perform(addPosting(profile, "retry-1", "something else"))
+				.andExpect(status().isUnprocessableEntity());
+		mockMvc.perform(addPosting(profile, "retry-2", "only once"))
+				.andExpect(status().isCreated());
+		assertEquals(2, profile.getPostings().size());
+	}
+}
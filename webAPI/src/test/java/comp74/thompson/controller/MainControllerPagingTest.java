@@ -0,0 +1,108 @@
+package comp74.thompson.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerPagingTest {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	Model model;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	// Perform a streamed GET and return the finished response
+	MvcResult stream(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+		MvcResult started = mockMvc.perform(requestBuilder)
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		return mockMvc.perform(asyncDispatch(started))
+				.andExpect(status().isOk())
+				.andReturn();
+	}
+
+	@Test
+	void pagesThroughAllProfilesInIdOrder() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			model.addProfile(new Profile("pagingTest" + i));
+		}
+
+		List<Integer> ids = new ArrayList<>();
+		String after = null;
+		do {
+			MockHttpServletRequestBuilder request = get("/api/profiles")
+					.param("limit", "2")
+					.param("includePostings", "false");
+			if (after != null) {
+				request.param("after", after);
+			}
+			MvcResult result = stream(request);
+			JsonNode page = objectMapper.readTree(result.getResponse().getContentAsString());
+			assertTrue(page.size() <= 2);
+			for (JsonNode profile : page) {
+				assertFalse(profile.has("postings"));
+				ids.add(profile.get("profileId").asInt());
+			}
+			after = result.getResponse().getHeader(MainController.NEXT_CURSOR_HEADER);
+		} while (after != null);
+
+		assertEquals(model.getProfiles().size(), ids.size());
+		for (int i = 1; i < ids.size(); i++) {
+			assertTrue(ids.get(i - 1) < ids.get(i));
+		}
+	}
+
+	@Test
+	void pagesThroughPostingsOfAProfile() throws Exception {
+		Profile profile = new Profile("pagingPoster");
+		model.addProfile(profile);
+		for (int i = 0; i < 5; i++) {
+			model.addPost(profile, new Posting("post " + i));
+		}
+		String url = "/api/profiles/" + profile.getProfileId() + "/postings";
+
+		MvcResult first = stream(get(url).param("limit", "3"));
+		JsonNode firstPage = objectMapper.readTree(first.getResponse().getContentAsString());
+		assertEquals(3, firstPage.size());
+		assertEquals("post 0", firstPage.get(0).get("postingText").asText());
+		String after = first.getResponse().getHeader(MainController.NEXT_CURSOR_HEADER);
+
+		MvcResult second = stream(get(url).param("limit", "3").param("after", after));
+		JsonNode secondPage = objectMapper.readTree(second.getResponse().getContentAsString());
+		assertEquals(2, secondPage.size());
+		assertEquals("post 4", secondPage.get(1).get("postingText").asText());
+		assertNull(second.getResponse().getHeader(MainController.NEXT_CURSOR_HEADER));
+
+		MvcResult all = stream(get(url));
+		assertEquals(5, objectMapper.readTree(all.getResponse().getContentAsString()).size());
+	}
+}
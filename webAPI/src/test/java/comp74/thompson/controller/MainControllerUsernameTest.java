@@ -0,0 +1,75 @@
+package comp74.thompson.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Profile;
+
+// The endpoints that find a profile by its username to change it
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerUsernameTest {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	Model model;
+
+	MockHttpServletRequestBuilder addPosting(String username, String text) {
+		return post("/api/profileByUsername").param("username", username)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"postingText\":\"" + text + "\"}");
+	}
+
+	MockHttpServletRequestBuilder updateUsername(String username, String newUsername) {
+		return put("/api/updateUsername").param("username", username)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"newUsername\":\"" + newUsername + "\"}");
+	}
+
+	@Test
+	void addsAPostingByUsername() throws Exception {
+		Profile profile = new Profile("usernamePoster");
+		model.addProfile(profile);
+		mockMvc.perform(addPosting("usernamePoster", "by name"))
+				.andExpect(status().isCreated())
+				.andExpect(jsonPath("$.postingText").value("by name"));
+		assertEquals("by name", profile.getPostings().iterator().next().getPostingText());
+	}
+
+	@Test
+	void updatesAUsername() throws Exception {
+		Profile profile = new Profile("usernameBefore");
+		model.addProfile(profile);
+		mockMvc.perform(updateUsername("usernameBefore", "usernameAfter"))
+				.andExpect(status().isNoContent());
+		assertEquals(List.of(profile), model.getProfileByUsername("usernameAfter"));
+		assertNull(model.getProfileByUsername("usernameBefore"));
+	}
+
+	// Not a 500 from looking up a profile that isn't there
+	@Test
+	void answersNotFoundForAnUnknownUsername() throws Exception {
+		mockMvc.perform(addPosting("nobody-has-this-name", "lost"))
+				.andExpect(status().isNotFound());
+		mockMvc.perform(updateUsername("nobody-has-this-name", "somebody"))
+				.andExpect(status().isNotFound());
+		assertNull(model.getProfileByUsername("somebody"));
+	}
+}
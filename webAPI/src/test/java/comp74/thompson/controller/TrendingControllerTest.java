@@ -0,0 +1,48 @@
+package comp74.thompson.controller;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+import comp74.thompson.trending.TrendingTracker;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class TrendingControllerTest {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	Model model;
+
+	@Autowired
+	TrendingTracker trendingTracker;
+
+	@Test
+	void answersFromTheLatestSnapshot() throws Exception {
+		Profile profile = new Profile("trendingTest");
+		model.addProfile(profile);
+		for (int i = 0; i < 50; i++) {
+			model.addPost(profile, new Posting("zeitgeist " + i));
+		}
+		trendingTracker.refresh();
+
+		mockMvc.perform(get("/api/trending"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.asOf").isString())
+				.andExpect(jsonPath("$.windows['5m'].authors[0].userName").value("trendingTest"))
+				.andExpect(jsonPath("$.windows['5m'].authors[0].postings").value(50))
+				.andExpect(jsonPath("$.windows['1h'].terms[0].term").value("zeitgeist"))
+				.andExpect(jsonPath("$.windows['1d'].terms[0].postings").value(50));
+	}
+}
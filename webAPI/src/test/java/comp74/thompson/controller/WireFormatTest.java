@@ -0,0 +1,26 @@
+package comp74.thompson.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class WireFormatTest {
+
+	@Test
+	void fallsBackToJson() {
+		assertEquals(WireFormat.JSON, WireFormat.negotiate(null));
+		assertEquals(WireFormat.JSON, WireFormat.negotiate(""));
+		assertEquals(WireFormat.JSON, WireFormat.negotiate("*/*"));
+		assertEquals(WireFormat.JSON, WireFormat.negotiate("text/html"));
+		assertEquals(WireFormat.JSON, WireFormat.negotiate("not a media type;;"));
+	}
+
+	@Test
+	void picksTheFormatTheClientPrefers() {
+		assertEquals(WireFormat.CBOR, WireFormat.negotiate("application/cbor"));
+		assertEquals(WireFormat.SMILE, WireFormat.negotiate("application/x-jackson-smile, */*;q=0.1"));
+		assertEquals(WireFormat.CBOR, WireFormat.negotiate("application/json;q=0.5, application/cbor"));
+		assertEquals(WireFormat.JSON, WireFormat.negotiate("application/json, application/cbor"));
+		assertEquals(WireFormat.JSON, WireFormat.negotiate("application/cbor;q=0, application/*"));
+	}
+}
@@ -0,0 +1,173 @@
+package comp74.thompson.feed;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.PostingKey;
+import comp74.thompson.model.Profile;
+
+class FeedServiceTest {
+
+	Model model;
+	FeedService feedService;
+	Profile reader;
+	Profile friend;
+	Profile star;
+
+	Profile profile(String userName) {
+		Profile profile = new Profile(userName);
+		model.addProfile(profile);
+		return profile;
+	}
+
+	Posting post(Profile profile, String text) {
+		return model.addPost(profile, new Posting(text)).getBody();
+	}
+
+	static List<String> texts(List<Posting> postings) {
+		List<String> texts = new ArrayList<>();
+		for (Posting posting : postings) {
+			texts.add(posting.getPostingText());
+		}
+		return texts;
+	}
+
+	// star becomes a celebrity once it has two followers
+	@BeforeEach
+	void setUp() {
+		model = new Model();
+		feedService = new FeedService(model, 3, 2);
+		reader = profile("reader");
+		friend = profile("friend");
+		star = profile("star");
+		feedService.follow(reader, friend);
+		feedService.follow(reader, star);
+		feedService.follow(friend, star);
+	}
+
+	@Test
+	void mergesFannedOutAndPopularPostingsNewestFirst() {
+		assertTrue(feedService.isCelebrity(star.getProfileId()));
+		post(friend, "f1");
+		post(star, "s1");
+		post(friend, "f2");
+		post(star, "s2");
+		post(reader, "own");
+
+		assertEquals(List.of("s2", "f2", "s1", "f1"), texts(feedService.getFeed(reader, null, 10)));
+		assertEquals(List.of("s2", "s1"), texts(feedService.getFeed(friend, null, 10)));
+	}
+
+	@Test
+	void pagesWithACursor() {
+		for (int i = 1; i <= 3; i++) {
+			post(friend, "f" + i);
+			post(star, "s" + i);
+		}
+		List<Posting> first = feedService.getFeed(reader, null, 4);
+		assertEquals(List.of("s3", "f3", "s2", "f2"), texts(first));
+		PostingKey after = PostingKey.of(first.get(3));
+		assertEquals(List.of("s1", "f1"), texts(feedService.getFeed(reader, after, 4)));
+	}
+
+	@Test
+	void inboxKeepsOnlyTheMostRecentPostings() {
+		for (int i = 1; i <= 5; i++) {
+			post(friend, "f" + i);
+		}
+		assertEquals(List.of("f5", "f4", "f3"), texts(feedService.getFeed(reader, null, 10)));
+	}
+
+	@Test
+	void skipsDeletedAndUnfollowedPostings() {
+		Posting deleted = post(friend, "gone");
+		post(friend, "kept");
+		post(star, "star");
+		model.deletePost(friend, deleted.getPostingId());
+		assertEquals(List.of("star", "kept"), texts(feedService.getFeed(reader, null, 10)));
+
+		assertEquals(HttpStatus.NO_CONTENT, feedService.unfollow(reader, friend).getStatusCode());
+		assertEquals(HttpStatus.NOT_FOUND, feedService.unfollow(reader, friend).getStatusCode());
+		assertEquals(List.of("star"), texts(feedService.getFeed(reader, null, 10)));
+	}
+
+	@Test
+	void followingFillsTheInboxWithRecentPostings() {
+		Profile other = profile("other");
+		post(other, "o1");
+		post(other, "o2");
+		assertEquals(HttpStatus.NO_CONTENT, feedService.follow(reader, other).getStatusCode());
+		assertEquals(List.of("o2", "o1"), texts(feedService.getFeed(reader, null, 10)));
+		assertEquals(HttpStatus.BAD_REQUEST, feedService.follow(reader, reader).getStatusCode());
+	}
+
+	@Test
+	void deletingAProfileRemovesItsEdges() {
+		Profile other = profile("other");
+		feedService.follow(other, friend);
+		feedService.follow(reader, other);
+		model.deleteProfile(other);
+		assertEquals(List.of(friend.getProfileId(), star.getProfileId()), feedService.getFollowing(reader));
+		assertEquals(List.of(reader.getProfileId()), feedService.getFollowers(friend));
+	}
+
+	@Test
+	void keepsThePostingsOfAProfileThatIsNoLongerPopular() {
+		post(star, "s1");
+		post(friend, "f1");
+		post(star, "s2");
+		assertEquals(HttpStatus.NO_CONTENT, feedService.unfollow(friend, star).getStatusCode());
+		assertFalse(feedService.isCelebrity(star.getProfileId()));
+		assertEquals(List.of("s2", "f1", "s1"), texts(feedService.getFeed(reader, null, 10)));
+
+		// The same when the follower that is lost is deleted
+		Profile other = profile("other");
+		feedService.follow(other, star);
+		post(star, "s3");
+		assertTrue(feedService.isCelebrity(star.getProfileId()));
+		model.deleteProfile(other);
+		assertEquals(List.of("s3", "s2", "f1"), texts(feedService.getFeed(reader, null, 10)));
+	}
+
+	// An imported posting has a new ID but an old date, and goes where its date puts it
+	@Test
+	void ordersByTimeNotById() {
+		Profile other = profile("other");
+		feedService.follow(reader, other);
+		post(friend, "f1");
+		post(star, "s1");
+		Posting imported = new Posting("imported");
+		imported.setDateAndTime(LocalDateTime.now().minusDays(1));
+		model.addPostings(other, List.of(imported));
+		Posting older = new Posting("older");
+		older.setDateAndTime(LocalDateTime.now().minusDays(2));
+		Profile fresh = profile("fresh");
+		model.addPostings(fresh, List.of(older));
+		feedService.follow(reader, fresh);
+
+		assertEquals(List.of("s1", "f1", "imported", "older"), texts(feedService.getFeed(reader, null, 10)));
+		List<Posting> first = feedService.getFeed(reader, null, 2);
+		assertEquals(List.of("imported", "older"),
+				texts(feedService.getFeed(reader, PostingKey.of(first.get(1)), 10)));
+	}
+
+	// Follows made before the service was created, as when the store is recovered first
+	@Test
+	void picksUpFollowsAlreadyInTheModel() {
+		post(friend, "f1");
+		FeedService created = new FeedService(model, 3, 2);
+		assertEquals(List.of(friend.getProfileId(), star.getProfileId()), created.getFollowing(reader));
+		assertEquals(List.of("f1"), texts(created.getFeed(reader, null, 10)));
+	}
+}
@@ -0,0 +1,97 @@
+package comp74.thompson.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MetricsTest {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	Model model;
+
+	@Autowired
+	MeterRegistry registry;
+
+	long count(String operation, String status) {
+		Timer timer = registry.find("model.operations").tag("operation", operation).tag("status", status).timer();
+		return timer == null ? 0 : timer.count();
+	}
+
+	@Test
+	void timesModelOperationsByOutcome() {
+		long created = count("addProfile", "201");
+		long conflicts = count("addProfile", "409");
+		long notFound = count("deletePost", "404");
+
+		Profile profile = new Profile("metricsTest");
+		model.addProfile(profile);
+		model.addProfile(new Profile("metricsTest"));
+		model.deletePost(profile, -1);
+
+		assertEquals(created + 1, count("addProfile", "201"));
+		assertEquals(conflicts + 1, count("addProfile", "409"));
+		assertEquals(notFound + 1, count("deletePost", "404"));
+		assertEquals("conflict", registry.find("model.operations").tag("status", "409").timer().getId().getTag("outcome"));
+		assertTrue(registry.get("model.postings").gauge().value() >= 0);
+	}
+
+	@Test
+	void recordsResponseSizesOfStreamedResponses() throws Exception {
+		Profile profile = new Profile("metricsSizes");
+		model.addProfile(profile);
+		model.addPost(profile, new Posting("a posting to measure"));
+
+		MvcResult started = mockMvc.perform(get("/api/profiles/" + profile.getProfileId() + "/postings"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		MvcResult result = mockMvc.perform(asyncDispatch(started))
+				.andExpect(status().isOk())
+				.andReturn();
+		int length = result.getResponse().getContentAsByteArray().length;
+
+		// MockMvc doesn't run the async listeners, so check the plain GET instead
+		mockMvc.perform(get("/api/profiles/" + profile.getProfileId())).andExpect(status().isOk());
+		DistributionSummary sizes = registry.find("http.server.response.size")
+				.tag("uri", "/api/profiles/{profileId}").summary();
+		assertNotNull(sizes);
+		assertTrue(sizes.max() > length);
+	}
+
+	@Test
+	void publishesPrometheusMetrics() throws Exception {
+		model.getProfiles();
+		mockMvc.perform(get("/api/profiles/0")).andExpect(status().isNotFound());
+		String scrape = mockMvc.perform(get("/actuator/prometheus"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		assertTrue(scrape.contains("model_operations_seconds_bucket"));
+		assertTrue(scrape.contains("model_operations_seconds_count{operation=\"getProfiles\""));
+		assertTrue(scrape.contains("http_server_requests_seconds"));
+		assertTrue(scrape.contains("cache_gets_total{cache=\"profileJson\""));
+	}
+}
@@ -0,0 +1,174 @@
+package comp74.thompson.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+/*
+ * Stress tests that hammer a single Model from many threads at once and check
+ * that no writes are lost and no IDs are handed out twice.
+ */
+class ModelConcurrencyTest {
+
+	static final int THREADS = 16;
+
+	Model model;
+	ExecutorService pool;
+
+	@BeforeEach
+	void setUp() {
+		model = new Model();
+		pool = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		pool.shutdownNow();
+		pool.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	// Run the same task on every thread, releasing them all at the same moment
+	<T> List<T> runConcurrently(Callable<T> task) throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<T>> futures = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			futures.add(pool.submit(() -> {
+				start.await();
+				return task.call();
+			}));
+		}
+		start.countDown();
+		List<T> results = new ArrayList<>();
+		for (Future<T> future : futures) {
+			results.add(future.get(60, TimeUnit.SECONDS));
+		}
+		return results;
+	}
+
+	@Test
+	void onlyOneProfileWinsAUsername() throws Exception {
+		List<HttpStatus> results = runConcurrently(
+				() -> (HttpStatus) model.addProfile(new Profile("sameName")).getStatusCode());
+
+		assertEquals(1, results.stream().filter(HttpStatus.CREATED::equals).count());
+		assertEquals(THREADS - 1, results.stream().filter(HttpStatus.CONFLICT::equals).count());
+		assertEquals(1, model.getProfiles().size());
+	}
+
+	@Test
+	void profileIdsAreUnique() throws Exception {
+		AtomicInteger counter = new AtomicInteger();
+		Set<Integer> ids = ConcurrentHashMap.newKeySet();
+		runConcurrently(() -> {
+			for (int i = 0; i < 1000; i++) {
+				Profile profile = new Profile("user" + counter.getAndIncrement());
+				assertEquals(HttpStatus.CREATED, model.addProfile(profile).getStatusCode());
+				assertTrue(ids.add(profile.getProfileId()), "duplicate profile ID");
+			}
+			return null;
+		});
+
+		assertEquals(THREADS * 1000, model.getProfiles().size());
+		assertEquals(THREADS * 1000, ids.size());
+	}
+
+	@Test
+	void concurrentPostsAreNeitherLostNorDuplicated() throws Exception {
+		int profileCount = 8;
+		int postsPerThread = 2000;
+		List<Profile> profiles = new ArrayList<>();
+		for (int i = 0; i < profileCount; i++) {
+			Profile profile = new Profile("poster" + i);
+			model.addProfile(profile);
+			profiles.add(profile);
+		}
+
+		Set<Integer> ids = ConcurrentHashMap.newKeySet();
+		runConcurrently(() -> {
+			for (int i = 0; i < postsPerThread; i++) {
+				Profile profile = profiles.get(i % profileCount);
+				Posting posting = model.addPost(profile, new Posting("text " + i)).getBody();
+				assertTrue(ids.add(posting.getPostingId()), "duplicate posting ID");
+			}
+			return null;
+		});
+
+		int total = THREADS * postsPerThread;
+		assertEquals(total, ids.size());
+		assertEquals(total, model.getPostings().size());
+		int sum = 0;
+		for (Profile profile : profiles) {
+			assertEquals(total / profileCount, profile.getPostings().size());
+			sum += profile.getPostings().size();
+		}
+		assertEquals(total, sum);
+	}
+
+	@Test
+	void concurrentAddsAndDeletesOnOneProfileStayConsistent() throws Exception {
+		Profile profile = new Profile("busy");
+		model.addProfile(profile);
+
+		runConcurrently(() -> {
+			for (int i = 0; i < 500; i++) {
+				Posting keep = model.addPost(profile, new Posting("keep")).getBody();
+				Posting drop = model.addPost(profile, new Posting("drop")).getBody();
+				assertEquals(HttpStatus.NO_CONTENT, model.deletePost(profile, drop.getPostingId()).getStatusCode());
+				assertEquals(HttpStatus.NO_CONTENT,
+						model.updatePost(profile, keep.getPostingId(), "kept").getStatusCode());
+			}
+			return null;
+		});
+
+		assertEquals(THREADS * 500, profile.getPostings().size());
+		assertEquals(THREADS * 500, model.getPostings().size());
+		for (Posting posting : profile.getPostings()) {
+			assertEquals("kept", posting.getPostingText());
+		}
+	}
+
+	@Test
+	void renamesNeverLeaveTwoProfilesWithOneUsername() throws Exception {
+		List<Profile> profiles = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			Profile profile = new Profile("before" + i);
+			model.addProfile(profile);
+			model.addPost(profile, new Posting("hello"));
+			profiles.add(profile);
+		}
+
+		AtomicInteger next = new AtomicInteger();
+		List<HttpStatus> results = runConcurrently(() -> {
+			Profile profile = profiles.get(next.getAndIncrement());
+			return (HttpStatus) model.updateProfile(profile, "target").getStatusCode();
+		});
+
+		assertEquals(1, results.stream().filter(HttpStatus.NO_CONTENT::equals).count());
+		Profile winner = model.getProfileByUsername("target").get(0);
+		assertEquals("target", winner.getUserName());
+		assertEquals("target", winner.getPostings().iterator().next().getUserName());
+		Set<String> names = new HashSet<>();
+		for (Profile profile : model.getProfiles()) {
+			assertTrue(names.add(profile.getUserName()), "username used twice");
+			assertEquals(profile, model.getProfileByUsername(profile.getUserName()).get(0));
+		}
+		assertEquals(THREADS, model.getProfileCount());
+	}
+}
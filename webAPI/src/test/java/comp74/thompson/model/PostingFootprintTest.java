@@ -0,0 +1,117 @@
+package comp74.thompson.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VM;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.Data;
+
+// Compares the memory used by a posting with the layout postings used to have.
+// The report (a JOL footprint of each layout) is printed to the test output.
+class PostingFootprintTest {
+
+	static final int COUNT = 10_000;
+	static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+	// The old layout: a boxed ID, separate date and time objects, and a username on every posting
+	@Data
+	static class LegacyPosting {
+		Integer postingId;
+		String postingText;
+		LocalDate date;
+		LocalTime time;
+		String userName;
+	}
+
+	static String text(int i) {
+		return "posting number " + i + " about nothing much";
+	}
+
+	static LegacyPosting legacy(int i, LocalDateTime dateTime, String userName) {
+		LegacyPosting posting = new LegacyPosting();
+		posting.setPostingId(1000 + i);
+		posting.setPostingText(text(i));
+		posting.setDate(dateTime.toLocalDate());
+		posting.setTime(dateTime.toLocalTime());
+		posting.setUserName(userName);
+		return posting;
+	}
+
+	static Posting compact(int i, LocalDateTime dateTime, Profile author) {
+		Posting posting = new Posting(text(i));
+		posting.setPostingId(1000 + i);
+		posting.setDateAndTime(dateTime);
+		posting.setAuthor(author);
+		return posting;
+	}
+
+	// The bytes used by the postings in an array, not counting the array or anything shared between them
+	static long perPosting(Object[] postings, Object shared) {
+		GraphLayout layout = GraphLayout.parseInstance((Object) postings).subtract(GraphLayout.parseInstance(shared));
+		System.out.println(layout.toFootprint());
+		return (layout.totalSize() - VM.current().sizeOf(postings)) / postings.length;
+	}
+
+	// The bytes needed to hold the text of a posting, which both layouts need
+	static long textBytes() {
+		long total = 0;
+		for (int i = 0; i < COUNT; i++) {
+			total += VM.current().sizeOf(text(i).getBytes(StandardCharsets.UTF_8));
+		}
+		return total / COUNT;
+	}
+
+	@Test
+	void compactPostingsHaveLessThanHalfTheOverhead() {
+		Profile author = new Profile("someone");
+		author.setProfileId(100);
+		LegacyPosting[] legacy = new LegacyPosting[COUNT];
+		Posting[] compact = new Posting[COUNT];
+		for (int i = 0; i < COUNT; i++) {
+			LocalDateTime dateTime = START.plusSeconds(i);
+			legacy[i] = legacy(i, dateTime, author.getUserName());
+			compact[i] = compact(i, dateTime, author);
+		}
+
+		long legacyBytes = perPosting(legacy, author);
+		long compactBytes = perPosting(compact, author);
+		long textBytes = textBytes();
+		System.out.printf("Bytes per posting: legacy %d, compact %d, of which %d are text%n",
+				legacyBytes, compactBytes, textBytes);
+		// Everything but the text itself is overhead
+		assertTrue((compactBytes - textBytes) * 2 < legacyBytes - textBytes, legacyBytes + " -> " + compactBytes);
+	}
+
+	@Test
+	void jsonIsUnchanged() throws Exception {
+		ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+		Profile author = new Profile("someone");
+		author.setProfileId(100);
+		// Postings only keep the time to the millisecond
+		LocalDateTime dateTime = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+		Posting posting = compact(7, dateTime, author);
+		assertEquals(mapper.writeValueAsString(legacy(7, dateTime, "someone")), mapper.writeValueAsString(posting));
+
+		author.setUserName("renamed");
+		assertEquals(mapper.writeValueAsString(legacy(7, dateTime, "renamed")), mapper.writeValueAsString(posting));
+
+		// Only the text can be set from a request body
+		Posting read = mapper.readValue(mapper.writeValueAsString(posting), Posting.class);
+		assertEquals(posting.getPostingText(), read.getPostingText());
+		assertEquals(0, read.getPostingId());
+		assertEquals(null, read.getUserName());
+	}
+}
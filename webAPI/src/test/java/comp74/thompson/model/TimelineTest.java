@@ -0,0 +1,86 @@
+package comp74.thompson.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TimelineTest {
+
+	static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+	Timeline timeline;
+
+	// Postings 1..10, one minute apart, with posting 5 and 6 at the same time
+	@BeforeEach
+	void setUp() {
+		timeline = new Timeline();
+		for (int id = 1; id <= 10; id++) {
+			Posting posting = new Posting("post " + id);
+			posting.setPostingId(id);
+			posting.setDateAndTime(START.plusMinutes(id == 6 ? 5 : id));
+			timeline.add(posting);
+		}
+	}
+
+	static List<Integer> ids(Collection<Posting> postings) {
+		List<Integer> ids = new ArrayList<>();
+		for (Posting posting : postings) {
+			ids.add(posting.getPostingId());
+		}
+		return ids;
+	}
+
+	static long at(int minutes) {
+		return Posting.toEpochMillis(START.plusMinutes(minutes));
+	}
+
+	@Test
+	void keepsPostingsInTimeOrder() {
+		assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), ids(timeline.values()));
+		assertEquals(10, timeline.size());
+		assertEquals(10, timeline.latest().getPostingId());
+	}
+
+	@Test
+	void removesAndFindsByIdAlone() {
+		assertEquals("post 6", timeline.get(6).getPostingText());
+		assertTrue(timeline.remove(6));
+		assertFalse(timeline.remove(6));
+		assertFalse(timeline.remove(42));
+		assertNull(timeline.get(6));
+		assertEquals(9, timeline.size());
+		assertEquals(List.of(1, 2, 3, 4, 5, 7, 8, 9, 10), ids(timeline.values()));
+	}
+
+	@Test
+	void readsTimeRanges() {
+		// since is inclusive, until is exclusive
+		assertEquals(List.of(3, 4, 5, 6), ids(timeline.range(at(3), at(7), null, false)));
+		assertEquals(List.of(6, 5, 4, 3), ids(timeline.range(at(3), at(7), null, true)));
+		assertEquals(List.of(9, 10), ids(timeline.range(at(9), null, null, false)));
+		assertEquals(List.of(2, 1), ids(timeline.range(null, at(3), null, true)));
+		assertEquals(List.of(), ids(timeline.range(at(7), at(3), null, false)));
+	}
+
+	@Test
+	void continuesAfterACursor() {
+		assertEquals(List.of(6, 7, 8), ids(timeline.range(null, at(9), 5, false)));
+		assertEquals(List.of(4, 3), ids(timeline.range(at(3), null, 5, true)));
+		// A cursor outside of the time range doesn't move the range
+		assertEquals(List.of(7, 8), ids(timeline.range(at(7), at(9), 2, false)));
+		assertEquals(List.of(), ids(timeline.range(at(7), at(9), 9, false)));
+		// A deleted cursor still works
+		timeline.remove(5);
+		assertEquals(List.of(6, 7), ids(timeline.range(null, at(8), 5, false)));
+		assertEquals(List.of(4, 3), ids(timeline.range(null, null, 5, true)).subList(0, 2));
+	}
+}
@@ -0,0 +1,41 @@
+package comp74.thompson.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+import comp74.thompson.seed.DatasetGenerator;
+
+class DatasetTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void readsBackWhatWasWritten() throws IOException {
+		Model model = new Model();
+		new DatasetGenerator(model, 1000, 5000, 1.1, 3, 30).generate();
+		Profile unicode = new Profile("ünïcode");
+		model.addProfile(unicode);
+		model.addPost(unicode, new Posting("naïve café ☕"));
+		Path file = directory.resolve("dataset.snap");
+		Dataset.write(file, model);
+		assertFalse(Files.exists(directory.resolve("dataset.snap.tmp")));
+
+		Model loaded = new Model();
+		Dataset.read(file, loaded);
+		assertEquals(PersistenceManagerTest.dump(model), PersistenceManagerTest.dump(loaded));
+		assertEquals(model.getNextProfileId(), loaded.getNextProfileId());
+		assertEquals(model.getNextPostingId(), loaded.getNextPostingId());
+		assertEquals(1, loaded.getProfileByUsername("ünïcode").size());
+	}
+}
@@ -0,0 +1,184 @@
+package comp74.thompson.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.http.HttpStatus;
+
+import comp74.thompson.feed.FeedService;
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+class PersistenceManagerTest {
+
+	@TempDir
+	Path directory;
+
+	PersistenceManager open(Model model) throws IOException {
+		return new PersistenceManager(model, directory.toString(), true, true, 0);
+	}
+
+	// A description of everything in the store, to compare two stores
+	static List<String> dump(Model model) {
+		List<String> lines = new ArrayList<>();
+		for (Profile profile : model.getProfilesAfter(null)) {
+			lines.add(profile.getProfileId() + " " + profile.getUserName());
+			// Follows of deleted profiles are only dropped when the store is loaded
+			for (Integer followeeId : new TreeSet<>(profile.getFollowing())) {
+				if (model.getProfile(followeeId) != null) {
+					lines.add("  follows " + followeeId);
+				}
+			}
+			for (Posting posting : profile.getPostings()) {
+				lines.add("  " + posting.getPostingId() + " " + posting.getUserName() + " "
+						+ posting.getEpochMillis() + " " + posting.getPostingText());
+			}
+		}
+		return lines;
+	}
+
+	// Make some changes of every kind
+	static void change(Model model, String prefix) {
+		Profile alice = new Profile(prefix + "alice");
+		Profile bob = new Profile(prefix + "bob");
+		Profile carol = new Profile(prefix + "carol");
+		model.addProfile(alice);
+		model.addProfile(bob);
+		model.addProfile(carol);
+		Posting first = model.addPost(alice, new Posting("first")).getBody();
+		Posting second = model.addPost(alice, new Posting("second")).getBody();
+		model.addPost(bob, new Posting("bob's"));
+		// Comes back without text, not with empty text
+		model.addPost(bob, new Posting((String) null));
+		model.addPost(carol, new Posting("carol's"));
+		model.follow(alice, bob);
+		model.follow(alice, carol);
+		model.follow(bob, alice);
+		model.follow(bob, carol);
+		model.unfollow(bob, alice);
+		model.updatePost(alice, first.getPostingId(), "first, edited");
+		model.deletePost(alice, second.getPostingId());
+		model.updateProfile(bob, prefix + "robert");
+		model.deletePosts(carol);
+		model.deleteProfile(carol);
+	}
+
+	@Test
+	void recoversFromTheLog() throws IOException {
+		Model model = new Model();
+		PersistenceManager persistence = open(model);
+		change(model, "");
+		persistence.close();
+
+		Model recovered = new Model();
+		PersistenceManager reopened = open(recovered);
+		assertEquals(dump(model), dump(recovered));
+		assertEquals("first, edited", recovered.getProfileByUsername("alice").get(0)
+				.getPostings().iterator().next().getPostingText());
+		assertNull(recovered.getProfileByUsername("bob"));
+		assertEquals(model.getNextPostingId(), recovered.getNextPostingId());
+
+		// New IDs continue after the recovered ones
+		Profile dave = new Profile("dave");
+		recovered.addProfile(dave);
+		assertEquals(model.getNextProfileId(), dave.getProfileId());
+		reopened.close();
+	}
+
+	@Test
+	void recoversFromASnapshotAndTheLogAfterIt() throws IOException {
+		Model model = new Model();
+		PersistenceManager persistence = open(model);
+		change(model, "before-");
+		persistence.snapshot();
+		change(model, "after-");
+		Profile alice = model.getProfileByUsername("before-alice").get(0);
+		model.updateProfile(alice, "before-alicia");
+		persistence.close();
+
+		try (Stream<Path> files = Files.list(directory)) {
+			assertEquals(List.of("snapshot-0000000001.snap", "wal-0000000001.log"),
+					files.map(file -> file.getFileName().toString()).sorted().toList());
+		}
+
+		Model recovered = new Model();
+		open(recovered).close();
+		assertEquals(dump(model), dump(recovered));
+		assertEquals("before-alicia", recovered.getProfileByUsername("before-alicia").get(0).getUserName());
+	}
+
+	@Test
+	void ignoresAHalfWrittenRecord() throws IOException {
+		Model model = new Model();
+		PersistenceManager persistence = open(model);
+		change(model, "");
+		persistence.close();
+		Path segment = WriteAheadLog.segmentPath(directory, 0);
+		long length = Files.size(segment);
+		Files.write(segment, new byte[] { 0, 0, 0, 42, 4, 1, 2 }, StandardOpenOption.APPEND);
+
+		Model recovered = new Model();
+		PersistenceManager reopened = open(recovered);
+		assertEquals(dump(model), dump(recovered));
+		assertEquals(length, Files.size(segment));
+		reopened.close();
+	}
+
+	@Test
+	void rebuildsFeedsFromTheRecoveredFollows() throws IOException {
+		Model model = new Model();
+		PersistenceManager persistence = open(model);
+		Profile reader = new Profile("reader");
+		Profile writer = new Profile("writer");
+		model.addProfile(reader);
+		model.addProfile(writer);
+		model.addPost(writer, new Posting("old"));
+		model.follow(reader, writer);
+		persistence.snapshot();
+		model.addPost(writer, new Posting("new"));
+		persistence.close();
+
+		Model recovered = new Model();
+		FeedService feeds = new FeedService(recovered, 10, 1000);
+		open(recovered).close();
+		Profile recoveredReader = recovered.getProfile(reader.getProfileId());
+		assertEquals(List.of(writer.getProfileId()), feeds.getFollowing(recoveredReader));
+		assertEquals(List.of("new", "old"), feeds.getFeed(recoveredReader, null, 10).stream()
+				.map(Posting::getPostingText).toList());
+	}
+
+	// A directory where the next segment should go makes the log fail when it is rotated
+	@Test
+	void turnsChangesDownOnceTheLogFails() throws IOException {
+		Model model = new Model();
+		PersistenceManager persistence = open(model);
+		Profile writer = new Profile("writer");
+		model.addProfile(writer);
+		assertEquals(Status.UP, persistence.health().getStatus());
+		Files.createDirectory(WriteAheadLog.segmentPath(directory, persistence.wal.getSegment() + 1));
+
+		assertThrows(IOException.class, persistence::snapshot);
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, model.addPost(writer, new Posting("lost")).getStatusCode());
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, model.addProfile(new Profile("other")).getStatusCode());
+		assertTrue(writer.getPostings().isEmpty());
+		assertEquals(1, model.getProfileCount());
+		assertNull(model.getProfileByUsername("other"));
+		assertEquals(Status.DOWN, persistence.health().getStatus());
+		assertThrows(IOException.class, persistence::close);
+	}
+}
@@ -0,0 +1,72 @@
+package comp74.thompson.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+class PostingListTest {
+
+	static List<Integer> descending(PostingList list) {
+		List<Integer> ids = new ArrayList<>();
+		PostingList.DescendingCursor cursor = list.descending();
+		for (int id = cursor.next(); id >= 0; id = cursor.next()) {
+			ids.add(id);
+		}
+		return ids;
+	}
+
+	// Mostly increasing IDs with some late arrivals and removals, checked against a TreeSet
+	@Test
+	void matchesASortedSet() {
+		Random random = new Random(42);
+		PostingList list = new PostingList();
+		TreeSet<Integer> expected = new TreeSet<>();
+		int next = 1000;
+		for (int i = 0; i < 20000; i++) {
+			int roll = random.nextInt(10);
+			if (roll < 7) {
+				next += 1 + random.nextInt(300);
+				list.add(next);
+				expected.add(next);
+			} else if (roll < 8) {
+				int late = 1000 + random.nextInt(next - 999);
+				list.add(late);
+				expected.add(late);
+			} else if (!expected.isEmpty()) {
+				Integer victim = expected.ceiling(1000 + random.nextInt(next - 999));
+				if (victim != null) {
+					assertEquals(true, list.remove(victim));
+					expected.remove(victim);
+				}
+			}
+		}
+		assertEquals(expected.size(), list.size());
+		assertEquals(new ArrayList<>(expected.descendingSet()), descending(list));
+
+		PostingList.DescendingCursor probe = list.descending();
+		for (int id = next; id >= 1000; id -= 7) {
+			assertEquals(expected.contains(id), probe.contains(id), "contains " + id);
+		}
+
+		int middle = expected.first() + (next - expected.first()) / 2;
+		PostingList.DescendingCursor skipped = list.descending();
+		skipped.skipBelow(middle);
+		assertEquals(expected.lower(middle).intValue(), skipped.next());
+	}
+
+	@Test
+	void ignoresDuplicatesAndUnknownIds() {
+		PostingList list = new PostingList();
+		list.add(5);
+		list.add(5);
+		assertEquals(1, list.size());
+		assertEquals(false, list.remove(6));
+		assertEquals(true, list.remove(5));
+		assertEquals(List.of(), descending(list));
+	}
+}
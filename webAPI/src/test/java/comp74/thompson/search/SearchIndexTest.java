@@ -0,0 +1,169 @@
+package comp74.thompson.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.PostingKey;
+import comp74.thompson.model.Profile;
+
+class SearchIndexTest {
+
+	Model model;
+	SearchIndex index;
+	Profile profile;
+
+	@BeforeEach
+	void setUp() {
+		model = new Model();
+		index = new SearchIndex(model);
+		profile = new Profile("writer");
+		model.addProfile(profile);
+	}
+
+	Posting post(String text) {
+		return model.addPost(profile, new Posting(text)).getBody();
+	}
+
+	List<String> search(String query) {
+		List<String> texts = new ArrayList<>();
+		for (Posting posting : index.search(query, null, 10)) {
+			texts.add(posting.getPostingText());
+		}
+		return texts;
+	}
+
+	@Test
+	void findsPostingsWithAllTermsNewestFirst() {
+		post("The quick brown fox");
+		post("A quick red fox!");
+		post("The lazy dog");
+		assertEquals(List.of("A quick red fox!", "The quick brown fox"), search("fox QUICK"));
+		assertEquals(List.of("The quick brown fox"), search("quick brown"));
+		assertEquals(List.of(), search("quick cat"));
+	}
+
+	@Test
+	void matchesPhrases() {
+		post("brown fox jumps");
+		post("fox is brown");
+		assertEquals(List.of("fox is brown", "brown fox jumps"), search("brown fox"));
+		assertEquals(List.of("brown fox jumps"), search("\"brown fox\""));
+	}
+
+	@Test
+	void findsPhrasesPastCandidatesThatDontMatch() {
+		// More non-matching candidates than a batch, newer than the ones that match
+		post("brown fox one");
+		post("brown fox two");
+		for (int i = 0; i < 3 * SearchIndex.PHRASE_BATCH; i++) {
+			post("fox before brown " + i);
+		}
+		assertEquals(List.of("brown fox two", "brown fox one"), search("\"brown fox\""));
+	}
+
+	@Test
+	void followsUpdatesAndDeletes() {
+		Posting posting = post("old words");
+		post("other words");
+		model.updatePost(profile, posting.getPostingId(), "new words");
+		assertEquals(List.of(), search("old"));
+		assertEquals(List.of("new words"), search("new"));
+		model.deletePost(profile, posting.getPostingId());
+		assertEquals(List.of("other words"), search("words"));
+		model.deletePosts(profile);
+		assertEquals(List.of(), search("words"));
+		assertEquals(0, index.getTermCount());
+	}
+
+	@Test
+	void pagesWithACursor() {
+		List<Integer> ids = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			ids.add(post("common term " + (i % 3 == 0 ? "fizz" : "")).getPostingId());
+		}
+		List<Posting> first = index.search("common fizz", null, 40);
+		assertEquals(40, first.size());
+		assertEquals(ids.get(297), first.get(0).getPostingId());
+		List<Posting> rest = index.search("common fizz", PostingKey.of(first.get(39)), 1000);
+		assertEquals(60, rest.size());
+		assertEquals(ids.get(0), rest.get(59).getPostingId());
+	}
+
+	Posting dated(String text, LocalDateTime dateAndTime) {
+		Posting posting = new Posting(text);
+		posting.setDateAndTime(dateAndTime);
+		return posting;
+	}
+
+	List<String> texts(List<Posting> postings) {
+		List<String> texts = new ArrayList<>();
+		for (Posting posting : postings) {
+			texts.add(posting.getPostingText());
+		}
+		return texts;
+	}
+
+	// Imported postings have old dates and new IDs, and one dated tomorrow has the smallest ID
+	@Test
+	void ranksByTimeNotById() {
+		Profile early = new Profile("early");
+		model.addProfile(early);
+		Posting tomorrow = dated("fox tomorrow", LocalDateTime.now().plusDays(1));
+		model.addPostings(early, List.of(tomorrow));
+		for (int i = 0; i < 600; i++) {
+			post("fox live" + i);
+		}
+		Profile late = new Profile("late");
+		model.addProfile(late);
+		model.addPostings(late, List.of(dated("fox last week", LocalDateTime.now().minusDays(7)),
+				dated("fox yesterday", LocalDateTime.now().minusDays(1))));
+
+		for (int run = 0; run < 2; run++) {
+			assertEquals(List.of("fox tomorrow", "fox live599", "fox live598"), texts(index.search("fox", null, 3)));
+			List<Posting> all = index.search("fox", null, 1000);
+			assertEquals(603, all.size());
+			assertEquals(List.of("fox live0", "fox yesterday", "fox last week"), texts(all.subList(600, 603)));
+			assertEquals(List.of("fox yesterday", "fox last week"),
+					texts(index.search("fox", PostingKey.of(all.get(600)), 10)));
+			// Without the posting dated tomorrow, the newest page is found without walking everything
+			model.deletePost(early, tomorrow.getPostingId());
+			assertEquals(List.of("fox live599", "fox live598"), texts(index.search("fox", null, 2)));
+			// Then again with the index rebuilt
+			tomorrow = dated("fox tomorrow", LocalDateTime.now().plusDays(1));
+			model.addPostings(early, List.of(tomorrow));
+			index.onLoaded();
+		}
+	}
+
+	@Test
+	void rebuildingFindsTheSameAsIndexingEachChange() {
+		Profile other = new Profile("other");
+		model.addProfile(other);
+		// The two profiles' postings interleave, and some text isn't ASCII
+		for (int i = 0; i < 300; i++) {
+			post("Fox fox number" + i + (i % 3 == 0 ? " café" : "") + (i % 2 == 0 ? " EVEN" : " odd"));
+			model.addPost(other, new Posting("the other fox " + (i % 5 == 0 ? "naïve Fox" : "again")));
+		}
+		List<List<String>> before = new ArrayList<>();
+		for (String query : List.of("fox", "even", "café", "naïve fox", "number150", "other again")) {
+			before.add(search(query));
+		}
+		int terms = index.getTermCount();
+		index.onLoaded();
+		assertEquals(terms, index.getTermCount());
+		List<List<String>> after = new ArrayList<>();
+		for (String query : List.of("fox", "even", "café", "naïve fox", "number150", "other again")) {
+			after.add(search(query));
+		}
+		assertEquals(before, after);
+		assertEquals(List.of("Fox fox number150 café EVEN"), search("NUMBER150"));
+	}
+}
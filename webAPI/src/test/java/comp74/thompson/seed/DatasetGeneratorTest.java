@@ -0,0 +1,115 @@
+package comp74.thompson.seed;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+class DatasetGeneratorTest {
+
+	static final int PROFILES = 10_000;
+	static final int POSTINGS = 50_000;
+
+	Model generate(ForkJoinPool pool) {
+		Model model = new Model();
+		new DatasetGenerator(model, PROFILES, POSTINGS, 1.1, 7, 30).generate(pool);
+		return model;
+	}
+
+	// Everything about the postings except their times, which depend on when they were generated
+	static List<String> dump(Model model) {
+		List<String> lines = new ArrayList<>();
+		for (Profile profile : model.getProfilesAfter(null)) {
+			lines.add(profile.getProfileId() + " " + profile.getUserName());
+			for (Posting posting : profile.getPostings()) {
+				lines.add("  " + posting.getPostingId() + " " + posting.getPostingText());
+			}
+		}
+		return lines;
+	}
+
+	@Test
+	void generatesTheRequestedCounts() {
+		Model model = generate(ForkJoinPool.commonPool());
+		assertEquals(PROFILES, model.getProfileCount());
+		assertEquals(POSTINGS, model.getPostingCount());
+		assertEquals(100 + PROFILES, model.getNextProfileId());
+		assertEquals(1000 + POSTINGS, model.getNextPostingId());
+		// Usernames are indexed, and new profiles and postings get IDs after the generated ones
+		Profile first = model.getProfile(100);
+		assertEquals(List.of(first), model.getProfileByUsername(first.getUserName()));
+		Profile added = new Profile("added");
+		model.addProfile(added);
+		assertEquals(100 + PROFILES, added.getProfileId());
+		assertEquals(1000 + POSTINGS, model.addPost(added, new Posting("new")).getBody().getPostingId());
+	}
+
+	@Test
+	void postingsAreInOrderOfIdAndTime() {
+		Model model = generate(ForkJoinPool.commonPool());
+		long since = System.currentTimeMillis() - 31L * 24 * 60 * 60 * 1000;
+		for (Profile profile : model.getProfilesAfter(null)) {
+			Posting previous = null;
+			for (Posting posting : profile.getPostings()) {
+				assertTrue(posting.getEpochMillis() > since);
+				assertTrue(posting.getPostingText().split(" ").length >= DatasetGenerator.MIN_WORDS);
+				if (previous != null) {
+					assertTrue(previous.getPostingId() < posting.getPostingId());
+					assertTrue(previous.getEpochMillis() <= posting.getEpochMillis());
+				}
+				previous = posting;
+			}
+		}
+		// And across profiles, as if they had been posted live
+		List<Posting> all = new ArrayList<>(model.getPostings());
+		all.sort(Comparator.comparingInt(Posting::getPostingId));
+		for (int i = 1; i < all.size(); i++) {
+			assertTrue(all.get(i - 1).getEpochMillis() <= all.get(i).getEpochMillis());
+		}
+	}
+
+	@Test
+	void postingsPerProfileAreSkewed() {
+		Model model = generate(ForkJoinPool.commonPool());
+		List<Integer> counts = new ArrayList<>();
+		for (Profile profile : model.getProfilesAfter(null)) {
+			counts.add(profile.getPostings().size());
+		}
+		counts.sort(null);
+		int busiest = counts.get(counts.size() - 1);
+		int median = counts.get(counts.size() / 2);
+		// The busiest profile has a few thousand postings and the typical one only a few
+		assertTrue(busiest > 1000, "busiest " + busiest);
+		assertTrue(median < 5, "median " + median);
+	}
+
+	@Test
+	void theSameSeedGivesTheSameDataset() {
+		ForkJoinPool single = new ForkJoinPool(1);
+		ForkJoinPool several = new ForkJoinPool(4);
+		try {
+			assertEquals(dump(generate(single)), dump(generate(several)));
+		} finally {
+			single.shutdown();
+			several.shutdown();
+		}
+	}
+
+	@Test
+	void onlyFillsAnEmptyModel() {
+		Model model = new Model();
+		model.addProfile(new Profile("existing"));
+		assertThrows(IllegalStateException.class,
+				() -> new DatasetGenerator(model, 10, 10, 1.1, 7, 30).generate());
+	}
+}
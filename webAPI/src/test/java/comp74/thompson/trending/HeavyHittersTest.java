@@ -0,0 +1,81 @@
+package comp74.thompson.trending;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class HeavyHittersTest {
+
+	@Test
+	void sketchNeverCountsTooLow() {
+		CountMinSketch sketch = new CountMinSketch(1000);
+		assertEquals(1024, sketch.width);
+		int[] counts = new int[10_000];
+		Random random = new Random(1);
+		for (int i = 0; i < 100_000; i++) {
+			int key = random.nextInt(counts.length);
+			counts[key]++;
+			sketch.add(key, 1);
+		}
+		int far = 0;
+		for (int key = 0; key < counts.length; key++) {
+			int estimate = sketch.estimate(key);
+			assertTrue(estimate >= counts[key]);
+			// Off by more than total/width only rarely
+			if (estimate - counts[key] > 100_000 / 1024) {
+				far++;
+			}
+		}
+		assertTrue(far < counts.length / 10, far + " keys far off");
+	}
+
+	@Test
+	void keepsTheMostFrequentKeysAsCandidates() {
+		HeavyHitters<String> hitters = new HeavyHitters<>(1024, 8);
+		Random random = new Random(2);
+		// Five keys take half of the counts, thousands of others share the rest
+		for (int i = 0; i < 50_000; i++) {
+			if (random.nextBoolean()) {
+				hitters.add("hot" + random.nextInt(5), 1);
+			} else {
+				hitters.add("cold" + random.nextInt(5000), 1);
+			}
+		}
+		assertEquals(8, hitters.candidates().size());
+		for (int i = 0; i < 5; i++) {
+			assertTrue(hitters.candidates().contains("hot" + i), hitters.candidates().toString());
+		}
+	}
+
+	@Test
+	void countsGoDownAgain() {
+		HeavyHitters<Integer> hitters = new HeavyHitters<>(64, 4);
+		for (int i = 0; i < 10; i++) {
+			hitters.add(7, 1);
+		}
+		hitters.add(7, -4);
+		assertEquals(6, hitters.estimate(7));
+		hitters.clear();
+		assertEquals(0, hitters.estimate(7));
+		assertTrue(hitters.candidates().isEmpty());
+	}
+
+	@Test
+	void addsUpCountsAndCandidates() {
+		HeavyHitters<String> one = new HeavyHitters<>(64, 2);
+		HeavyHitters<String> other = new HeavyHitters<>(64, 2);
+		one.add("shared", 3);
+		one.add("mine", 1);
+		other.add("shared", 2);
+		other.add("theirs", 4);
+		HeavyHitters<String> sum = new HeavyHitters<>(64, 2);
+		sum.addAll(one);
+		sum.addAll(other);
+		assertEquals(5, sum.estimate("shared"));
+		assertEquals(4, sum.estimate("theirs"));
+		assertEquals(3, sum.candidates().size());
+	}
+}
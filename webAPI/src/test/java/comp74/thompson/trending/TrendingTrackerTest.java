@@ -0,0 +1,110 @@
+package comp74.thompson.trending;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+class TrendingTrackerTest {
+
+	Model model;
+	TrendingTracker tracker;
+	Profile busy;
+	Profile quiet;
+	long now;
+
+	@BeforeEach
+	void setUp() {
+		model = new Model();
+		tracker = new TrendingTracker(model, 3, 256, 0, 4);
+		busy = new Profile("busy");
+		quiet = new Profile("quiet");
+		model.addProfile(busy);
+		model.addProfile(quiet);
+		for (int i = 0; i < 5; i++) {
+			model.addPost(busy, new Posting("coffee and more coffee " + i));
+		}
+		model.addPost(quiet, new Posting("tea or coffee"));
+		now = System.currentTimeMillis();
+		tracker.clock = () -> now;
+	}
+
+	TrendingSnapshot.Window window(String name) {
+		tracker.refresh();
+		return tracker.getSnapshot().windows().get(name);
+	}
+
+	@Test
+	void listsTheBusiestAuthorsAndTerms() {
+		for (String name : List.of("5m", "1h", "1d")) {
+			TrendingSnapshot.Window window = window(name);
+			assertEquals(List.of(new TrendingSnapshot.Author(busy.getProfileId(), "busy", 5),
+					new TrendingSnapshot.Author(quiet.getProfileId(), "quiet", 1)), window.authors());
+			// Each posting counts a term once, short terms don't count, and only the top 3 are listed
+			assertEquals(new TrendingSnapshot.Term("coffee", 6), window.terms().get(0));
+			assertEquals(new TrendingSnapshot.Term("and", 5), window.terms().get(1));
+			assertEquals(3, window.terms().size());
+		}
+	}
+
+	@Test
+	void followsDeletesUpdatesAndRenames() {
+		// Lists every term
+		tracker = new TrendingTracker(model, 10, 256, 0, 4);
+		tracker.clock = () -> now;
+		Posting posting = quiet.getPostings().iterator().next();
+		model.updatePost(quiet, posting.getPostingId(), "just tea");
+		model.updateProfile(busy, "busier");
+		TrendingSnapshot.Window window = window("5m");
+		assertEquals(new TrendingSnapshot.Author(busy.getProfileId(), "busier", 5), window.authors().get(0));
+		assertEquals(List.of(new TrendingSnapshot.Term("and", 5), new TrendingSnapshot.Term("coffee", 5),
+				new TrendingSnapshot.Term("more", 5), new TrendingSnapshot.Term("just", 1),
+				new TrendingSnapshot.Term("tea", 1)), window.terms());
+
+		model.deletePost(quiet, posting.getPostingId());
+		window = window("5m");
+		assertEquals(1, window.authors().size());
+		assertEquals(3, window.terms().size());
+	}
+
+	@Test
+	void forgetsPostingsAsTheyLeaveEachWindow() {
+		now += TimeUnit.MINUTES.toMillis(10);
+		assertTrue(window("5m").authors().isEmpty());
+		assertEquals(5, window("1h").authors().get(0).postings());
+
+		now += TimeUnit.HOURS.toMillis(2);
+		assertTrue(window("1h").terms().isEmpty());
+		assertEquals(5, window("1d").authors().get(0).postings());
+
+		now += TimeUnit.DAYS.toMillis(1);
+		assertTrue(window("1d").authors().isEmpty());
+	}
+
+	@Test
+	void ignoresPostingsFromTheFuture() {
+		// Five minutes ahead lands in the bucket of now in the 5 minute window
+		Posting ahead = new Posting("coffee from tomorrow");
+		ahead.setEpochMillis(now + TimeUnit.MINUTES.toMillis(5));
+		tracker.onPostAdded(quiet, ahead);
+		TrendingSnapshot.Window window = window("5m");
+		assertEquals(new TrendingSnapshot.Author(busy.getProfileId(), "busy", 5), window.authors().get(0));
+		assertEquals(new TrendingSnapshot.Term("coffee", 6), window.terms().get(0));
+	}
+
+	@Test
+	void countsRecentPostingsOfALoadedStore() {
+		TrendingTracker loaded = new TrendingTracker(model, 3, 256, 0, 4);
+		TrendingSnapshot.Window window = loaded.getSnapshot().windows().get("1d");
+		assertEquals(5, window.authors().get(0).postings());
+		assertEquals("coffee", window.terms().get(0).term());
+	}
+}
@@ -0,0 +1,118 @@
+package comp74.thompson.writes;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class IdempotencyCacheTest {
+
+	IdempotencyCache cache = new IdempotencyCache(new SimpleMeterRegistry(), new ObjectMapper(), 100, 60);
+	AtomicInteger writes = new AtomicInteger();
+
+	ResponseEntity<Integer> write() {
+		return new ResponseEntity<>(writes.incrementAndGet(), HttpStatus.CREATED);
+	}
+
+	@Test
+	void replaysTheFirstResponse() {
+		ResponseEntity<?> first = cache.once("key", "request", this::write);
+		ResponseEntity<?> retry = cache.once("key", "request", this::write);
+		assertEquals(1, writes.get());
+		assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+		assertEquals(1, first.getBody());
+		assertArrayEquals("1".getBytes(StandardCharsets.UTF_8), (byte[]) retry.getBody());
+		assertEquals(MediaType.APPLICATION_JSON, retry.getHeaders().getContentType());
+		assertNull(first.getHeaders().getFirst(IdempotencyCache.REPLAYED_HEADER));
+		assertEquals("true", retry.getHeaders().getFirst(IdempotencyCache.REPLAYED_HEADER));
+
+		// Other keys, and no key, are carried out
+		cache.once("other", "request", this::write);
+		cache.once(null, "request", this::write);
+		assertEquals(3, writes.get());
+	}
+
+	@Test
+	void refusesAKeyReusedForAnotherRequest() {
+		cache.once("key", IdempotencyCache.request("POST /x", "first"), this::write);
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY,
+				cache.once("key", IdempotencyCache.request("POST /x", "second"), this::write).getStatusCode());
+		assertEquals(1, writes.get());
+
+		// "Aa" and "BB" have the same length and String hash, but are different requests
+		cache.once("other", IdempotencyCache.request("POST /x", "Aa"), this::write);
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY,
+				cache.once("other", IdempotencyCache.request("POST /x", "BB"), this::write).getStatusCode());
+	}
+
+	@Test
+	void replaysTheBodyAsItWasWhenFirstSent() {
+		List<String> body = new ArrayList<>(List.of("first"));
+		cache.once("key", "request", () -> new ResponseEntity<>(body, HttpStatus.CREATED));
+		body.add("changed later");
+		ResponseEntity<?> retry = cache.once("key", "request", this::write);
+		assertEquals("[\"first\"]", new String((byte[]) retry.getBody(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void forgetsFailedWrites() {
+		assertThrows(IllegalStateException.class, () -> cache.once("key", "request", () -> {
+			throw new IllegalStateException();
+		}));
+		cache.once("key", "request", () -> new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+		assertEquals(HttpStatus.CREATED, cache.once("key", "request", this::write).getStatusCode());
+		assertEquals(1, writes.get());
+	}
+
+	@Test
+	void coalescesConcurrentRetries() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Thread first = new Thread(() -> cache.once("key", "request", () -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			return write();
+		}));
+		first.start();
+		started.await();
+		List<Thread> retries = new ArrayList<>();
+		List<String> bodies = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			Thread retry = new Thread(() -> {
+				String body = new String((byte[]) cache.once("key", "request", this::write).getBody(),
+						StandardCharsets.UTF_8);
+				synchronized (bodies) {
+					bodies.add(body);
+				}
+			});
+			retry.start();
+			retries.add(retry);
+		}
+		release.countDown();
+		first.join();
+		for (Thread retry : retries) {
+			retry.join();
+		}
+		assertEquals(1, writes.get());
+		assertEquals(List.of("1", "1", "1", "1"), bodies);
+	}
+}
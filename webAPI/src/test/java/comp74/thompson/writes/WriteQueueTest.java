@@ -0,0 +1,168 @@
+package comp74.thompson.writes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import comp74.thompson.model.Model;
+import comp74.thompson.model.ModelListener;
+import comp74.thompson.model.Posting;
+import comp74.thompson.model.Profile;
+
+class WriteQueueTest {
+	static final int THREADS = 16;
+	static final int POSTS_PER_THREAD = 200;
+
+	Model model = new Model();
+	WriteQueue queue = new WriteQueue(model, new SimpleMeterRegistry(), true, 64, 32, 30);
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		queue.close();
+	}
+
+	@Test
+	void addsEveryPostingOnceInBatches() throws Exception {
+		AtomicInteger afterChanges = new AtomicInteger();
+		model.addListener(new ModelListener() {
+			@Override
+			public void afterChange() {
+				afterChanges.incrementAndGet();
+			}
+		});
+		Profile[] profiles = new Profile[4];
+		for (int i = 0; i < profiles.length; i++) {
+			profiles[i] = new Profile("queued" + i);
+			model.addProfile(profiles[i]);
+		}
+		int before = afterChanges.get();
+
+		ConcurrentLinkedQueue<ResponseEntity<Posting>> responses = new ConcurrentLinkedQueue<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			Profile profile = profiles[t % profiles.length];
+			int thread = t;
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < POSTS_PER_THREAD; i++) {
+					responses.add(queue.addPost(profile, new Posting("thread " + thread + " posting " + i)));
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		Set<Integer> ids = new HashSet<>();
+		for (ResponseEntity<Posting> response : responses) {
+			assertEquals(HttpStatus.CREATED, response.getStatusCode());
+			ids.add(response.getBody().getPostingId());
+		}
+		assertEquals(THREADS * POSTS_PER_THREAD, ids.size());
+		assertEquals(THREADS * POSTS_PER_THREAD, model.getPostingCount());
+		// Each profile's postings are still in the order each thread sent them
+		for (Profile profile : profiles) {
+			int[] last = new int[THREADS];
+			for (Posting posting : profile.getPostings()) {
+				String[] words = posting.getPostingText().split(" ");
+				int thread = Integer.parseInt(words[1]);
+				int index = Integer.parseInt(words[3]);
+				assertEquals(last[thread]++, index);
+			}
+		}
+		// One afterChange per batch, not per posting
+		assertTrue(afterChanges.get() - before <= queue.batchSizes.count());
+	}
+
+	@Test
+	void carriesOnAfterAnError() {
+		Profile profile = new Profile("queuedError");
+		model.addProfile(profile);
+		model.addListener(new ModelListener() {
+			@Override
+			public void onPostAdded(Profile author, Posting posting) {
+				if (posting.getPostingText().equals("fails")) {
+					throw new AssertionError("listener failed");
+				}
+			}
+		});
+		assertThrows(CompletionException.class, () -> queue.addPost(profile, new Posting("fails")));
+		assertEquals(HttpStatus.CREATED, queue.addPost(profile, new Posting("works")).getStatusCode());
+	}
+
+	@Test
+	void turnsAwayPostingsOnceClosed() throws InterruptedException {
+		Profile profile = new Profile("queuedClosed");
+		model.addProfile(profile);
+		queue.close();
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, queue.addPost(profile, new Posting("closed")).getStatusCode());
+	}
+
+	@Test
+	void answersNotFoundForADeletedProfile() {
+		Profile profile = new Profile("queuedGone");
+		model.addProfile(profile);
+		model.deleteProfile(profile);
+		assertEquals(HttpStatus.NOT_FOUND, queue.addPost(profile, new Posting("too late")).getStatusCode());
+	}
+
+	// A request that gives up on a posting the writer hasn't taken gets 503, and the posting is
+	// never added. One the writer has taken is answered, however long it takes.
+	@Test
+	void neverAddsAPostingItAnsweredUnavailable() throws Exception {
+		WriteQueue quick = new WriteQueue(model, new SimpleMeterRegistry(), true, 64, 32, 1);
+		Profile profile = new Profile("queuedSlow");
+		model.addProfile(profile);
+		CountDownLatch stuck = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		model.addListener(new ModelListener() {
+			@Override
+			public void onPostAdded(Profile author, Posting posting) {
+				if (posting.getPostingText().equals("slow")) {
+					stuck.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		});
+		AtomicReference<ResponseEntity<Posting>> slow = new AtomicReference<>();
+		Thread slowThread = new Thread(() -> slow.set(quick.addPost(profile, new Posting("slow"))));
+		try {
+			slowThread.start();
+			stuck.await();
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE, quick.addPost(profile, new Posting("given up")).getStatusCode());
+			release.countDown();
+			slowThread.join();
+			assertEquals(HttpStatus.CREATED, slow.get().getStatusCode());
+			assertEquals(HttpStatus.CREATED, quick.addPost(profile, new Posting("after")).getStatusCode());
+			List<String> texts = new ArrayList<>();
+			for (Posting posting : profile.getPostings()) {
+				texts.add(posting.getPostingText());
+			}
+			assertEquals(List.of("slow", "after"), texts);
+		} finally {
+			release.countDown();
+			quick.close();
+		}
+	}
+}